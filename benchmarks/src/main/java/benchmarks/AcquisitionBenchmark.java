@@ -0,0 +1,84 @@
+package benchmarks;
+
+import algorithm.acquisition_functions.EI;
+import algorithm.acquisition_functions.LogEI;
+import algorithm.models.GaussianProcess;
+import algorithm.utils.Observations;
+import org.openjdk.jmh.annotations.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AcquisitionBenchmark {
+
+    /**
+     * Number of candidates that are scored together.
+     */
+    private static final int BATCH = 1024;
+
+    /**
+     * Number of observations.
+     */
+    @Param({"50", "200", "800"})
+    public int n;
+
+    /**
+     * Number of input dimensions.
+     */
+    @Param({"2", "10"})
+    public int dim;
+
+    private EI _ei;
+    private LogEI _log_ei;
+    private double[][] _candidates;
+    private double[] _m;
+    private double[] _v;
+    private double[] _result;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception{
+        Random random = new Random(Fixture.SEED);
+        Observations data = Fixture.observations(this.n, this.dim, 0, random);
+        GaussianProcess model = Fixture.trained_gp(data);
+        this._ei = new EI(model, 0.0);
+        this._log_ei = new LogEI(model, 0.0);
+
+        this._candidates = Fixture.points(BATCH, this.dim, random);
+        this._m = new double[BATCH];
+        this._v = new double[BATCH];
+        this._result = new double[BATCH];
+        model.predict(this._candidates, this._m, this._v);
+    }
+
+    /**
+     * Scores candidates with EI including the prediction of the model, per candidate.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[] ei_compute() throws Exception{
+        this._ei.compute(this._candidates, this._result);
+        return this._result;
+    }
+
+    /**
+     * Only the acquisition function on given predictive moments, per candidate.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[] ei_moments() throws Exception{
+        this._ei.compute(this._m, this._v, this._result);
+        return this._result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[] log_ei_moments() throws Exception{
+        this._log_ei.compute(this._m, this._v, this._result);
+        return this._result;
+    }
+}
@@ -0,0 +1,30 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks with the GC profiler, so every benchmark also reports its
+     * allocation rate (gc.alloc.rate.norm is the number of bytes per operation). All
+     * JMH command line options are supported, e.g.
+     *
+     *     java -jar target/benchmarks.jar GaussianProcessBenchmark -p n=200 -p dim=10
+     *
+     * runs the Gaussian process benchmarks for 200 observations in 10 dimensions.
+     *
+     * @param args JMH command line options
+     * @throws Exception if the options are invalid or a benchmark fails
+     */
+    public static void main(String[] args) throws Exception{
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import algorithm.kernels.ARDSquaredExponentialKernel;
+import algorithm.models.GaussianProcess;
+import algorithm.objective_func.Task;
+import algorithm.utils.Observations;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic data for the benchmarks: points in the unit cube and the values of a
+ * smooth test function, so every run and fork measures the same problem.
+ */
+public class Fixture {
+
+    public static final long SEED = 1;
+
+    public static double[] lower(int dim){
+        return new double[dim];
+    }
+
+    public static double[] upper(int dim){
+        double[] result = new double[dim];
+        Arrays.fill(result, 1.0);
+        return result;
+    }
+
+    /**
+     * Sum of sines with a different frequency in every dimension.
+     */
+    public static double objective(double[] x){
+        double result = 0.0;
+        for (int j = 0; j < x.length; j ++ ){
+            result += Math.sin(3.0 * (j + 1) * x[j]) + 0.5 * x[j] * x[j];
+        }
+        return result;
+    }
+
+    public static Task task(final int dim){
+        return new Task() {
+            @Override
+            public double evaluate(double[] X) {
+                return objective(X);
+            }
+
+            @Override
+            public double[] get_lower() {
+                return lower(dim);
+            }
+
+            @Override
+            public double[] get_upper() {
+                return upper(dim);
+            }
+        };
+    }
+
+    /**
+     * Returns N points drawn uniformly from the unit cube.
+     */
+    public static double[][] points(int n, int dim, Random random){
+        double[][] result = new double[n][dim];
+        for (double[] x : result){
+            for (int j = 0; j < dim; j ++ ){
+                x[j] = random.nextDouble();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a store of N observations of the objective with room for extra points.
+     */
+    public static Observations observations(int n, int dim, int extra, Random random){
+        Observations result = new Observations(dim, n + extra);
+        for (double[] x : points(n, dim, random)){
+            result.add(x, objective(x));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a Gaussian process as BayesianOptimization creates it, trained with
+     * optimized hyperparameters on the observations.
+     */
+    public static GaussianProcess trained_gp(Observations data) throws Exception{
+        GaussianProcess result = gp(data.dim());
+        result.train(data, true);
+        return result;
+    }
+
+    public static GaussianProcess gp(int dim){
+        double[] lengthscales = new double[dim];
+        Arrays.fill(lengthscales, 1.0);
+        return new GaussianProcess(new ARDSquaredExponentialKernel(lengthscales, 1.0), 0.0, true, true, lower(dim), upper(dim));
+    }
+}
@@ -0,0 +1,156 @@
+package benchmarks;
+
+import algorithm.models.GaussianProcess;
+import algorithm.models.GaussianProcessRegression;
+import algorithm.utils.Observations;
+import org.openjdk.jmh.annotations.*;
+import smile.math.kernel.MercerKernel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GaussianProcessBenchmark {
+
+    /**
+     * Number of observations.
+     */
+    @Param({"50", "200", "800"})
+    public int n;
+
+    /**
+     * Number of input dimensions.
+     */
+    @Param({"2", "10"})
+    public int dim;
+
+    private Observations _data;
+    private double[][] _X;
+    private double[] _y;
+    private MercerKernel<double[]> _kernel;
+    private double _noise;
+    private GaussianProcessRegression<double[]> _gpr;
+    private GaussianProcess _model;
+    private double[][] _test;
+    private double[] _mean;
+    private double[] _var;
+    private int _next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception{
+        Random random = new Random(Fixture.SEED);
+        this._data = Fixture.observations(this.n, this.dim, 1, random);
+        this._X = this._data.get_X();
+        this._y = this._data.get_y();
+
+        GaussianProcess trained = Fixture.trained_gp(this._data);
+        this._kernel = trained.get_kernel();
+        this._noise = Math.max(trained.get_noise(), 1e-6);
+        this._gpr = new GaussianProcessRegression<double[]>(this._X, this._y, this._kernel, this._noise);
+
+        this._model = Fixture.gp(this.dim);
+        this._model.train(this._data, true);
+
+        this._test = Fixture.points(1024, this.dim, random);
+        this._mean = new double[this._test.length];
+        this._var = new double[this._test.length];
+        this._next = 0;
+    }
+
+    /**
+     * Assembles the kernel matrix and computes its Cholesky factor, O(N^2 D + N^3).
+     */
+    @Benchmark
+    public GaussianProcessRegression<double[]> gpr_construction(){
+        return new GaussianProcessRegression<double[]>(this._X, this._y, this._kernel, this._noise);
+    }
+
+    @Benchmark
+    public double predict_mean(){
+        return this._gpr.predict_mean(next_point());
+    }
+
+    @Benchmark
+    public double predict_variance(){
+        return this._gpr.predict_variance(next_point());
+    }
+
+    /**
+     * Predicts the mean and variance of 1024 points with the batched path of the model.
+     */
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public double[] predict_batch() throws Exception{
+        this._model.predict(this._test, this._mean, this._var);
+        return this._var;
+    }
+
+    /**
+     * Fits the model with the current hyperparameters.
+     */
+    @Benchmark
+    public GaussianProcess train() throws Exception{
+        GaussianProcess model = Fixture.gp(this.dim);
+        model.train(this._data, false);
+        return model;
+    }
+
+    /**
+     * Fits the model including the optimization of the hyperparameters, i.e. the
+     * marginal likelihood and its gradient are evaluated many times.
+     */
+    @Benchmark
+    public GaussianProcess train_optimize() throws Exception{
+        GaussianProcess model = Fixture.gp(this.dim);
+        model.train(this._data, true);
+        return model;
+    }
+
+    private double[] next_point(){
+        double[] result = this._test[this._next];
+        this._next = (this._next + 1) % this._test.length;
+        return result;
+    }
+
+    /**
+     * Adds one observation to a trained model. Every invocation starts from the model
+     * trained on N observations, which is restored outside of the measurement.
+     */
+    @State(Scope.Thread)
+    public static class UpdateState {
+
+        private Observations _data;
+        private GaussianProcess _model;
+        private double[] _x;
+        private int _n;
+
+        @Setup(Level.Trial)
+        public void setup(GaussianProcessBenchmark benchmark) throws Exception{
+            Random random = new Random(Fixture.SEED);
+            this._n = benchmark.n;
+            this._data = Fixture.observations(benchmark.n, benchmark.dim, 1, random);
+            this._model = Fixture.trained_gp(this._data);
+            this._x = Fixture.points(1, benchmark.dim, random)[0];
+        }
+
+        @Setup(Level.Invocation)
+        public void restore() throws Exception{
+            this._data.truncate(this._n);
+            this._model.truncate(this._n);
+        }
+    }
+
+    /**
+     * Extends the Cholesky factor by one row, O(N^2).
+     */
+    @Benchmark
+    public GaussianProcess update(UpdateState state) throws Exception{
+        state._data.add(state._x, Fixture.objective(state._x));
+        state._model.update(state._data);
+        return state._model;
+    }
+}
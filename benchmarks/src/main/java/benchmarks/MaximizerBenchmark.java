@@ -0,0 +1,74 @@
+package benchmarks;
+
+import algorithm.acquisition_functions.EI;
+import algorithm.maximizers.RandomSampling;
+import algorithm.models.GaussianProcess;
+import algorithm.solver.BayesianOptimizationSolver;
+import algorithm.utils.Observations;
+import org.openjdk.jmh.annotations.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaximizerBenchmark {
+
+    /**
+     * Number of candidates of RandomSampling, as BayesianOptimization uses it on one core.
+     */
+    private static final int SAMPLES = 100;
+
+    /**
+     * Number of observations.
+     */
+    @Param({"50", "200", "800"})
+    public int n;
+
+    /**
+     * Number of input dimensions.
+     */
+    @Param({"2", "10"})
+    public int dim;
+
+    private Observations _data;
+    private RandomSampling _maximizer;
+    private BayesianOptimizationSolver _solver;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception{
+        Random random = new Random(Fixture.SEED);
+        this._data = Fixture.observations(this.n, this.dim, 0, random);
+        GaussianProcess model = Fixture.trained_gp(this._data);
+        EI acquisition = new EI(model, 0.0);
+        // Candidates are scored on the calling thread, so the results do not depend on the machine
+        this._maximizer = new RandomSampling(acquisition, Fixture.lower(this.dim), Fixture.upper(this.dim), SAMPLES, null, Fixture.SEED);
+
+        GaussianProcess step_model = Fixture.gp(this.dim);
+        EI step_acquisition = new EI(step_model, 0.0);
+        RandomSampling step_maximizer = new RandomSampling(step_acquisition, Fixture.lower(this.dim), Fixture.upper(this.dim),
+                SAMPLES, null, Fixture.SEED);
+        this._solver = new BayesianOptimizationSolver(Fixture.task(this.dim), Fixture.lower(this.dim), Fixture.upper(this.dim),
+                step_acquisition, step_model, step_maximizer, 3, null, 1, 1);
+    }
+
+    /**
+     * Maximizes EI of a trained model by random sampling.
+     */
+    @Benchmark
+    public double[] random_sampling_maximize() throws Exception{
+        return this._maximizer.maximize();
+    }
+
+    /**
+     * One step of the Bayesian optimization loop: fit the model with hyperparameter
+     * optimization, update the acquisition function and maximize it.
+     */
+    @Benchmark
+    public double[] choose_next() throws Exception{
+        return this._solver.choose_next(this._data, true);
+    }
+}
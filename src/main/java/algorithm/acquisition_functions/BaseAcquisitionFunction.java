@@ -2,6 +2,7 @@ package algorithm.acquisition_functions;
 
 import algorithm.models.BaseModel;
 import org.json.JSONObject;
+import utils.ArrayUtils;
 
 public class BaseAcquisitionFunction {
 
@@ -45,6 +46,58 @@ public class BaseAcquisitionFunction {
         return 0.0;
     }
 
+    /**
+     * Computes the acquisition_functions values for a batch of points. Override this
+     * function if the values can be computed more efficiently than point by point,
+     * e.g. by predicting all points with one call to the model.
+     *
+     * @param X (N, D), The input points where the acquisition_functions function
+     *          should be evaluate.
+     * @param result (N), Output, the acquisition_functions value of each point
+     * @throws Exception throws exception
+     */
+    public void compute(double[][] X, double[] result) throws Exception{
+        for (int i = 0; i < X.length; i ++ ){
+            result[i] = compute(ArrayUtils.double2Double(X[i]));
+        }
+    }
+
+    /**
+     * Computes the joint acquisition_functions value of a batch of q points that are
+     * evaluated together. This function has to be overwritten in a derived class that
+     * supports batch proposals.
+     *
+     * @param X (q, D), The points of the batch
+     * @return the acquisition_functions value of the whole batch
+     * @throws Exception throws exception
+     */
+    public double compute_batch(double[][] X) throws Exception{
+        throw new Exception(this.getClass().getSimpleName() + " does not support batches.");
+    }
+
+    /**
+     * Returns true if compute_gradient is supported, i.e. the acquisition_functions function
+     * implements it and the model provides the gradients of its predictions.
+     */
+    public boolean has_gradient(){
+        return false;
+    }
+
+    /**
+     * Computes the acquisition_functions value for a given point together with its gradient.
+     * Override this function together with has_gradient in a derived class if the
+     * acquisition_functions function is differentiable.
+     *
+     * @param x (D), The input point where the acquisition_functions function
+     *          should be evaluate.
+     * @param grad (D), Output, the gradient of the acquisition_functions function at x
+     * @return the acquisition_functions value of x
+     * @throws Exception throws exception
+     */
+    public double compute_gradient(double[] x, double[] grad) throws Exception{
+        throw new Exception(this.getClass().getSimpleName() + " does not provide gradients.");
+    }
+
     /**
      * Json getter function
      * @return json object
@@ -9,7 +9,7 @@ import java.util.ArrayList;
 
 public class EI extends BaseAcquisitionFunction {
 
-    private double _par;
+    protected double _par;
 
     /**
      * Computes for a given x the expected improvement as
@@ -58,4 +58,81 @@ public class EI extends BaseAcquisitionFunction {
         }
         return result;
     }
+
+    /**
+     * Computes the EI values of a batch of points with a single prediction of the model.
+     *
+     * @param X (N, D), The input points where the acquisition_functions function
+     *          should be evaluate.
+     * @param result (N), Output, Expected Improvement of each point
+     * @throws Exception throws exception
+     */
+    @Override
+    public void compute(double[][] X, double[] result) throws Exception{
+        int n = X.length;
+        double[] m = new double[n];
+        double[] v = new double[n];
+        this._model.predict(X, m, v);
+        compute(m, v, result);
+    }
+
+    /**
+     * Computes the EI values from the predictive means and variances of a batch of points.
+     *
+     * @param m (N), Predictive means
+     * @param v (N), Predictive variances
+     * @param result (N), Output, Expected Improvement of each point
+     * @throws Exception throws exception
+     */
+    public void compute(double[] m, double[] v, double[] result) throws Exception{
+        double eta = this._model.get_incumbent().second();
+        for (int i = 0; i < m.length; i ++ ){
+            double s = Math.sqrt(v[i]);
+            double value = 0.0;
+            if (s > 0){
+                value = s * Norm.ei((eta - m[i] - this._par) / s);
+            }
+            result[i] = value;
+        }
+    }
+
+    @Override
+    public boolean has_gradient(){
+        return this._model.has_gradients();
+    }
+
+    /**
+     * Computes the EI value and its gradient
+     * dEI/dx = -cdf(z) * dm/dx + pdf(z) * ds/dx, with ds/dx = dv/dx / (2 * s)
+     *
+     * @param x (D), The input point where the acquisition_functions function
+     *          should be evaluate.
+     * @param grad (D), Output, gradient of the Expected Improvement at x
+     * @return Expected Improvement of x
+     * @throws Exception throws exception
+     */
+    @Override
+    public double compute_gradient(double[] x, double[] grad) throws Exception{
+        int d = x.length;
+        double[] dm = new double[d];
+        double[] dv = new double[d];
+        Pair<Double, Double> pred = this._model.predictive_gradients(x, dm, dv);
+        double m = pred.first();
+        double v = pred.second();
+
+        double eta = this._model.get_incumbent().second();
+        double s = Math.sqrt(v);
+
+        if (!(s > 0)){
+            Arrays.fill(grad, 0.0);
+            return 0.0;
+        }
+
+        double z = (eta - m - this._par) / s;
+        double cdf = Norm.cdf(z), pdf = Norm.pdf(z);
+        for (int j = 0; j < d; j ++ ){
+            grad[j] = -cdf * dm[j] + pdf * dv[j] / (2 * s);
+        }
+        return s * (z * cdf + pdf);
+    }
 }
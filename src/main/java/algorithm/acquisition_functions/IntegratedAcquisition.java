@@ -0,0 +1,211 @@
+package algorithm.acquisition_functions;
+
+import algorithm.models.BaseModel;
+import algorithm.models.GaussianProcess;
+import algorithm.models.GaussianProcessMCMC;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import algorithm.utils.Parallel;
+
+public class IntegratedAcquisition extends BaseAcquisitionFunction {
+
+    private String _acquisition;
+    private double _par;
+    private int _n_samples;
+    private long _seed;
+    private ForkJoinPool _pool;
+    private List<BaseAcquisitionFunction> _estimators;
+
+    /**
+     * Integrates an acquisition function over the hyperparameters of a GaussianProcessMCMC,
+     * i.e. averages the acquisition function of every Gaussian process of its ensemble.
+     * For "log_ei" it is the logarithm of the averaged EI, which is computed from the
+     * log EI of the members without leaving log space. The members are evaluated
+     * concurrently on the pool of the model.
+     *
+     * @param model GaussianProcessMCMC Object
+     *              Models the objective function.
+     * @param acquisition {"ei", "log_ei", "lcb", "pi", "qei"}
+     *                    The acquisition function of every member
+     * @param par float
+     *            Controls the balance between exploration and exploitation of the acquisition function
+     * @param n_samples int
+     *                  Number of Monte Carlo samples of "qei"
+     * @param seed long
+     *             Seed of the base samples of "qei"
+     * @throws Exception if the acquisition function is not supported
+     */
+    public IntegratedAcquisition(GaussianProcessMCMC model, String acquisition, double par, int n_samples, long seed) throws Exception{
+        super(model);
+        if (!Arrays.asList("ei", "log_ei", "lcb", "pi", "qei").contains(acquisition)){
+            throw new Exception(acquisition + " can not be integrated over the hyperparameters.");
+        }
+        this._acquisition = acquisition;
+        this._par = par;
+        this._n_samples = n_samples;
+        this._seed = seed;
+        this._pool = model.get_pool();
+    }
+
+    /**
+     * Rebuilds the acquisition functions of the members after the model was trained.
+     *
+     * @param model GaussianProcessMCMC Object
+     * @throws Exception throws exception
+     */
+    @Override
+    public void update(BaseModel model) throws Exception{
+        super.update(model);
+        List<BaseAcquisitionFunction> estimators = new ArrayList<BaseAcquisitionFunction>();
+        for (GaussianProcess member : ((GaussianProcessMCMC) model).get_models()){
+            if (this._acquisition.equals("ei")){
+                estimators.add(new EI(member, this._par));
+            }
+            else if (this._acquisition.equals("log_ei")){
+                estimators.add(new LogEI(member, this._par));
+            }
+            else if (this._acquisition.equals("lcb")){
+                estimators.add(new LCB(member, this._par));
+            }
+            else if (this._acquisition.equals("pi")){
+                estimators.add(new PI(member, this._par));
+            }
+            else{
+                // Same base samples for every member, so the average is smooth in the batch
+                estimators.add(new QEI(member, this._par, this._n_samples, this._seed));
+            }
+        }
+        this._estimators = estimators;
+    }
+
+    @Override
+    public double compute(Double[] x) throws Exception{
+        List<BaseAcquisitionFunction> estimators = estimators();
+        double[] values = new double[estimators.size()];
+        for (int i = 0; i < values.length; i ++ ){
+            values[i] = estimators.get(i).compute(x);
+        }
+        return average(values, null);
+    }
+
+    /**
+     * Averages the batch computations of the members, the members run concurrently.
+     *
+     * @param X (N, D), The input points where the acquisition_functions function
+     *          should be evaluate.
+     * @param result (N), Output, the integrated acquisition value of each point
+     * @throws Exception throws exception
+     */
+    @Override
+    public void compute(final double[][] X, double[] result) throws Exception{
+        List<BaseAcquisitionFunction> estimators = estimators();
+        int k = estimators.size();
+        final double[][] values = new double[k][X.length];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < k; i ++ ){
+            final BaseAcquisitionFunction estimator = estimators.get(i);
+            final double[] value = values[i];
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    estimator.compute(X, value);
+                    return null;
+                }
+            });
+        }
+        Parallel.invoke(tasks, this._pool);
+
+        double[] column = new double[k];
+        for (int j = 0; j < X.length; j ++ ){
+            for (int i = 0; i < k; i ++ ){
+                column[i] = values[i][j];
+            }
+            result[j] = average(column, null);
+        }
+    }
+
+    @Override
+    public double compute_batch(double[][] X) throws Exception{
+        List<BaseAcquisitionFunction> estimators = estimators();
+        double result = 0.0;
+        for (BaseAcquisitionFunction estimator : estimators){
+            result += estimator.compute_batch(X);
+        }
+        return result / estimators.size();
+    }
+
+    @Override
+    public boolean has_gradient(){
+        return this._estimators != null && !this._estimators.isEmpty() && this._estimators.get(0).has_gradient();
+    }
+
+    @Override
+    public double compute_gradient(double[] x, double[] grad) throws Exception{
+        List<BaseAcquisitionFunction> estimators = estimators();
+        int k = estimators.size();
+        double[][] g = new double[k][x.length];
+        double[] values = new double[k];
+        for (int i = 0; i < k; i ++ ){
+            values[i] = estimators.get(i).compute_gradient(x, g[i]);
+        }
+        double[] weights = new double[k];
+        double result = average(values, weights);
+        Arrays.fill(grad, 0.0);
+        for (int i = 0; i < k; i ++ ){
+            for (int j = 0; j < x.length; j ++ ){
+                grad[j] += weights[i] * g[i][j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Averages the values of the members. For "log_ei" the values are logarithms and
+     * the result is log(mean(exp(values))), computed with the largest value factored
+     * out so it does not underflow.
+     *
+     * @param values (k), values of the members
+     * @param weights (k), Output, derivative of the result with respect to every value, or null
+     * @return the average
+     */
+    private double average(double[] values, double[] weights){
+        int k = values.length;
+        if (!this._acquisition.equals("log_ei")){
+            if (weights != null){
+                Arrays.fill(weights, 1.0 / k);
+            }
+            double result = 0.0;
+            for (double value : values){
+                result += value / k;
+            }
+            return result;
+        }
+
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values){
+            max = Math.max(max, value);
+        }
+        double sum = 0.0;
+        for (int i = 0; i < k; i ++ ){
+            double w = Math.exp(values[i] - max);
+            sum += w;
+            if (weights != null){
+                weights[i] = w;
+            }
+        }
+        if (weights != null){
+            for (int i = 0; i < k; i ++ ){
+                weights[i] /= sum;
+            }
+        }
+        return max + Math.log(sum / k);
+    }
+
+    private List<BaseAcquisitionFunction> estimators() throws Exception{
+        if (this._estimators == null){
+            update(this._model);
+        }
+        return this._estimators;
+    }
+}
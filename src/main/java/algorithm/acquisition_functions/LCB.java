@@ -0,0 +1,99 @@
+package algorithm.acquisition_functions;
+
+import algorithm.models.BaseModel;
+import utils.ArrayUtils;
+import utils.Pair;
+import java.util.Arrays;
+
+public class LCB extends BaseAcquisitionFunction {
+
+    protected double _par;
+
+    /**
+     * Negative lower confidence bound -(m(x) - par * s(x)). Maximizing it minimizes the
+     * lower confidence bound of the objective function, par trades the predicted
+     * value off against the uncertainty of the model.
+     *
+     * @param model Model object
+     *          A model that implements at least
+     *              - predict(X).
+     * @param par float
+     *          Weight of the predictive standard deviation, larger values explore more
+     */
+    public LCB(BaseModel model, double par){
+        super(model);
+        this._par = par;
+    }
+
+    @Override
+    public double compute(Double[] x) throws Exception{
+        double[] result = new double[1];
+        compute(new double[][]{ArrayUtils.Double2double(x)}, result);
+        return result[0];
+    }
+
+    /**
+     * Computes the LCB values of a batch of points with a single prediction of the model.
+     *
+     * @param X (N, D), The input points where the acquisition_functions function
+     *          should be evaluate.
+     * @param result (N), Output, negative lower confidence bound of each point
+     * @throws Exception throws exception
+     */
+    @Override
+    public void compute(double[][] X, double[] result) throws Exception{
+        int n = X.length;
+        double[] m = new double[n];
+        double[] v = new double[n];
+        this._model.predict(X, m, v);
+        compute(m, v, result);
+    }
+
+    /**
+     * Computes the LCB values from the predictive means and variances of a batch of points.
+     *
+     * @param m (N), Predictive means
+     * @param v (N), Predictive variances
+     * @param result (N), Output, negative lower confidence bound of each point
+     */
+    public void compute(double[] m, double[] v, double[] result){
+        for (int i = 0; i < m.length; i ++ ){
+            result[i] = this._par * Math.sqrt(Math.max(v[i], 0.0)) - m[i];
+        }
+    }
+
+    @Override
+    public boolean has_gradient(){
+        return this._model.has_gradients();
+    }
+
+    /**
+     * Computes the LCB value and its gradient -dm/dx + par * dv/dx / (2 * s)
+     *
+     * @param x (D), The input point where the acquisition_functions function
+     *          should be evaluate.
+     * @param grad (D), Output, gradient of the negative lower confidence bound at x
+     * @return negative lower confidence bound of x
+     * @throws Exception throws exception
+     */
+    @Override
+    public double compute_gradient(double[] x, double[] grad) throws Exception{
+        int d = x.length;
+        double[] dm = new double[d];
+        double[] dv = new double[d];
+        Pair<Double, Double> pred = this._model.predictive_gradients(x, dm, dv);
+        double s = Math.sqrt(Math.max(pred.second(), 0.0));
+
+        if (!(s > 0)){
+            for (int j = 0; j < d; j ++ ){
+                grad[j] = -dm[j];
+            }
+            return -pred.first();
+        }
+
+        for (int j = 0; j < d; j ++ ){
+            grad[j] = -dm[j] + this._par * dv[j] / (2 * s);
+        }
+        return this._par * s - pred.first();
+    }
+}
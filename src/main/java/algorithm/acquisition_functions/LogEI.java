@@ -0,0 +1,115 @@
+package algorithm.acquisition_functions;
+
+import algorithm.models.BaseModel;
+import utils.ArrayUtils;
+import utils.Norm;
+import utils.Pair;
+
+public class LogEI extends BaseAcquisitionFunction {
+
+    /**
+     * Lower bound of the predictive standard deviation, so the value stays finite at
+     * points the model has observed without noise.
+     */
+    private static final double MIN_STD = 1e-10;
+
+    protected double _par;
+
+    /**
+     * Logarithm of the expected improvement, log(s) + log(z * cdf(z) + pdf(z)) with
+     * z = (eta - m(x) - par) / s(x). It has the same maximizer as EI, but far from the
+     * incumbent, where EI underflows to 0 and its gradient vanishes, log EI keeps an
+     * accurate value and slope, so the maximizers do not get stuck on flat regions.
+     *
+     * @param model Model object
+     *          A model that implements at least
+     *              - predict(X)
+     *              - get_incumbent().
+     * @param par float
+     *          Controls the balance between exploration and exploitation of the
+     *          acquisition_functions function. Default is 0.0
+     */
+    public LogEI(BaseModel model, double par){
+        super(model);
+        this._par = par;
+    }
+
+    @Override
+    public double compute(Double[] x) throws Exception{
+        double[] result = new double[1];
+        compute(new double[][]{ArrayUtils.Double2double(x)}, result);
+        return result[0];
+    }
+
+    /**
+     * Computes the log EI values of a batch of points with a single prediction of the model.
+     *
+     * @param X (N, D), The input points where the acquisition_functions function
+     *          should be evaluate.
+     * @param result (N), Output, log Expected Improvement of each point
+     * @throws Exception throws exception
+     */
+    @Override
+    public void compute(double[][] X, double[] result) throws Exception{
+        int n = X.length;
+        double[] m = new double[n];
+        double[] v = new double[n];
+        this._model.predict(X, m, v);
+        compute(m, v, result);
+    }
+
+    /**
+     * Computes the log EI values from the predictive means and variances of a batch of points.
+     *
+     * @param m (N), Predictive means
+     * @param v (N), Predictive variances
+     * @param result (N), Output, log Expected Improvement of each point
+     * @throws Exception throws exception
+     */
+    public void compute(double[] m, double[] v, double[] result) throws Exception{
+        double eta = this._model.get_incumbent().second();
+        for (int i = 0; i < m.length; i ++ ){
+            double s = Math.max(Math.sqrt(v[i]), MIN_STD);
+            double z = (eta - m[i] - this._par) / s;
+            result[i] = Math.log(s) + Norm.log_ei(z);
+        }
+    }
+
+    @Override
+    public boolean has_gradient(){
+        return this._model.has_gradients();
+    }
+
+    /**
+     * Computes the log EI value and its gradient
+     * dlogEI/dx = ds/dx / s + cdf(z) / (z * cdf(z) + pdf(z)) * dz/dx,
+     * with dz/dx = -(dm/dx + z * ds/dx) / s and ds/dx = dv/dx / (2 * s). The ratio is
+     * computed in log space, so it is accurate where both terms underflow.
+     *
+     * @param x (D), The input point where the acquisition_functions function
+     *          should be evaluate.
+     * @param grad (D), Output, gradient of the log Expected Improvement at x
+     * @return log Expected Improvement of x
+     * @throws Exception throws exception
+     */
+    @Override
+    public double compute_gradient(double[] x, double[] grad) throws Exception{
+        int d = x.length;
+        double[] dm = new double[d];
+        double[] dv = new double[d];
+        Pair<Double, Double> pred = this._model.predictive_gradients(x, dm, dv);
+        double eta = this._model.get_incumbent().second();
+        double s = Math.sqrt(pred.second());
+        boolean clipped = !(s > MIN_STD);
+        s = clipped ? MIN_STD : s;
+
+        double z = (eta - pred.first() - this._par) / s;
+        double log_h = Norm.log_ei(z);
+        double ratio = Math.exp(Norm.log_cdf(z) - log_h);
+        for (int j = 0; j < d; j ++ ){
+            double ds = clipped ? 0.0 : dv[j] / (2 * s);
+            grad[j] = ds / s - ratio * (dm[j] + z * ds) / s;
+        }
+        return Math.log(s) + log_h;
+    }
+}
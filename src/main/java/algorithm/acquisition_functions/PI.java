@@ -0,0 +1,109 @@
+package algorithm.acquisition_functions;
+
+import algorithm.models.BaseModel;
+import utils.ArrayUtils;
+import utils.Norm;
+import utils.Pair;
+import java.util.Arrays;
+
+public class PI extends BaseAcquisitionFunction {
+
+    protected double _par;
+
+    /**
+     * Probability of improvement cdf(z), z = (eta - m(x) - par) / s(x), where eta is the
+     * value of the incumbent, i.e. the probability that x is better than the incumbent
+     * by at least par.
+     *
+     * @param model Model object
+     *          A model that implements at least
+     *              - predict(X)
+     *              - get_incumbent().
+     * @param par float
+     *          Controls the balance between exploration and exploitation of the
+     *          acquisition_functions function. Default is 0.0
+     */
+    public PI(BaseModel model, double par){
+        super(model);
+        this._par = par;
+    }
+
+    @Override
+    public double compute(Double[] x) throws Exception{
+        double[] result = new double[1];
+        compute(new double[][]{ArrayUtils.Double2double(x)}, result);
+        return result[0];
+    }
+
+    /**
+     * Computes the PI values of a batch of points with a single prediction of the model.
+     *
+     * @param X (N, D), The input points where the acquisition_functions function
+     *          should be evaluate.
+     * @param result (N), Output, probability of improvement of each point
+     * @throws Exception throws exception
+     */
+    @Override
+    public void compute(double[][] X, double[] result) throws Exception{
+        int n = X.length;
+        double[] m = new double[n];
+        double[] v = new double[n];
+        this._model.predict(X, m, v);
+        compute(m, v, result);
+    }
+
+    /**
+     * Computes the PI values from the predictive means and variances of a batch of points.
+     *
+     * @param m (N), Predictive means
+     * @param v (N), Predictive variances
+     * @param result (N), Output, probability of improvement of each point
+     * @throws Exception throws exception
+     */
+    public void compute(double[] m, double[] v, double[] result) throws Exception{
+        double eta = this._model.get_incumbent().second();
+        for (int i = 0; i < m.length; i ++ ){
+            double s = Math.sqrt(v[i]);
+            double d = eta - m[i] - this._par;
+            result[i] = s > 0 ? Norm.cdf(d / s) : (d > 0 ? 1.0 : 0.0);
+        }
+    }
+
+    @Override
+    public boolean has_gradient(){
+        return this._model.has_gradients();
+    }
+
+    /**
+     * Computes the PI value and its gradient
+     * dPI/dx = pdf(z) * dz/dx, with dz/dx = -(dm/dx + z * ds/dx) / s and ds/dx = dv/dx / (2 * s)
+     *
+     * @param x (D), The input point where the acquisition_functions function
+     *          should be evaluate.
+     * @param grad (D), Output, gradient of the probability of improvement at x
+     * @return probability of improvement of x
+     * @throws Exception throws exception
+     */
+    @Override
+    public double compute_gradient(double[] x, double[] grad) throws Exception{
+        int d = x.length;
+        double[] dm = new double[d];
+        double[] dv = new double[d];
+        Pair<Double, Double> pred = this._model.predictive_gradients(x, dm, dv);
+        double eta = this._model.get_incumbent().second();
+        double s = Math.sqrt(pred.second());
+        double diff = eta - pred.first() - this._par;
+
+        if (!(s > 0)){
+            Arrays.fill(grad, 0.0);
+            return diff > 0 ? 1.0 : 0.0;
+        }
+
+        double z = diff / s;
+        double pdf = Norm.pdf(z);
+        for (int j = 0; j < d; j ++ ){
+            grad[j] = -pdf * (dm[j] + z * dv[j] / (2 * s)) / s;
+        }
+        return Norm.cdf(z);
+    }
+}
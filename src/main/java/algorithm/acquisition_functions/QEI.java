@@ -0,0 +1,128 @@
+package algorithm.acquisition_functions;
+
+import algorithm.models.BaseModel;
+import java.util.*;
+
+public class QEI extends EI {
+
+    private int _nSamples;
+    private long _seed;
+    /**
+     * Standard normal base samples, one column (nSamples) per batch position.
+     */
+    private List<double[]> _samples;
+
+    /**
+     * Multi-point expected improvement of a batch of q points,
+     * E[max(0, max_i(eta - f(x_i) - par))], estimated by Monte Carlo integration
+     * over the joint posterior of the batch. The same base samples are used for
+     * every batch, so the estimate is a deterministic function of the batch that
+     * can be compared between batches. Single points are scored with the analytic EI.
+     *
+     * @param model Model object
+     *          A model that implements at least
+     *              - predict_joint(X)
+     *              - get_incumbent().
+     * @param par float
+     *          Controls the balance between exploration
+     *          and exploitation of the acquisition_functions function.
+     * @param nSamples int
+     *          Number of Monte Carlo samples
+     * @param seed long
+     *          Seed of the base samples
+     */
+    public QEI(BaseModel model, double par, int nSamples, long seed){
+        super(model, par);
+        this._nSamples = nSamples;
+        this._seed = seed;
+        this._samples = new ArrayList<double[]>();
+    }
+
+    /**
+     * Computes the q-EI value of a batch
+     *
+     * @param X (q, D), The points of the batch
+     * @return Multi-point Expected Improvement of the batch
+     * @throws Exception throws exception
+     */
+    @Override
+    public double compute_batch(double[][] X) throws Exception{
+        int q = X.length;
+        double[] m = new double[q];
+        double[][] cov = new double[q][q];
+        this._model.predict_joint(X, m, cov);
+        double[][] L = cholesky(cov);
+
+        double eta = this._model.get_incumbent().second();
+        double[][] z = samples(q);
+
+        double sum = 0.0;
+        for (int s = 0; s < this._nSamples; s ++ ){
+            double improvement = 0.0;
+            for (int i = 0; i < q; i ++ ){
+                double v = m[i];
+                for (int j = 0; j <= i; j ++ ){
+                    v += L[i][j] * z[j][s];
+                }
+                improvement = Math.max(improvement, eta - v - this._par);
+            }
+            sum += improvement;
+        }
+        return sum / this._nSamples;
+    }
+
+    /**
+     * Returns the base samples of the first q batch positions. Column j is drawn from
+     * its own seeded generator, so the samples do not depend on the order of the calls.
+     */
+    private synchronized double[][] samples(int q){
+        while (this._samples.size() < q){
+            Random random = new Random(this._seed * 31 + this._samples.size());
+            double[] column = new double[this._nSamples];
+            for (int s = 0; s < this._nSamples; s ++ ){
+                column[s] = random.nextGaussian();
+            }
+            this._samples.add(column);
+        }
+        return this._samples.subList(0, q).toArray(new double[q][]);
+    }
+
+    /**
+     * Cholesky factor of a small covariance matrix. Jitter is added to the diagonal
+     * until it is positive definite, e.g. if the batch contains the same point twice.
+     */
+    private static double[][] cholesky(double[][] A){
+        int q = A.length;
+        double scale = 0.0;
+        for (int i = 0; i < q; i ++ ){
+            scale = Math.max(scale, Math.abs(A[i][i]));
+        }
+        double jitter = 0.0;
+        while (true){
+            double[][] L = new double[q][q];
+            boolean positive = true;
+            for (int i = 0; i < q && positive; i ++ ){
+                for (int j = 0; j <= i; j ++ ){
+                    double s = A[i][j] + (i == j ? jitter : 0.0);
+                    for (int p = 0; p < j; p ++ ){
+                        s -= L[i][p] * L[j][p];
+                    }
+                    if (i == j){
+                        if (!(s > 0)){
+                            positive = false;
+                            break;
+                        }
+                        L[i][i] = Math.sqrt(s);
+                    }
+                    else{
+                        L[i][j] = s / L[j][j];
+                    }
+                }
+            }
+            if (positive){
+                return L;
+            }
+            jitter = jitter == 0.0 ? 1e-10 * Math.max(scale, 1e-10) : jitter * 10;
+        }
+    }
+}
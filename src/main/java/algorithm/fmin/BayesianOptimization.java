@@ -2,14 +2,24 @@ package algorithm.fmin;
 
 import org.apache.log4j.*;
 import smile.math.kernel.*;
+import algorithm.kernels.ARDSquaredExponentialKernel;
 import algorithm.models.*;
 import algorithm.acquisition_functions.*;
 import algorithm.maximizers.*;
+import algorithm.initial_design.*;
+import algorithm.metrics.SolverListener;
 import algorithm.objective_func.Task;
 import algorithm.solver.BayesianOptimizationSolver;
+import algorithm.utils.Observations;
 import utils.Pair;
 import utils.ArrayUtils;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 public class BayesianOptimization {
 
@@ -18,6 +28,50 @@ public class BayesianOptimization {
     private BayesianOptimizationSolver _bayesianOptimizationSolver;
     private int _num_iterations;
 
+    /**
+     * Default number of iterations between two optimizations of the hyperparameters of
+     * the model. In between, the model is only extended by the new observations.
+     */
+    public static final int DEFAULT_TRAIN_INTERVAL = 5;
+
+    /**
+     * General interface for Bayesian optimization with a random seed, see
+     * BayesianOptimization(objectiveFunction, ..., pool, trainInterval).
+     */
+    public BayesianOptimization(Task objectiveFunction, int numIterations, String maximizer, String acquisitionFunc, String modelType,
+                                int nInit, String output_path) throws Exception{
+        this(objectiveFunction, numIterations, maximizer, acquisitionFunc, modelType, nInit, output_path, new Random().nextLong());
+    }
+
+    /**
+     * General interface for Bayesian optimization with a random initial design, see
+     * BayesianOptimization(objectiveFunction, ..., pool, trainInterval).
+     */
+    public BayesianOptimization(Task objectiveFunction, int numIterations, String maximizer, String acquisitionFunc, String modelType,
+                                int nInit, String output_path, long seed) throws Exception{
+        this(objectiveFunction, numIterations, maximizer, acquisitionFunc, modelType, nInit, "random", output_path, seed);
+    }
+
+    /**
+     * General interface for Bayesian optimization on the common pool, see
+     * BayesianOptimization(objectiveFunction, ..., pool, trainInterval).
+     */
+    public BayesianOptimization(Task objectiveFunction, int numIterations, String maximizer, String acquisitionFunc, String modelType,
+                                int nInit, String initialDesign, String output_path, long seed) throws Exception{
+        this(objectiveFunction, numIterations, maximizer, acquisitionFunc, modelType, nInit, initialDesign, output_path, seed,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * General interface for Bayesian optimization with DEFAULT_TRAIN_INTERVAL, see
+     * BayesianOptimization(objectiveFunction, ..., pool, trainInterval).
+     */
+    public BayesianOptimization(Task objectiveFunction, int numIterations, String maximizer, String acquisitionFunc, String modelType,
+                                int nInit, String initialDesign, String output_path, long seed, ForkJoinPool pool) throws Exception{
+        this(objectiveFunction, numIterations, maximizer, acquisitionFunc, modelType, nInit, initialDesign, output_path, seed,
+                pool, DEFAULT_TRAIN_INTERVAL);
+    }
+
     /**
      * General interface for Bayesian optimization for global black box optimization problems.
      *
@@ -28,16 +82,32 @@ public class BayesianOptimization {
      *                          objectiveFunction.get_upper() double[D]
      *                              The upper bound of the search space
      * @param numIterations     The number of iterations
-     * @param maximizer         {"direct", "cmaes", "random", "scipy"}
-     *                          The optimizer for the acquisition function. NOTE: "cmaes" only works in D > 1 dimensions
-     * @param acquisitionFunc   {"ei", "log_ei", "lcb", "pi"}
+     * @param maximizer         {"direct", "cmaes", "random", "scipy", "batch"}
+     *                          The optimizer for the acquisition function. NOTE: "cmaes" only works in D > 1 dimensions,
+     *                          "batch" requires the "qei" acquisition function,
+     *                          "scipy" requires the "gp" model and an acquisition function other than "qei"
+     * @param acquisitionFunc   {"ei", "qei", "log_ei", "lcb", "pi"}
      *                          The acquisition function
-     * @param modelType         {"gp", "gp_mcmc", "rf"}
+     * @param modelType         {"gp", "sparse_gp", "gp_mcmc", "rf"}
      *                          The model for the objective function.
      * @param nInit             Number of points for the initial design. Make sure that it is <= num_iterations.
+     * @param initialDesign     {"random", "sobol", "halton", "lhs"}
+     *                          The initial design: uniform samples, a scrambled Sobol or Halton sequence
+     *                          or a maximin Latin hypercube. For "sobol" nInit should be a power of 2.
+     * @param output_path       Path of the output file, or null
+     * @param seed              Seed of the random number generators of the model, the maximizer and the initial design
+     * @param pool              Pool on which model and maximizer run in parallel, e.g. one pool shared
+     *                          by many studies
+     * @param trainInterval     Number of iterations between two optimizations of the hyperparameters,
+     *                          1 to optimize them in every iteration
+     * @throws Exception if an argument is not valid
      */
     public BayesianOptimization(Task objectiveFunction, int numIterations, String maximizer, String acquisitionFunc, String modelType,
-                                int nInit, String output_path) throws Exception{
+                                int nInit, String initialDesign, String output_path, long seed, ForkJoinPool pool,
+                                int trainInterval) throws Exception{
+        if (trainInterval <= 0){
+            throw new Exception("trainInterval(value = " + trainInterval + ") is invalid in BayesianOptimization.BayesianOptimization().");
+        }
         double[] lower = objectiveFunction.get_lower();
         double[] upper = objectiveFunction.get_upper();
 
@@ -46,10 +116,28 @@ public class BayesianOptimization {
             assert upper[i] > lower[i] : "Lower bound >= Uppder bound";
         }
 
-        MercerKernel<double[]> kernel = new GaussianKernel(1.0);
+        // ARD kernel whose length scales, signal variance and noise are fit by maximizing the marginal likelihood
+        double[] lengthscales = new double[lower.length];
+        Arrays.fill(lengthscales, 1.0);
+        ARDSquaredExponentialKernel kernel = new ARDSquaredExponentialKernel(lengthscales, 1.0);
         BaseModel model = new BaseModel();
         if (modelType.equals("gp")) {
-            model = new GaussianProcess(kernel, 0.0, true, true, lower, upper);
+            // Large predictions that are not already made on the pool are split over it
+            GaussianProcess gp = new GaussianProcess(kernel, 0.0, true, true, lower, upper);
+            gp.set_pool(pool);
+            model = gp;
+        }
+        else if (modelType.equals("sparse_gp")) {
+            // O(N * m^2) approximation with at most 200 inducing points for long studies
+            model = new SparseGaussianProcess(kernel, 1e-3, 200, lower, upper);
+        }
+        else if (modelType.equals("gp_mcmc")) {
+            // 10 slice sampling chains marginalize the hyperparameters, each keeps its state between iterations
+            model = new GaussianProcessMCMC(kernel, 10, 100, 10, lower, upper, pool, seed);
+        }
+        else if (modelType.equals("rf")) {
+            // 30 trees on the pool, splits consider 5/6 of the dimensions as in SMAC
+            model = new RandomForest(30, 3, 5.0 / 6.0, pool, seed);
         }
         else{
             throw new Exception(modelType + "is not a valid model.");
@@ -59,32 +147,226 @@ public class BayesianOptimization {
         if (acquisitionFunc.equals("ei")){
             acquisition_func = new EI(model, 0.0);
         }
+        else if (acquisitionFunc.equals("log_ei")){
+            acquisition_func = new LogEI(model, 0.0);
+        }
+        else if (acquisitionFunc.equals("lcb")){
+            // Two predictive standard deviations below the mean
+            acquisition_func = new LCB(model, 2.0);
+        }
+        else if (acquisitionFunc.equals("pi")){
+            acquisition_func = new PI(model, 0.0);
+        }
+        else if (acquisitionFunc.equals("qei")){
+            // Monte Carlo estimate of the joint EI of a batch, needed by run_batch
+            acquisition_func = new QEI(model, 0.0, 1000, seed);
+        }
         else{
             throw new Exception(acquisitionFunc + "is not a valid acquisition function.");
         }
+        if (model instanceof GaussianProcessMCMC){
+            // Average the acquisition function over the samples of the hyperparameters
+            double par = acquisitionFunc.equals("lcb") ? 2.0 : 0.0;
+            acquisition_func = new IntegratedAcquisition((GaussianProcessMCMC) model, acquisitionFunc, par, 1000, seed);
+        }
 
         BaseMaximizer max_func = new BaseMaximizer(acquisition_func, lower, upper);
         if (maximizer.equals("direct")){
-            max_func = new Direct(acquisition_func, lower, upper, 400, 200, true);
+            max_func = new Direct(acquisition_func, lower, upper, 400, 200, false, pool);
         }
         else if (maximizer.equals("random")){
-            max_func = new RandomSampling(acquisition_func, lower, upper, 100);
+            // Score 100 candidates per core of the pool
+            max_func = new RandomSampling(acquisition_func, lower, upper, 100 * pool.getParallelism(), pool, seed);
+        }
+        else if (maximizer.equals("cmaes")){
+            max_func = new CMAES(acquisition_func, lower, upper, 1000, pool, seed);
+        }
+        else if (maximizer.equals("scipy")){
+            // Gradient based L-BFGS-B with one start per core of the pool
+            if (!model.has_gradients() || acquisitionFunc.equals("qei")){
+                throw new Exception("scipy needs the gradients of the acquisition function, which " + modelType + " with "
+                        + acquisitionFunc + " does not provide.");
+            }
+            max_func = new LBFGSB(acquisition_func, lower, upper, Math.max(4, pool.getParallelism()), 1000, 100, pool, seed);
+        }
+        else if (maximizer.equals("batch")){
+            // Greedy batch construction from the 50 best of 100 candidates per core
+            max_func = new GreedyBatch(acquisition_func, lower, upper, 100 * pool.getParallelism(), 50, pool, seed);
         }
         else{
             throw new Exception(maximizer + " is not a valid function to maximize the acquisition function.");
         }
 
+        BaseInitialDesign initial_design;
+        if (initialDesign.equals("random")){
+            initial_design = new InitRandomUniform(lower, upper, seed);
+        }
+        else if (initialDesign.equals("sobol")){
+            initial_design = new Sobol(lower, upper, true, seed);
+        }
+        else if (initialDesign.equals("halton")){
+            initial_design = new Halton(lower, upper, true, seed);
+        }
+        else if (initialDesign.equals("lhs")){
+            initial_design = new LatinHypercube(lower, upper, nInit, seed);
+        }
+        else{
+            throw new Exception(initialDesign + " is not a valid initial design.");
+        }
+
         this._bayesianOptimizationSolver = new BayesianOptimizationSolver(objectiveFunction, lower, upper, acquisition_func, model,
-                max_func, nInit, output_path, 1, 1);
+                max_func, nInit, output_path, trainInterval, 1);
+        this._bayesianOptimizationSolver.set_initial_design(initial_design);
         this._num_iterations = numIterations;
     }
 
+    /**
+     * Runs the optimization. The output file is closed when it returns.
+     *
+     * @return the result of the optimization
+     */
     public Result run() throws Exception{
-        Pair<Double[], Double> best_point = this._bayesianOptimizationSolver.run(this._num_iterations, null, null);
+        try{
+            Pair<Double[], Double> best_point = this._bayesianOptimizationSolver.run(this._num_iterations, null, null);
+            return get_result(best_point);
+        }
+        finally{
+            close();
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the study every interval iterations of run, from which an
+     * interrupted study can be continued with resume.
+     *
+     * @param path Path of the checkpoint
+     * @param interval Number of iterations between two checkpoints
+     */
+    public void set_checkpoint(String path, int interval){
+        this._bayesianOptimizationSolver.set_checkpoint(path, interval);
+    }
+
+    public BayesianOptimizationSolver get_solver(){
+        return this._bayesianOptimizationSolver;
+    }
+
+    /**
+     * Asks for the next point to evaluate, see BayesianOptimizationSolver.ask. Use this
+     * together with tell instead of run if the evaluations run elsewhere, e.g. on a batch
+     * system that reports them later and in any order.
+     *
+     * @return trial number, point
+     */
+    public Pair<Integer, double[]> ask() throws Exception{
+        return this._bayesianOptimizationSolver.ask();
+    }
+
+    /**
+     * Tells the function value of a trial returned by ask.
+     *
+     * @param trial Trial number
+     * @param y Function value
+     */
+    public void tell(int trial, double y) throws Exception{
+        this._bayesianOptimizationSolver.tell(trial, y);
+    }
+
+    /**
+     * Registers a listener that is told the duration of every phase of the optimization
+     * loop (train, hyperparameter fit, maximization, evaluation, I/O), e.g. PhaseMetrics.
+     *
+     * @param listener SolverListener
+     */
+    public void add_listener(SolverListener listener){
+        this._bayesianOptimizationSolver.add_listener(listener);
+    }
+
+    /**
+     * Emits the phases of the optimization loop as Java Flight Recorder events if the
+     * library was built and runs on JDK 11 or newer.
+     *
+     * @return true if the events are emitted
+     */
+    public boolean enable_jfr(){
+        return this._bayesianOptimizationSolver.enable_jfr();
+    }
+
+    /**
+     * Continues an interrupted study from its last checkpoint without evaluating any
+     * point or fitting the model again. This object has to be created with the same
+     * arguments as the one that ran the study. Call set_checkpoint before to keep
+     * writing checkpoints.
+     *
+     * @param checkpoint_path Path of the checkpoint
+     * @return the result of the whole study
+     */
+    public Result resume(String checkpoint_path) throws Exception{
+        try{
+            Pair<Double[], Double> best_point = this._bayesianOptimizationSolver.resume(this._num_iterations, checkpoint_path);
+            return get_result(best_point);
+        }
+        finally{
+            close();
+        }
+    }
+
+    /**
+     * Runs the optimization with n_workers evaluations of the objective function in
+     * parallel. Pending evaluations are accounted for with the kriging believer
+     * heuristic. The objective function has to allow concurrent calls of evaluate.
+     *
+     * @param n_workers Number of evaluations that run at the same time
+     * @return the result of the optimization
+     */
+    public Result run_async(int n_workers) throws Exception{
+        ExecutorService executor = Executors.newFixedThreadPool(n_workers);
+        try{
+            Pair<Double[], Double> best_point = this._bayesianOptimizationSolver.run_async(this._num_iterations, executor, n_workers, "kb");
+            return get_result(best_point);
+        }
+        finally{
+            executor.shutdownNow();
+            close();
+        }
+    }
+
+    /**
+     * Runs the optimization in synchronized batches of q points that are evaluated
+     * in parallel. The batches are proposed jointly, which requires the "qei"
+     * acquisition function and the "batch" maximizer. The objective function has to
+     * allow concurrent calls of evaluate.
+     *
+     * @param q Number of points per batch
+     * @return the result of the optimization
+     */
+    public Result run_batch(int q) throws Exception{
+        ExecutorService executor = Executors.newFixedThreadPool(q);
+        try{
+            Pair<Double[], Double> best_point = this._bayesianOptimizationSolver.run_batch(this._num_iterations, q, executor);
+            return get_result(best_point);
+        }
+        finally{
+            executor.shutdownNow();
+            close();
+        }
+    }
+
+    /**
+     * Writes the rest of the trace, closes the output file and stops its writer thread.
+     * run, resume, run_async and run_batch close the output when they return; a study
+     * that is driven with ask and tell has to be closed after its last tell.
+     *
+     * @throws IOException if writing the trace failed
+     */
+    public void close() throws IOException{
+        this._bayesianOptimizationSolver.close();
+    }
+
+    private Result get_result(Pair<Double[], Double> best_point) throws Exception{
         Double[] X_best = best_point.first();
         Double f_min = best_point.second();
 
-        Pair<List<Double[]>, List<Double>> observations = this._bayesianOptimizationSolver.get_observations();
+        Observations observations = this._bayesianOptimizationSolver.get_observations();
 
         Result result = new Result();
         result.x_opt = ArrayUtils.Double2double(X_best);
@@ -93,8 +375,8 @@ public class BayesianOptimization {
         result.incumbent_values = ArrayUtils.listToArray_1d(this._bayesianOptimizationSolver.get_incumbent_values());
         result.runtime = ArrayUtils.listToArray_1l(this._bayesianOptimizationSolver.get_runtime());
         result.overhead = ArrayUtils.listToArray_1l(this._bayesianOptimizationSolver.get_time_overhead());
-        result.X = ArrayUtils.listToArray_2d(observations.first());
-        result.y = ArrayUtils.listToArray_1d(observations.second());
+        result.X = observations.get_X();
+        result.y = observations.get_y();
 
         return result;
     }
@@ -0,0 +1,99 @@
+package algorithm.initial_design;
+
+public abstract class BaseInitialDesign {
+
+    protected double[] _lower;
+    protected double[] _upper;
+    /**
+     * Number of points that were generated since the last reset.
+     */
+    protected long _index;
+
+    /**
+     * Interface for initial designs. A design is a stream of points in the input space
+     * that is generated lazily, one point at a time, so designs of many points in many
+     * dimensions only keep the state of the generator in memory. A design is
+     * deterministic given its seed, so reset and skip reproduce the same points, e.g.
+     * when a study is resumed in the middle of its initial design.
+     *
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     */
+    public BaseInitialDesign(double[] lower, double[] upper){
+        this._lower = lower;
+        this._upper = upper;
+        this._index = 0;
+    }
+
+    /**
+     * Writes the next point of the design in the unit cube [0, 1)^D to u.
+     *
+     * @param u (D)
+     *          Output
+     */
+    protected abstract void next_unit(double[] u);
+
+    /**
+     * Restarts the design at its first point.
+     */
+    public void reset(){
+        this._index = 0;
+    }
+
+    /**
+     * Returns the next point of the design.
+     *
+     * @return (D)
+     *      The point, scaled to the bounds of the input space
+     */
+    public double[] next(){
+        int n_dims = this._lower.length;
+        double[] result = new double[n_dims];
+        next_unit(result);
+        for (int j = 0; j < n_dims; j ++ ){
+            result[j] = result[j] * (this._upper[j] - this._lower[j]) + this._lower[j];
+        }
+        this._index ++;
+        return result;
+    }
+
+    /**
+     * Returns the next N points of the design.
+     *
+     * @param n_points int
+     *                 The number of points
+     * @return (N, D)
+     *      The initial design data points
+     */
+    public double[][] get(int n_points){
+        double[][] result = new double[n_points][];
+        for (int i = 0; i < n_points; i ++ ){
+            result[i] = next();
+        }
+        return result;
+    }
+
+    /**
+     * Skips the next N points of the design. Override this function if the generator
+     * can jump ahead without generating the points.
+     *
+     * @param n_points long
+     *                 The number of points to skip
+     */
+    public void skip(long n_points){
+        double[] u = new double[this._lower.length];
+        for (long i = 0; i < n_points; i ++ ){
+            next_unit(u);
+            this._index ++;
+        }
+    }
+
+    /**
+     * Returns the number of points that were generated since the last reset.
+     */
+    public long position(){
+        return this._index;
+    }
+}
@@ -0,0 +1,107 @@
+package algorithm.initial_design;
+
+import java.util.Random;
+
+public class Halton extends BaseInitialDesign {
+
+    /**
+     * The j-th prime is the base of dimension j.
+     */
+    private int[] _bases;
+    /**
+     * Permutation of the digits of every dimension, the identity if the sequence is not scrambled.
+     */
+    private int[][] _permutations;
+
+    /**
+     * Halton sequence, coordinate j of point i is the radical inverse of i in the base
+     * of the j-th prime. Every point costs O(D log(i)). The origin, i.e. the point with
+     * index 0, is skipped.
+     *
+     * The dimensions with large bases are strongly correlated for the first points.
+     * If scramble is true the digits of every dimension are permuted by a random
+     * permutation that keeps 0 fixed (Braaten and Weller, 1979), which breaks up
+     * these correlations.
+     *
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     * @param scramble bool
+     *                 If true the digits are scrambled
+     * @param seed long
+     *             Seed of the scrambling
+     */
+    public Halton(double[] lower, double[] upper, boolean scramble, long seed){
+        super(lower, upper);
+
+        int n_dims = lower.length;
+        this._bases = primes(n_dims);
+        this._permutations = new int[n_dims][];
+        Random random = new Random(seed);
+        for (int j = 0; j < n_dims; j ++ ){
+            int b = this._bases[j];
+            int[] permutation = new int[b];
+            for (int d = 0; d < b; d ++ ){
+                permutation[d] = d;
+            }
+            if (scramble){
+                for (int d = b - 1; d > 1; d -- ){
+                    int k = 1 + random.nextInt(d);
+                    int tmp = permutation[d];
+                    permutation[d] = permutation[k];
+                    permutation[k] = tmp;
+                }
+            }
+            this._permutations[j] = permutation;
+        }
+    }
+
+    @Override
+    protected void next_unit(double[] u){
+        long i = this._index + 1;
+        for (int j = 0; j < u.length; j ++ ){
+            int b = this._bases[j];
+            int[] permutation = this._permutations[j];
+            double inverse = 1.0 / b;
+            double factor = inverse;
+            double value = 0.0;
+            long n = i;
+            while (n > 0){
+                value += permutation[(int) (n % b)] * factor;
+                n /= b;
+                factor *= inverse;
+            }
+            u[j] = value;
+        }
+    }
+
+    /**
+     * The points only depend on their index, skipping costs nothing.
+     */
+    @Override
+    public void skip(long n_points){
+        this._index += n_points;
+    }
+
+    /**
+     * Returns the first n primes.
+     */
+    private static int[] primes(int n){
+        int[] result = new int[n];
+        int count = 0;
+        for (int p = 2; count < n; p ++ ){
+            boolean prime = true;
+            for (int k = 0; k < count && result[k] * result[k] <= p; k ++ ){
+                if (p % result[k] == 0){
+                    prime = false;
+                    break;
+                }
+            }
+            if (prime){
+                result[count ++ ] = p;
+            }
+        }
+        return result;
+    }
+}
@@ -1,6 +1,40 @@
 package algorithm.initial_design;
 
-public class InitRandomUniform {
+import java.util.Random;
+
+public class InitRandomUniform extends BaseInitialDesign {
+
+    private long _seed;
+    private Random _random;
+
+    /**
+     * Streams points that are sampled uniformly from a seeded generator.
+     *
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     * @param seed long
+     *             Seed of the generator
+     */
+    public InitRandomUniform(double[] lower, double[] upper, long seed){
+        super(lower, upper);
+        this._seed = seed;
+        this._random = new Random(seed);
+    }
+
+    @Override
+    protected void next_unit(double[] u){
+        for (int j = 0; j < u.length; j ++ ){
+            u[j] = this._random.nextDouble();
+        }
+    }
+
+    @Override
+    public void reset(){
+        super.reset();
+        this._random = new Random(this._seed);
+    }
 
     /**
      * Samples N data points uniformly.
@@ -24,4 +58,28 @@ public class InitRandomUniform {
         }
         return result;
     }
+
+    /**
+     * Samples N data points uniformly from the given generator.
+     *
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     * @param n_points int
+     *                The number of initial data points
+     * @param random Random number generator
+     * @return (N, D)
+     *      The initial design data points
+     */
+    public static double[][] get(double[] lower, double[] upper, int n_points, Random random){
+        int n_dims = lower.length;
+        double[][] result = new double[n_points][n_dims];
+        for (int i = 0; i < n_points; i ++ ){
+            for (int j = 0; j < n_dims; j ++ ){
+                result[i][j] = random.nextDouble() * (upper[j] - lower[j]) + lower[j];
+            }
+        }
+        return result;
+    }
 }
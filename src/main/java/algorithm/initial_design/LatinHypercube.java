@@ -0,0 +1,191 @@
+package algorithm.initial_design;
+
+import java.util.Random;
+
+public class LatinHypercube extends BaseInitialDesign {
+
+    /**
+     * Number of swaps per point of the maximin optimization of a block.
+     */
+    private static final int SWAPS_PER_POINT = 20;
+
+    private int _n_points;
+    private long _seed;
+    private Random _random;
+    /**
+     * Current block of the design in the unit cube.
+     */
+    private double[][] _block;
+
+    /**
+     * Maximin Latin hypercube design. Every dimension is split into N intervals of equal
+     * width and every interval holds exactly one of the N points. The points of a block
+     * are placed uniformly at random inside their intervals, afterwards the minimal
+     * distance between two points is increased by swapping coordinates of the closest
+     * pair with those of random points within a dimension (Morris and Mitchell, 1995),
+     * which keeps the Latin hypercube property. The optimization costs O(N^2 D) and the
+     * block O(N D) memory. If more than N points are requested, the next block is a new
+     * Latin hypercube of N points.
+     *
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     * @param n_points int
+     *                 Number of points of a block, usually the size of the initial design
+     * @param seed long
+     *             Seed of the generator
+     */
+    public LatinHypercube(double[] lower, double[] upper, int n_points, long seed){
+        super(lower, upper);
+        if (n_points <= 0){
+            throw new IllegalArgumentException("n_points(value = " + n_points + ") is invalid in LatinHypercube.LatinHypercube().");
+        }
+        this._n_points = n_points;
+        this._seed = seed;
+        this._random = new Random(seed);
+    }
+
+    @Override
+    protected void next_unit(double[] u){
+        int i = (int) (this._index % this._n_points);
+        if (i == 0){
+            this._block = block();
+        }
+        System.arraycopy(this._block[i], 0, u, 0, u.length);
+    }
+
+    @Override
+    public void reset(){
+        super.reset();
+        this._random = new Random(this._seed);
+        this._block = null;
+    }
+
+    /**
+     * Samples a Latin hypercube of N points and optimizes its minimal pairwise distance.
+     */
+    private double[][] block(){
+        int n = this._n_points;
+        int n_dims = this._lower.length;
+        double[][] X = new double[n][n_dims];
+        int[] permutation = new int[n];
+        for (int j = 0; j < n_dims; j ++ ){
+            for (int i = 0; i < n; i ++ ){
+                permutation[i] = i;
+            }
+            for (int i = n - 1; i > 0; i -- ){
+                int k = this._random.nextInt(i + 1);
+                int tmp = permutation[i];
+                permutation[i] = permutation[k];
+                permutation[k] = tmp;
+            }
+            for (int i = 0; i < n; i ++ ){
+                X[i][j] = (permutation[i] + this._random.nextDouble()) / n;
+            }
+        }
+        if (n < 3){
+            return X;
+        }
+
+        // Squared distance of every point to its nearest neighbour
+        double[] nearest = new double[n];
+        int[] neighbour = new int[n];
+        for (int i = 0; i < n; i ++ ){
+            nearest_neighbour(X, i, nearest, neighbour);
+        }
+
+        double[] d_a = new double[n];
+        double[] d_b = new double[n];
+        for (int it = 0; it < SWAPS_PER_POINT * n; it ++ ){
+            int a = 0;
+            for (int i = 1; i < n; i ++ ){
+                if (nearest[i] < nearest[a]){
+                    a = i;
+                }
+            }
+            int b = this._random.nextInt(n - 1);
+            if (b >= a){
+                b ++;
+            }
+            int j = this._random.nextInt(n_dims);
+
+            swap(X, a, b, j);
+            double min_a = distances(X, a, d_a);
+            double min_b = distances(X, b, d_b);
+            // Pairs without a or b are unchanged, so the minimal distance increases if the new pairs are farther apart
+            if (Math.min(min_a, min_b) <= nearest[a]){
+                swap(X, a, b, j);
+                continue;
+            }
+
+            for (int i = 0; i < n; i ++ ){
+                if (i == a || i == b){
+                    continue;
+                }
+                if (neighbour[i] == a || neighbour[i] == b){
+                    nearest_neighbour(X, i, nearest, neighbour);
+                }
+                else if (d_a[i] < nearest[i] || d_b[i] < nearest[i]){
+                    nearest[i] = Math.min(d_a[i], d_b[i]);
+                    neighbour[i] = d_a[i] < d_b[i] ? a : b;
+                }
+            }
+            nearest_neighbour(X, a, nearest, neighbour);
+            nearest_neighbour(X, b, nearest, neighbour);
+        }
+        return X;
+    }
+
+    private static void swap(double[][] X, int a, int b, int j){
+        double tmp = X[a][j];
+        X[a][j] = X[b][j];
+        X[b][j] = tmp;
+    }
+
+    /**
+     * Computes the squared distances of point i to all points and returns the smallest one.
+     */
+    private static double distances(double[][] X, int i, double[] d){
+        double result = Double.POSITIVE_INFINITY;
+        double[] x = X[i];
+        for (int k = 0; k < X.length; k ++ ){
+            if (k == i){
+                d[k] = Double.POSITIVE_INFINITY;
+                continue;
+            }
+            double[] y = X[k];
+            double s = 0.0;
+            for (int q = 0; q < x.length; q ++ ){
+                double v = x[q] - y[q];
+                s += v * v;
+            }
+            d[k] = s;
+            result = Math.min(result, s);
+        }
+        return result;
+    }
+
+    private static void nearest_neighbour(double[][] X, int i, double[] nearest, int[] neighbour){
+        double best = Double.POSITIVE_INFINITY;
+        int index = -1;
+        double[] x = X[i];
+        for (int k = 0; k < X.length; k ++ ){
+            if (k == i){
+                continue;
+            }
+            double[] y = X[k];
+            double s = 0.0;
+            for (int q = 0; q < x.length; q ++ ){
+                double v = x[q] - y[q];
+                s += v * v;
+            }
+            if (s < best){
+                best = s;
+                index = k;
+            }
+        }
+        nearest[i] = best;
+        neighbour[i] = index;
+    }
+}
@@ -0,0 +1,281 @@
+package algorithm.initial_design;
+
+import java.util.Random;
+
+public class Sobol extends BaseInitialDesign {
+
+    /**
+     * Number of bits of the coordinates, the sequence has 2^BITS points.
+     */
+    private static final int BITS = 52;
+    private static final double SCALE = 1.0 / (1L << BITS);
+
+    /**
+     * Initial direction numbers m_1 .. m_s of the dimensions 2 .. 21 from the table
+     * new-joe-kuo-6.21201 of Joe and Kuo (2008). The primitive polynomials of the
+     * dimensions are enumerated in the same order as in the table.
+     */
+    private static final int[][] JOE_KUO = {
+            {1},
+            {1, 3},
+            {1, 3, 1},
+            {1, 1, 1},
+            {1, 1, 3, 3},
+            {1, 3, 5, 13},
+            {1, 1, 5, 5, 17},
+            {1, 1, 5, 5, 5},
+            {1, 1, 7, 11, 19},
+            {1, 1, 5, 1, 1},
+            {1, 1, 1, 3, 11},
+            {1, 3, 5, 5, 31},
+            {1, 3, 3, 9, 7, 49},
+            {1, 1, 1, 15, 21, 21},
+            {1, 3, 1, 13, 27, 49},
+            {1, 1, 1, 15, 7, 5},
+            {1, 3, 1, 15, 13, 25},
+            {1, 1, 5, 5, 19, 61},
+            {1, 3, 7, 11, 23, 15, 103},
+            {1, 3, 7, 13, 13, 15, 69}
+    };
+
+    /**
+     * Direction numbers, _directions[j][k] is v_k of dimension j.
+     */
+    private long[][] _directions;
+    /**
+     * Random digital shift of every dimension, 0 if the sequence is not scrambled.
+     */
+    private long[] _shift;
+    /**
+     * Coordinates of the next point as BITS bit integers.
+     */
+    private long[] _state;
+
+    /**
+     * Sobol sequence generated in Gray code order, every point costs O(D). The first
+     * 2^m points of the sequence are a (t, m, s)-net, i.e. they fill the input space
+     * much more evenly than uniform samples. The dimensions 1 .. 21 use the direction
+     * numbers of Joe and Kuo, further dimensions random initial direction numbers
+     * drawn from a fixed generator.
+     *
+     * If scramble is true the direction numbers are scrambled with a random lower
+     * triangular binary matrix and a random digital shift is applied (Matousek, 1998).
+     * The scrambled sequence keeps the net property, but the points do not start in
+     * the corner of the input space and the design differs from seed to seed. Use
+     * powers of 2 as number of points.
+     *
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     * @param scramble bool
+     *                 If true the sequence is scrambled
+     * @param seed long
+     *             Seed of the scrambling
+     */
+    public Sobol(double[] lower, double[] upper, boolean scramble, long seed){
+        super(lower, upper);
+
+        int n_dims = lower.length;
+        this._directions = new long[n_dims][];
+        Random extra = new Random(21201);
+        long polynomial = 1;
+        for (int j = 0; j < n_dims; j ++ ){
+            if (j == 0){
+                long[] v = new long[BITS];
+                for (int k = 0; k < BITS; k ++ ){
+                    v[k] = 1L << (BITS - 1 - k);
+                }
+                this._directions[j] = v;
+                continue;
+            }
+
+            polynomial = next_primitive(polynomial);
+            int s = 63 - Long.numberOfLeadingZeros(polynomial);
+            int[] m = new int[s];
+            for (int k = 0; k < s; k ++ ){
+                if (j <= JOE_KUO.length){
+                    m[k] = JOE_KUO[j - 1][k];
+                }
+                else{
+                    // Odd number below 2^(k + 1)
+                    m[k] = 2 * extra.nextInt(1 << k) + 1;
+                }
+            }
+            this._directions[j] = directions(polynomial, m);
+        }
+
+        this._shift = new long[n_dims];
+        if (scramble){
+            Random random = new Random(seed);
+            for (int j = 0; j < n_dims; j ++ ){
+                scramble(this._directions[j], random);
+                this._shift[j] = random.nextLong() & ((1L << BITS) - 1);
+            }
+        }
+        this._state = this._shift.clone();
+    }
+
+    @Override
+    protected void next_unit(double[] u){
+        if (this._index >= (1L << BITS) - 1){
+            throw new IllegalStateException("The Sobol sequence has no more points.");
+        }
+        for (int j = 0; j < u.length; j ++ ){
+            u[j] = this._state[j] * SCALE;
+        }
+        // Gray code order: the next point differs in the direction number of the lowest zero bit of the index
+        int c = Long.numberOfTrailingZeros(this._index + 1);
+        for (int j = 0; j < u.length; j ++ ){
+            this._state[j] ^= this._directions[j][c];
+        }
+    }
+
+    @Override
+    public void reset(){
+        super.reset();
+        this._state = this._shift.clone();
+    }
+
+    /**
+     * Jumps to the point n_points ahead in O(D * BITS).
+     */
+    @Override
+    public void skip(long n_points){
+        this._index += n_points;
+        long gray = this._index ^ (this._index >>> 1);
+        for (int j = 0; j < this._state.length; j ++ ){
+            long x = this._shift[j];
+            for (int k = 0; k < BITS; k ++ ){
+                if ((gray >>> k & 1) != 0){
+                    x ^= this._directions[j][k];
+                }
+            }
+            this._state[j] = x;
+        }
+    }
+
+    /**
+     * Computes the direction numbers v_1 .. v_BITS of a dimension from the recurrence
+     * m_k = 2 a_1 m_(k-1) ^ 4 a_2 m_(k-2) ^ ... ^ 2^s m_(k-s) ^ m_(k-s).
+     *
+     * @param polynomial primitive polynomial of degree s, bit i is the coefficient of x^i
+     * @param m (s)
+     *          Initial direction numbers, m_k is odd and below 2^k
+     * @return (BITS) the direction numbers scaled to BITS bits
+     */
+    private static long[] directions(long polynomial, int[] m){
+        int s = m.length;
+        long[] mk = new long[BITS];
+        for (int k = 0; k < BITS; k ++ ){
+            if (k < s){
+                mk[k] = m[k];
+                continue;
+            }
+            long value = mk[k - s] ^ (mk[k - s] << s);
+            for (int i = 1; i < s; i ++ ){
+                if ((polynomial >>> (s - i) & 1) != 0){
+                    value ^= mk[k - i] << i;
+                }
+            }
+            mk[k] = value;
+        }
+
+        long[] v = new long[BITS];
+        for (int k = 0; k < BITS; k ++ ){
+            v[k] = mk[k] << (BITS - 1 - k);
+        }
+        return v;
+    }
+
+    /**
+     * Multiplies the direction numbers with a random lower triangular binary matrix
+     * with unit diagonal. Bit i of the result, counted from the most significant bit,
+     * is the parity of the bits 0 .. i of the direction number selected by row i.
+     */
+    private static void scramble(long[] v, Random random){
+        long[] rows = new long[BITS];
+        for (int i = 0; i < BITS; i ++ ){
+            long diagonal = 1L << (BITS - 1 - i);
+            long above = ~((diagonal << 1) - 1) & ((1L << BITS) - 1);
+            rows[i] = diagonal | (random.nextLong() & above);
+        }
+        for (int k = 0; k < BITS; k ++ ){
+            long x = 0;
+            for (int i = 0; i < BITS; i ++ ){
+                if ((Long.bitCount(rows[i] & v[k]) & 1) != 0){
+                    x |= 1L << (BITS - 1 - i);
+                }
+            }
+            v[k] = x;
+        }
+    }
+
+    /**
+     * Returns the next primitive polynomial over GF(2) after the given one, ordered by
+     * degree and then by the coefficients as in the table of Joe and Kuo.
+     */
+    private static long next_primitive(long polynomial){
+        long p = polynomial + 1;
+        while (true){
+            int s = 63 - Long.numberOfLeadingZeros(p);
+            if ((p & 1) != 0 && s > 0 && is_primitive(p, s)){
+                return p;
+            }
+            p ++;
+        }
+    }
+
+    /**
+     * A polynomial of degree s is primitive if x has the order 2^s - 1 modulo the polynomial.
+     */
+    private static boolean is_primitive(long p, int s){
+        long order = (1L << s) - 1;
+        if (power(p, s, order) != 1){
+            return false;
+        }
+        long rest = order;
+        for (long q = 2; q * q <= rest; q ++ ){
+            if (rest % q == 0){
+                if (power(p, s, order / q) == 1){
+                    return false;
+                }
+                while (rest % q == 0){
+                    rest /= q;
+                }
+            }
+        }
+        return rest == 1 || rest == order || power(p, s, order / rest) != 1;
+    }
+
+    /**
+     * Computes x^e modulo the polynomial p of degree s.
+     */
+    private static long power(long p, int s, long e){
+        long result = 1;
+        long base = s == 1 ? 2 ^ p : 2;
+        while (e > 0){
+            if ((e & 1) != 0){
+                result = multiply(result, base, p, s);
+            }
+            base = multiply(base, base, p, s);
+            e >>>= 1;
+        }
+        return result;
+    }
+
+    private static long multiply(long a, long b, long p, int s){
+        long result = 0;
+        while (b != 0){
+            if ((b & 1) != 0){
+                result ^= a;
+            }
+            b >>>= 1;
+            a <<= 1;
+            if ((a >>> s & 1) != 0){
+                a ^= p;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+package algorithm.kernels;
+
+public class ARDSquaredExponentialKernel implements DifferentiableKernel<double[]>, ParametricKernel<double[]>, StationaryKernel {
+
+    private double[] _inv_sq_lengthscales;
+    private double _variance;
+    private double[] _theta;
+
+    /**
+     * Bounds of the log length scales, suited to inputs that are normalized to [0, 1].
+     */
+    private static final double MIN_LOG_LENGTHSCALE = Math.log(1e-3);
+    private static final double MAX_LOG_LENGTHSCALE = Math.log(1e2);
+    /**
+     * Bounds of the log signal variance.
+     */
+    private static final double MIN_LOG_VARIANCE = Math.log(1e-6);
+    private static final double MAX_LOG_VARIANCE = Math.log(1e3);
+
+    /**
+     * Squared exponential kernel with automatic relevance determination,
+     * k(x, y) = variance * exp(-0.5 * sum_d (x_d - y_d)^2 / l_d^2), with one length
+     * scale l_d per input dimension. The hyperparameters are
+     * (log l_1, ..., log l_D, log variance).
+     *
+     * @param lengthscales (D)
+     *                     Length scale of each input dimension
+     * @param variance double
+     *                 Signal variance
+     */
+    public ARDSquaredExponentialKernel(double[] lengthscales, double variance){
+        int dim = lengthscales.length;
+        this._inv_sq_lengthscales = new double[dim];
+        this._theta = new double[dim + 1];
+        for (int i = 0; i < dim; i ++ ){
+            if (lengthscales[i] <= 0){
+                throw new IllegalArgumentException("Invalid length scale l = " + lengthscales[i]);
+            }
+            this._inv_sq_lengthscales[i] = 1.0 / (lengthscales[i] * lengthscales[i]);
+            this._theta[i] = Math.log(lengthscales[i]);
+        }
+        if (variance <= 0){
+            throw new IllegalArgumentException("Invalid signal variance = " + variance);
+        }
+        this._variance = variance;
+        this._theta[dim] = Math.log(variance);
+    }
+
+    @Override
+    public double k(double[] x, double[] y){
+        if (x.length != y.length || x.length != this._inv_sq_lengthscales.length){
+            throw new IllegalArgumentException(String.format("Arrays have different length: x[%d], y[%d]", x.length, y.length));
+        }
+        double d = 0;
+        for (int i = 0; i < x.length; i ++ ){
+            double v = x[i] - y[i];
+            d += v * v * this._inv_sq_lengthscales[i];
+        }
+        return this._variance * Math.exp(-0.5 * d);
+    }
+
+    @Override
+    public double gradient(double[] x, double[] y, double[] grad){
+        double k = k(x, y);
+        for (int i = 0; i < x.length; i ++ ){
+            grad[i] = -k * (x[i] - y[i]) * this._inv_sq_lengthscales[i];
+        }
+        return k;
+    }
+
+    @Override
+    public double[] get_hyperparameters(){
+        return this._theta.clone();
+    }
+
+    @Override
+    public double[] get_lower_bounds(){
+        double[] result = new double[this._theta.length];
+        for (int i = 0; i < result.length - 1; i ++ ){
+            result[i] = MIN_LOG_LENGTHSCALE;
+        }
+        result[result.length - 1] = MIN_LOG_VARIANCE;
+        return result;
+    }
+
+    @Override
+    public double[] get_upper_bounds(){
+        double[] result = new double[this._theta.length];
+        for (int i = 0; i < result.length - 1; i ++ ){
+            result[i] = MAX_LOG_LENGTHSCALE;
+        }
+        result[result.length - 1] = MAX_LOG_VARIANCE;
+        return result;
+    }
+
+    @Override
+    public ARDSquaredExponentialKernel with_hyperparameters(double[] theta){
+        int dim = theta.length - 1;
+        double[] lengthscales = new double[dim];
+        for (int i = 0; i < dim; i ++ ){
+            lengthscales[i] = Math.exp(theta[i]);
+        }
+        return new ARDSquaredExponentialKernel(lengthscales, Math.exp(theta[dim]));
+    }
+
+    @Override
+    public double hyperparameter_gradient(double[] x, double[] y, double[] grad){
+        double k = k(x, y);
+        for (int i = 0; i < x.length; i ++ ){
+            double v = x[i] - y[i];
+            grad[i] = k * v * v * this._inv_sq_lengthscales[i];
+        }
+        grad[x.length] = k;
+        return k;
+    }
+
+    @Override
+    public double[] get_distance_weights(){
+        return this._inv_sq_lengthscales.clone();
+    }
+
+    @Override
+    public void profile(double[] r, int n){
+        for (int i = 0; i < n; i ++ ){
+            r[i] = this._variance * Math.exp(-0.5 * r[i]);
+        }
+    }
+
+    @Override
+    public void hyperparameter_gradient(double k, double[] s, int offset, double[] grad){
+        int dim = this._inv_sq_lengthscales.length;
+        for (int i = 0; i < dim; i ++ ){
+            grad[i] = k * s[offset + i] * this._inv_sq_lengthscales[i];
+        }
+        grad[dim] = k;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder lengthscales = new StringBuilder();
+        for (int i = 0; i < this._inv_sq_lengthscales.length; i ++ ){
+            lengthscales.append(i == 0 ? "" : ", ").append(String.format("%.4f", 1.0 / Math.sqrt(this._inv_sq_lengthscales[i])));
+        }
+        return String.format("ARD Squared Exponential Kernel (lengthscales = [%s], variance = %.4g)", lengthscales, this._variance);
+    }
+}
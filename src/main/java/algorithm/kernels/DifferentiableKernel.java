@@ -0,0 +1,17 @@
+package algorithm.kernels;
+
+import smile.math.kernel.MercerKernel;
+
+public interface DifferentiableKernel<T> extends MercerKernel<T> {
+
+    /**
+     * Computes the gradient of k(x, y) with respect to x.
+     *
+     * @param x first argument of the kernel
+     * @param y second argument of the kernel
+     * @param grad (D)
+     *             Output, d k(x, y) / d x
+     * @return k(x, y)
+     */
+    double gradient(T x, T y, double[] grad);
+}
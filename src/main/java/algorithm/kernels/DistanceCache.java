@@ -0,0 +1,177 @@
+package algorithm.kernels;
+
+import java.util.Arrays;
+
+public class DistanceCache {
+
+    private int _components;
+    private int _n;
+    /**
+     * Points that were added to the cache.
+     */
+    private double[][] _X;
+    /**
+     * Row i holds the squared distance components of point i to the points 0 .. i - 1,
+     * the components of the pair (i, j) start at j * components.
+     */
+    private double[][] _rows;
+
+    /**
+     * Cache of the pairwise squared distances of a growing set of points, from which the
+     * kernel matrix of a stationary kernel is assembled for any hyperparameters and noise
+     * in a single pass without calling the kernel for every pair. Adding a point computes
+     * one new row, so the cache follows an append-only store of observations.
+     *
+     * @param components int
+     *                   1 to cache ||x - y||^2 for isotropic kernels, or D to cache
+     *                   (x_d - y_d)^2 of every input dimension for ARD kernels
+     */
+    public DistanceCache(int components){
+        this._components = components;
+        this._n = 0;
+        this._X = new double[16][];
+        this._rows = new double[16][];
+    }
+
+    /**
+     * Creates the cache of the given points with the components the kernel needs.
+     *
+     * @param kernel the kernel the cache is used for
+     * @param X (N, D)
+     *          Input points
+     * @return the cache
+     */
+    public static DistanceCache create(StationaryKernel kernel, double[][] X){
+        DistanceCache result = new DistanceCache(kernel.get_distance_weights().length);
+        result.append(X);
+        return result;
+    }
+
+    /**
+     * Adds points and computes their distances to all points of the cache.
+     *
+     * @param X (k, D)
+     *          New input points
+     */
+    public void append(double[][] X){
+        int k = X.length;
+        if (this._n + k > this._X.length){
+            int capacity = Math.max(this._n + k, this._X.length * 2);
+            this._X = Arrays.copyOf(this._X, capacity);
+            this._rows = Arrays.copyOf(this._rows, capacity);
+        }
+
+        int c = this._components;
+        for (int r = 0; r < k; r ++ ){
+            double[] x = X[r];
+            if (c != 1 && c != x.length){
+                throw new IllegalArgumentException(String.format("Dimension mismatch: %d != %d", x.length, c));
+            }
+            int i = this._n;
+            double[] row = new double[i * c];
+            for (int j = 0; j < i; j ++ ){
+                double[] y = this._X[j];
+                if (c == 1){
+                    double d = 0.0;
+                    for (int q = 0; q < x.length; q ++ ){
+                        double v = x[q] - y[q];
+                        d += v * v;
+                    }
+                    row[j] = d;
+                }
+                else{
+                    int offset = j * c;
+                    for (int q = 0; q < c; q ++ ){
+                        double v = x[q] - y[q];
+                        row[offset + q] = v * v;
+                    }
+                }
+            }
+            this._X[i] = x;
+            this._rows[i] = row;
+            this._n ++;
+        }
+    }
+
+    /**
+     * Removes all but the first n points.
+     */
+    public void truncate(int n){
+        for (int i = n; i < this._n; i ++ ){
+            this._X[i] = null;
+            this._rows[i] = null;
+        }
+        this._n = Math.min(n, this._n);
+    }
+
+    public int size(){
+        return this._n;
+    }
+
+    public int components(){
+        return this._components;
+    }
+
+    /**
+     * Returns the squared distance components of point i to the points 0 .. i - 1. The
+     * array is owned by the cache and must not be modified.
+     */
+    public double[] get_row(int i){
+        return this._rows[i];
+    }
+
+    /**
+     * Assembles the lower triangle of the kernel matrix of all points plus noise on the diagonal.
+     *
+     * @param kernel the kernel
+     * @param noise value added to the diagonal
+     * @return (N, N) row i holds the entries 0 .. i
+     */
+    public double[][] kernel_matrix(StationaryKernel kernel, double noise){
+        return kernel_rows(kernel, noise, 0, this._n);
+    }
+
+    /**
+     * Assembles the rows from .. to - 1 of the lower triangle of the kernel matrix plus
+     * noise on the diagonal, e.g. the border of the matrix after points were appended.
+     *
+     * @param kernel the kernel
+     * @param noise value added to the diagonal
+     * @param from first row
+     * @param to end of the rows (exclusive)
+     * @return (to - from, >= to) row r holds the entries 0 .. from + r of row from + r
+     */
+    public double[][] kernel_rows(StationaryKernel kernel, double noise, int from, int to){
+        double[] w = kernel.get_distance_weights();
+        int c = this._components;
+        if (w.length != c){
+            throw new IllegalArgumentException(String.format("The kernel needs %d distance components, the cache has %d", w.length, c));
+        }
+
+        double[][] result = new double[to - from][];
+        for (int i = from; i < to; i ++ ){
+            double[] s = this._rows[i];
+            double[] r = new double[i + 1];
+            if (c == 1){
+                double w_0 = w[0];
+                for (int j = 0; j < i; j ++ ){
+                    r[j] = w_0 * s[j];
+                }
+            }
+            else{
+                for (int j = 0, offset = 0; j < i; j ++, offset += c){
+                    double d = 0.0;
+                    for (int q = 0; q < c; q ++ ){
+                        d += s[offset + q] * w[q];
+                    }
+                    r[j] = d;
+                }
+            }
+            // r[i] = 0 is the distance of the point to itself
+            kernel.profile(r, i + 1);
+            r[i] += noise;
+            result[i - from] = r;
+        }
+        return result;
+    }
+}
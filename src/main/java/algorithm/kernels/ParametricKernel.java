@@ -0,0 +1,48 @@
+package algorithm.kernels;
+
+import smile.math.kernel.MercerKernel;
+
+public interface ParametricKernel<T> extends MercerKernel<T> {
+
+    /**
+     * Returns the hyperparameters of the kernel in log space.
+     *
+     * @return (P)
+     */
+    double[] get_hyperparameters();
+
+    /**
+     * Returns the lower bounds of the hyperparameters in log space.
+     *
+     * @return (P)
+     */
+    double[] get_lower_bounds();
+
+    /**
+     * Returns the upper bounds of the hyperparameters in log space.
+     *
+     * @return (P)
+     */
+    double[] get_upper_bounds();
+
+    /**
+     * Creates a kernel of the same type with other hyperparameters. Kernels are
+     * immutable, so a model can detect changed hyperparameters by identity.
+     *
+     * @param theta (P)
+     *              Hyperparameters in log space
+     * @return the new kernel
+     */
+    ParametricKernel<T> with_hyperparameters(double[] theta);
+
+    /**
+     * Computes the gradient of k(x, y) with respect to the (log space) hyperparameters.
+     *
+     * @param x first argument of the kernel
+     * @param y second argument of the kernel
+     * @param grad (P)
+     *             Output, d k(x, y) / d theta
+     * @return k(x, y)
+     */
+    double hyperparameter_gradient(T x, T y, double[] grad);
+}
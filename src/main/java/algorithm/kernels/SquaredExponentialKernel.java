@@ -0,0 +1,65 @@
+package algorithm.kernels;
+
+public class SquaredExponentialKernel implements DifferentiableKernel<double[]>, StationaryKernel {
+
+    private double _gamma;
+
+    /**
+     * Squared exponential (Gaussian) kernel k(x, y) = exp(-||x - y||^2 / (2 * sigma^2)).
+     * Computes the same values as smile's GaussianKernel, but also provides the gradient
+     * with respect to x.
+     *
+     * @param sigma double
+     *              Length scale of the kernel
+     */
+    public SquaredExponentialKernel(double sigma){
+        if (sigma <= 0){
+            throw new IllegalArgumentException("Invalid length scale sigma = " + sigma);
+        }
+        this._gamma = 0.5 / (sigma * sigma);
+    }
+
+    @Override
+    public double k(double[] x, double[] y){
+        if (x.length != y.length){
+            throw new IllegalArgumentException(String.format("Arrays have different length: x[%d], y[%d]", x.length, y.length));
+        }
+        double d = 0;
+        for (int i = 0; i < x.length; i ++ ){
+            double v = x[i] - y[i];
+            d += v * v;
+        }
+        return Math.exp(-this._gamma * d);
+    }
+
+    @Override
+    public double gradient(double[] x, double[] y, double[] grad){
+        double k = k(x, y);
+        for (int i = 0; i < x.length; i ++ ){
+            grad[i] = -2 * this._gamma * k * (x[i] - y[i]);
+        }
+        return k;
+    }
+
+    @Override
+    public double[] get_distance_weights(){
+        return new double[]{this._gamma};
+    }
+
+    @Override
+    public void profile(double[] r, int n){
+        for (int i = 0; i < n; i ++ ){
+            r[i] = Math.exp(-r[i]);
+        }
+    }
+
+    @Override
+    public void hyperparameter_gradient(double k, double[] s, int offset, double[] grad){
+        // The length scale is fixed
+    }
+
+    @Override
+    public String toString(){
+        return String.format("Squared Exponential Kernel (sigma = %.4f)", Math.sqrt(0.5 / this._gamma));
+    }
+}
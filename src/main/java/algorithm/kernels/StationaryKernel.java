@@ -0,0 +1,37 @@
+package algorithm.kernels;
+
+import smile.math.kernel.MercerKernel;
+
+public interface StationaryKernel extends MercerKernel<double[]> {
+
+    /**
+     * Returns the weights w of the squared distance components, so that the kernel
+     * only depends on r = sum_c w_c * s_c. Either one weight per input dimension with
+     * s_c = (x_c - y_c)^2, or a single weight with s_0 = ||x - y||^2.
+     *
+     * @return (D) or (1)
+     */
+    double[] get_distance_weights();
+
+    /**
+     * Turns weighted squared distances into kernel values, in place.
+     *
+     * @param r (>= n)
+     *          Input the weighted squared distances r, output k(r)
+     * @param n number of entries of r that are transformed
+     */
+    void profile(double[] r, int n);
+
+    /**
+     * Computes the gradient of a kernel value with respect to the (log space)
+     * hyperparameters from the squared distance components of the pair. Kernels
+     * without hyperparameters leave grad untouched.
+     *
+     * @param k the kernel value of the pair
+     * @param s squared distance components, the ones of the pair start at offset
+     * @param offset position of the first component of the pair in s
+     * @param grad (P)
+     *             Output, d k / d theta
+     */
+    void hyperparameter_gradient(double k, double[] s, int offset, double[] grad);
+}
@@ -1,12 +1,32 @@
 package algorithm.maximizers;
 
 import algorithm.acquisition_functions.BaseAcquisitionFunction;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import algorithm.utils.Parallel;
 
 public class BaseMaximizer {
 
     protected BaseAcquisitionFunction _objectiveFunction;
     protected double[] _lower;
     protected double[] _upper;
+    protected ForkJoinPool _pool;
+    /**
+     * Random number generator of maximizers that sample, or null.
+     */
+    protected Random _random;
+
+    /**
+     * Minimal number of points that are scored by one task of the pool.
+     */
+    private static final int MIN_CHUNK_SIZE = 64;
 
     /**
      * Interface for optimizers that maximizing the
@@ -28,4 +48,90 @@ public class BaseMaximizer {
     public double[] maximize() throws Exception{
         return new double[]{0.0};
     }
+
+    /**
+     * Proposes q points that are evaluated together. Override this function if your
+     * maximizer optimizes the joint acquisition value of a batch.
+     *
+     * @param q int
+     *          Number of points of the batch
+     * @return (q, D)
+     *      The points of the batch
+     * @throws Exception throws exception
+     */
+    public double[][] maximize_batch(int q) throws Exception{
+        if (q == 1){
+            return new double[][]{maximize()};
+        }
+        throw new Exception(this.getClass().getSimpleName() + " does not propose batches.");
+    }
+
+    /**
+     * Writes the state of the random number generator to a checkpoint.
+     *
+     * @param out checkpoint stream
+     * @throws IOException throws exception
+     */
+    public void save_state(ObjectOutputStream out) throws IOException{
+        out.writeObject(this._random);
+    }
+
+    /**
+     * Restores the state of the random number generator written by save_state, so a
+     * resumed study proposes the same points as an uninterrupted one.
+     *
+     * @param in checkpoint stream
+     * @throws Exception throws exception
+     */
+    public void load_state(ObjectInputStream in) throws Exception{
+        Random random = (Random) in.readObject();
+        if (random != null){
+            this._random = random;
+        }
+    }
+
+    /**
+     * Sets the pool that is used to score batches of points.
+     *
+     * @param pool ForkJoinPool, or null to score on the calling thread
+     */
+    public void set_pool(ForkJoinPool pool){
+        this._pool = pool;
+    }
+
+    /**
+     * Computes the acquisition values of a batch of points. If a pool is set, the
+     * batch is split into chunks that are scored concurrently. The values do not
+     * depend on the way the batch is split.
+     *
+     * @param X (N, D)
+     *          Points to score
+     * @param y (N)
+     *          Output, acquisition value of each point
+     * @throws Exception throws exception
+     */
+    protected void score(double[][] X, final double[] y) throws Exception{
+        int n = X.length;
+        if (this._pool == null || n <= MIN_CHUNK_SIZE){
+            this._objectiveFunction.compute(X, y);
+            return;
+        }
+
+        int chunk = Math.max(MIN_CHUNK_SIZE, (n + 4 * this._pool.getParallelism() - 1) / (4 * this._pool.getParallelism()));
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = 0; start < n; start += chunk){
+            final int from = start;
+            final double[][] X_chunk = Arrays.copyOfRange(X, start, Math.min(n, start + chunk));
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    double[] y_chunk = new double[X_chunk.length];
+                    _objectiveFunction.compute(X_chunk, y_chunk);
+                    System.arraycopy(y_chunk, 0, y, from, y_chunk.length);
+                    return null;
+                }
+            });
+        }
+        Parallel.invoke(tasks, this._pool);
+    }
 }
@@ -0,0 +1,314 @@
+package algorithm.maximizers;
+
+import org.apache.log4j.*;
+import algorithm.acquisition_functions.BaseAcquisitionFunction;
+import smile.math.matrix.DenseMatrix;
+import smile.math.matrix.EVD;
+import smile.math.matrix.Matrix;
+import utils.ArrayUtils;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+public class CMAES extends BaseMaximizer{
+
+    private Logger logger = Logger.getLogger(CMAES.class);
+
+    private int _nFuncEvals;
+    private double _sigma0;
+
+    /**
+     * A run is stopped when all coordinate deviations of the search distribution fall below this.
+     */
+    private static final double TOL_X = 1e-8;
+    /**
+     * A run is stopped when the best values of recent generations differ less than this.
+     */
+    private static final double TOL_FUN = 1e-12;
+    /**
+     * A run is stopped when the condition number of the covariance matrix exceeds this.
+     */
+    private static final double MAX_CONDITION = 1e14;
+
+    /**
+     * Covariance matrix adaptation evolution strategy (N. Hansen) with IPOP restarts:
+     * whenever a run converges or stagnates, CMA-ES is restarted from a random point with
+     * twice the population size until the evaluation budget is used up. The search runs in
+     * the unit cube, samples outside the bounds are repaired onto the bounds, and every
+     * generation is scored as one batch.
+     *
+     * @param objectiveFunction acquisition function
+     *                          The acquisition function which will be maximized
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     * @param nFuncEvals int
+     *                   The maximum number of acquisition function evaluations over all restarts
+     * @param pool ForkJoinPool
+     *             Pool that scores the generations, or null to score them on the calling thread
+     * @param seed long
+     *             Seed of the sampling
+     */
+    public CMAES(BaseAcquisitionFunction objectiveFunction, double[] lower, double[] upper, int nFuncEvals,
+                 ForkJoinPool pool, long seed) throws Exception{
+        super(objectiveFunction, lower, upper);
+
+        if (lower.length < 2){
+            throw new Exception("CMAES only works in D > 1 dimensions.");
+        }
+
+        this._nFuncEvals = nFuncEvals;
+        this._sigma0 = 0.3;
+        this._random = new Random(seed);
+        set_pool(pool);
+    }
+
+    /**
+     * Maximizes the given acquisition function.
+     *
+     * @return (D)
+     *      Point with highest acquisition value.
+     * @throws Exception throws exception
+     */
+    @Override
+    public double[] maximize() throws Exception{
+        int dim = this._lower.length;
+        int lambda = 4 + (int)(3 * Math.log(dim));
+
+        // The first run starts at the incumbent, the restarts at random points
+        double[] start = normalize(ArrayUtils.Double2double(this._objectiveFunction.get_model().get_incumbent().first()));
+        double[] best = start.clone();
+        double[] best_f = new double[]{evaluate(new double[][]{start})[0]};
+        int n_evals = 1;
+
+        while (n_evals + lambda <= this._nFuncEvals){
+            n_evals += run(start, lambda, this._nFuncEvals - n_evals, best, best_f);
+
+            lambda *= 2;
+            start = new double[dim];
+            for (int i = 0; i < dim; i ++ ){
+                start[i] = this._random.nextDouble();
+            }
+        }
+
+        return unnormalize(best);
+    }
+
+    /**
+     * One CMA-ES run.
+     *
+     * @param mean (D) start point in the unit cube
+     * @param lambda population size
+     * @param budget maximal number of evaluations
+     * @param best (D) best point found so far, updated in place
+     * @param best_f (1) negative acquisition value of best, updated in place
+     * @return the number of evaluations
+     */
+    private int run(double[] mean, int lambda, int budget, double[] best, double[] best_f) throws Exception{
+        int n = mean.length;
+        int mu = lambda / 2;
+
+        double[] weights = new double[mu];
+        double sum = 0, sum_sq = 0;
+        for (int i = 0; i < mu; i ++ ){
+            weights[i] = Math.log(mu + 0.5) - Math.log(i + 1);
+            sum += weights[i];
+        }
+        for (int i = 0; i < mu; i ++ ){
+            weights[i] /= sum;
+            sum_sq += weights[i] * weights[i];
+        }
+        double mu_eff = 1.0 / sum_sq;
+
+        double cc = (4 + mu_eff / n) / (n + 4 + 2 * mu_eff / n);
+        double cs = (mu_eff + 2) / (n + mu_eff + 5);
+        double c1 = 2 / ((n + 1.3) * (n + 1.3) + mu_eff);
+        double cmu = Math.min(1 - c1, 2 * (mu_eff - 2 + 1 / mu_eff) / ((n + 2) * (n + 2) + mu_eff));
+        double damps = 1 + 2 * Math.max(0, Math.sqrt((mu_eff - 1) / (n + 1)) - 1) + cs;
+        double chi_n = Math.sqrt(n) * (1 - 1.0 / (4 * n) + 1.0 / (21.0 * n * n));
+
+        double sigma = this._sigma0;
+        double[] pc = new double[n];
+        double[] ps = new double[n];
+        double[][] C = new double[n][n];
+        double[][] B = new double[n][n];
+        double[] D = new double[n];
+        for (int i = 0; i < n; i ++ ){
+            C[i][i] = 1;
+            B[i][i] = 1;
+            D[i] = 1;
+        }
+        mean = mean.clone();
+
+        int history = 10 + (int)Math.ceil(30.0 * n / lambda);
+        LinkedList<Double> best_history = new LinkedList<Double>();
+        int eigen_interval = Math.max(1, (int)(lambda / (10.0 * n * (c1 + cmu))));
+
+        int n_evals = 0;
+        for (int gen = 0; n_evals + lambda <= budget; gen ++ ){
+            // Sample the generation: x = m + sigma * B * D * z
+            double[][] z = new double[lambda][n];
+            double[][] x = new double[lambda][n];
+            for (int k = 0; k < lambda; k ++ ){
+                double[] bdz = new double[n];
+                for (int i = 0; i < n; i ++ ){
+                    z[k][i] = this._random.nextGaussian();
+                }
+                for (int i = 0; i < n; i ++ ){
+                    double v = 0;
+                    for (int j = 0; j < n; j ++ ){
+                        v += B[i][j] * D[j] * z[k][j];
+                    }
+                    bdz[i] = v;
+                }
+                for (int i = 0; i < n; i ++ ){
+                    x[k][i] = Math.min(1, Math.max(0, mean[i] + sigma * bdz[i]));
+                }
+            }
+
+            final double[] f = evaluate(x);
+            n_evals += lambda;
+
+            Integer[] order = new Integer[lambda];
+            for (int k = 0; k < lambda; k ++ ){
+                order[k] = k;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int c = Double.compare(f[a], f[b]);
+                    return c != 0 ? c : Integer.compare(a, b);
+                }
+            });
+            if (f[order[0]] < best_f[0]){
+                best_f[0] = f[order[0]];
+                System.arraycopy(x[order[0]], 0, best, 0, n);
+            }
+
+            // Recombination of the repaired samples
+            double[] old_mean = mean;
+            mean = new double[n];
+            for (int k = 0; k < mu; k ++ ){
+                for (int i = 0; i < n; i ++ ){
+                    mean[i] += weights[k] * x[order[k]][i];
+                }
+            }
+            double[] y_w = new double[n];
+            for (int i = 0; i < n; i ++ ){
+                y_w[i] = (mean[i] - old_mean[i]) / sigma;
+            }
+
+            // Step size path: ps = (1 - cs) * ps + sqrt(cs * (2 - cs) * mu_eff) * C^-1/2 * y_w
+            double[] bt_y = new double[n];
+            for (int j = 0; j < n; j ++ ){
+                double v = 0;
+                for (int i = 0; i < n; i ++ ){
+                    v += B[i][j] * y_w[i];
+                }
+                bt_y[j] = v / D[j];
+            }
+            double ps_norm = 0;
+            for (int i = 0; i < n; i ++ ){
+                double v = 0;
+                for (int j = 0; j < n; j ++ ){
+                    v += B[i][j] * bt_y[j];
+                }
+                ps[i] = (1 - cs) * ps[i] + Math.sqrt(cs * (2 - cs) * mu_eff) * v;
+                ps_norm += ps[i] * ps[i];
+            }
+            ps_norm = Math.sqrt(ps_norm);
+
+            boolean hsig = ps_norm / Math.sqrt(1 - Math.pow(1 - cs, 2 * (gen + 1))) / chi_n < 1.4 + 2.0 / (n + 1);
+            for (int i = 0; i < n; i ++ ){
+                pc[i] = (1 - cc) * pc[i] + (hsig ? Math.sqrt(cc * (2 - cc) * mu_eff) * y_w[i] : 0);
+            }
+
+            // Covariance update with the rank-one and the rank-mu term
+            double delta = hsig ? 0 : cc * (2 - cc);
+            for (int i = 0; i < n; i ++ ){
+                for (int j = 0; j <= i; j ++ ){
+                    double rank_mu = 0;
+                    for (int k = 0; k < mu; k ++ ){
+                        double[] x_k = x[order[k]];
+                        rank_mu += weights[k] * (x_k[i] - old_mean[i]) * (x_k[j] - old_mean[j]);
+                    }
+                    rank_mu /= sigma * sigma;
+                    double v = (1 - c1 - cmu) * C[i][j] + c1 * (pc[i] * pc[j] + delta * C[i][j]) + cmu * rank_mu;
+                    C[i][j] = v;
+                    C[j][i] = v;
+                }
+            }
+
+            sigma *= Math.exp((cs / damps) * (ps_norm / chi_n - 1));
+
+            if (gen % eigen_interval == 0){
+                DenseMatrix M = Matrix.newInstance(C);
+                M.setSymmetric(true);
+                EVD evd = M.eigen();
+                double[] values = evd.getEigenValues();
+                DenseMatrix vectors = evd.getEigenVectors();
+                for (int i = 0; i < n; i ++ ){
+                    D[i] = Math.sqrt(Math.max(values[i], 1e-20));
+                    for (int j = 0; j < n; j ++ ){
+                        B[i][j] = vectors.get(i, j);
+                    }
+                }
+            }
+
+            // Stopping criteria
+            best_history.addLast(f[order[0]]);
+            if (best_history.size() > history){
+                best_history.removeFirst();
+            }
+            double max_sd = 0, min_d = Double.MAX_VALUE, max_d = 0;
+            for (int i = 0; i < n; i ++ ){
+                max_sd = Math.max(max_sd, sigma * Math.sqrt(C[i][i]));
+                min_d = Math.min(min_d, D[i]);
+                max_d = Math.max(max_d, D[i]);
+            }
+            double range = f[order[lambda - 1]] - f[order[0]];
+            if (best_history.size() == history){
+                range = Math.max(range, Collections.max(best_history) - Collections.min(best_history));
+            }
+            if (max_sd < TOL_X || range < TOL_FUN || (max_d / min_d) * (max_d / min_d) > MAX_CONDITION){
+                if (logger.isDebugEnabled()){
+                    logger.debug(String.format("CMA-ES run with population %d stopped after %d generations", lambda, gen + 1));
+                }
+                break;
+            }
+        }
+        return n_evals;
+    }
+
+    private double[] normalize(double[] x){
+        double[] result = new double[x.length];
+        for (int i = 0; i < x.length; i ++ ){
+            result[i] = (x[i] - this._lower[i]) / (this._upper[i] - this._lower[i]);
+        }
+        return result;
+    }
+
+    private double[] unnormalize(double[] x){
+        double[] result = new double[x.length];
+        for (int i = 0; i < x.length; i ++ ){
+            result[i] = this._lower[i] + (this._upper[i] - this._lower[i]) * x[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the negative acquisition values of points of the unit cube.
+     */
+    private double[] evaluate(double[][] points) throws Exception{
+        double[][] X = new double[points.length][];
+        for (int i = 0; i < points.length; i ++ ){
+            X[i] = unnormalize(points[i]);
+        }
+        double[] y = new double[X.length];
+        score(X, y);
+        for (int i = 0; i < y.length; i ++ ){
+            y[i] = -y[i];
+        }
+        return y;
+    }
+}
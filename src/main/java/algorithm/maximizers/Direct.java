@@ -1,13 +1,37 @@
 package algorithm.maximizers;
 
+import org.apache.log4j.*;
 import algorithm.acquisition_functions.BaseAcquisitionFunction;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class Direct extends BaseMaximizer{
 
+    private Logger logger = Logger.getLogger(Direct.class);
+
     private int _nFuncEvals;
     private int _nIters;
     private boolean _verbose;
 
+    /**
+     * Jones' epsilon, minimal relative improvement a rectangle has to promise
+     * to be potentially optimal.
+     */
+    private static final double EPSILON = 1e-4;
+
+    /**
+     * Hyper-rectangle of the unit cube. All sides are divided into thirds k_j times.
+     * Since always the longest sides are divided, every k_j is either k or k + 1, so
+     * the total number of divisions determines the size of a rectangle.
+     */
+    private static class Rectangle {
+        double[] center;
+        int[] divisions;
+        int level;
+        double f;
+        long id;
+    }
+
     /**
      * Interface for the DIRECT algorithm by D. R. Jones, C. D. Perttunen
      * and B. E. Stuckmann
@@ -23,7 +47,7 @@ public class Direct extends BaseMaximizer{
      * @param nIters int
      *               The maximum number of iterations
      * @param verbose boolean
-     *                Suppress Direct's output.
+     *                Log the progress of every iteration at debug level.
      */
     public Direct(BaseAcquisitionFunction objectiveFunction, double[] lower, double[] upper, int nFuncEvals, int nIters, boolean verbose){
         super(objectiveFunction, lower, upper);
@@ -33,6 +57,31 @@ public class Direct extends BaseMaximizer{
         this._verbose = verbose;
     }
 
+    /**
+     * Interface for the DIRECT algorithm whose sampled centres are scored on a pool.
+     *
+     * @param objectiveFunction acquisition function
+     *                          The acquisition function which will be maximized
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     * @param nFuncEvals int
+     *                   The maximum number of function evaluations
+     * @param nIters int
+     *               The maximum number of iterations
+     * @param verbose boolean
+     *                Log the progress of every iteration at debug level.
+     * @param pool ForkJoinPool
+     *             Pool that scores the centres of all rectangles divided in one iteration,
+     *             or null to score them on the calling thread
+     */
+    public Direct(BaseAcquisitionFunction objectiveFunction, double[] lower, double[] upper, int nFuncEvals, int nIters,
+                  boolean verbose, ForkJoinPool pool){
+        this(objectiveFunction, lower, upper, nFuncEvals, nIters, verbose);
+        set_pool(pool);
+    }
+
     /**
      * Maximizes the given acquisition function.
      *
@@ -42,6 +91,247 @@ public class Direct extends BaseMaximizer{
      */
     @Override
     public double[] maximize() throws Exception{
-         return new double[]{0d};
+        int dim = this._lower.length;
+
+        // Rectangles grouped by level, the best (lowest -acquisition) rectangle of each group first
+        TreeMap<Integer, PriorityQueue<Rectangle>> groups = new TreeMap<Integer, PriorityQueue<Rectangle>>();
+        long next_id = 0;
+
+        Rectangle root = new Rectangle();
+        root.center = new double[dim];
+        Arrays.fill(root.center, 0.5);
+        root.divisions = new int[dim];
+        root.level = 0;
+        root.id = next_id ++;
+        root.f = evaluate(new double[][]{root.center})[0];
+        int n_evals = 1;
+        add(groups, root);
+
+        Rectangle best = root;
+
+        for (int it = 0; it < this._nIters && n_evals < this._nFuncEvals; it ++ ){
+            List<Rectangle> selected = potentially_optimal(groups, best.f, dim);
+
+            // Sample the centres of the thirds along the longest sides of every selected rectangle
+            List<Rectangle> divided = new ArrayList<Rectangle>();
+            List<int[]> sides = new ArrayList<int[]>();
+            List<double[]> points = new ArrayList<double[]>();
+            for (Rectangle rect : selected){
+                int[] longest = longest_sides(rect);
+                if (n_evals + points.size() + 2 * longest.length > this._nFuncEvals){
+                    break;
+                }
+                remove(groups, rect);
+                divided.add(rect);
+                sides.add(longest);
+
+                double delta = side(rect.divisions[longest[0]] + 1);
+                for (int i : longest){
+                    double[] plus = rect.center.clone();
+                    double[] minus = rect.center.clone();
+                    plus[i] += delta;
+                    minus[i] -= delta;
+                    points.add(plus);
+                    points.add(minus);
+                }
+            }
+
+            if (divided.isEmpty()){
+                break;
+            }
+
+            double[] f = evaluate(points.toArray(new double[points.size()][]));
+            n_evals += f.length;
+
+            int offset = 0;
+            for (int r = 0; r < divided.size(); r ++ ){
+                Rectangle rect = divided.get(r);
+                final int[] longest = sides.get(r);
+                final double[] w = new double[dim];
+                Rectangle[] plus = new Rectangle[dim];
+                Rectangle[] minus = new Rectangle[dim];
+                for (int i : longest){
+                    plus[i] = child(points.get(offset), f[offset], next_id ++);
+                    minus[i] = child(points.get(offset + 1), f[offset + 1], next_id ++);
+                    w[i] = Math.min(f[offset], f[offset + 1]);
+                    offset += 2;
+                }
+
+                // Divide along the dimension with the best samples first, so the best samples
+                // end up in the largest rectangles
+                Integer[] order = new Integer[longest.length];
+                for (int i = 0; i < longest.length; i ++ ){
+                    order[i] = longest[i];
+                }
+                Arrays.sort(order, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer a, Integer b) {
+                        int c = Double.compare(w[a], w[b]);
+                        return c != 0 ? c : Integer.compare(a, b);
+                    }
+                });
+                for (int i : order){
+                    rect.divisions[i] ++;
+                    rect.level ++;
+                    for (Rectangle c : new Rectangle[]{plus[i], minus[i]}){
+                        c.divisions = rect.divisions.clone();
+                        c.level = rect.level;
+                        add(groups, c);
+                        if (c.f < best.f){
+                            best = c;
+                        }
+                    }
+                }
+                add(groups, rect);
+            }
+
+            if (this._verbose && logger.isDebugEnabled()){
+                logger.debug(String.format("DIRECT iteration %d: %d evaluations, best acquisition value %f", it, n_evals, -best.f));
+            }
+        }
+
+        return unnormalize(best.center);
+    }
+
+    /**
+     * Finds the potentially optimal rectangles, i.e. the lower right convex hull
+     * of the best rectangle of every size, filtered by Jones' epsilon condition.
+     */
+    private List<Rectangle> potentially_optimal(TreeMap<Integer, PriorityQueue<Rectangle>> groups, double f_min, int dim){
+        // Best rectangle of every size, ordered by increasing size
+        List<Rectangle> heads = new ArrayList<Rectangle>();
+        for (PriorityQueue<Rectangle> group : groups.descendingMap().values()){
+            heads.add(group.peek());
+        }
+
+        // Start at the lowest value, for ties at the largest rectangle
+        int start = 0;
+        for (int i = 1; i < heads.size(); i ++ ){
+            if (heads.get(i).f <= heads.get(start).f){
+                start = i;
+            }
+        }
+
+        List<Rectangle> result = new ArrayList<Rectangle>();
+        double threshold = f_min - EPSILON * Math.abs(f_min);
+        int current = start;
+        while (true){
+            Rectangle rect = heads.get(current);
+            double d = size(rect.level, dim);
+
+            int next = -1;
+            double slope = Double.POSITIVE_INFINITY;
+            for (int i = current + 1; i < heads.size(); i ++ ){
+                Rectangle other = heads.get(i);
+                double s = (other.f - rect.f) / (size(other.level, dim) - d);
+                if (s <= slope){
+                    slope = s;
+                    next = i;
+                }
+            }
+
+            if (next == -1 || rect.f - slope * d <= threshold){
+                result.add(rect);
+            }
+            if (next == -1){
+                break;
+            }
+            current = next;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the dimensions of the longest sides of a rectangle.
+     */
+    private int[] longest_sides(Rectangle rect){
+        int min = Integer.MAX_VALUE, count = 0;
+        for (int k : rect.divisions){
+            if (k < min){
+                min = k;
+                count = 0;
+            }
+            if (k == min){
+                count ++;
+            }
+        }
+        int[] result = new int[count];
+        for (int i = 0, j = 0; i < rect.divisions.length; i ++ ){
+            if (rect.divisions[i] == min){
+                result[j ++ ] = i;
+            }
+        }
+        return result;
+    }
+
+    private Rectangle child(double[] center, double f, long id){
+        Rectangle result = new Rectangle();
+        result.center = center;
+        result.f = f;
+        result.id = id;
+        return result;
+    }
+
+    private static void add(TreeMap<Integer, PriorityQueue<Rectangle>> groups, Rectangle rect){
+        PriorityQueue<Rectangle> group = groups.get(rect.level);
+        if (group == null){
+            group = new PriorityQueue<Rectangle>(11, new Comparator<Rectangle>() {
+                @Override
+                public int compare(Rectangle a, Rectangle b) {
+                    int c = Double.compare(a.f, b.f);
+                    return c != 0 ? c : Long.compare(a.id, b.id);
+                }
+            });
+            groups.put(rect.level, group);
+        }
+        group.add(rect);
+    }
+
+    private static void remove(TreeMap<Integer, PriorityQueue<Rectangle>> groups, Rectangle rect){
+        PriorityQueue<Rectangle> group = groups.get(rect.level);
+        group.poll();
+        if (group.isEmpty()){
+            groups.remove(rect.level);
+        }
+    }
+
+    /**
+     * Side length of the unit cube after k divisions into thirds.
+     */
+    private static double side(int k){
+        return Math.pow(3, -k);
+    }
+
+    /**
+     * Distance from the center to the vertices of a rectangle after the given number of divisions.
+     */
+    private static double size(int level, int dim){
+        int k = level / dim, r = level % dim;
+        double s = side(k), t = side(k + 1);
+        return 0.5 * Math.sqrt((dim - r) * s * s + r * t * t);
+    }
+
+    private double[] unnormalize(double[] x){
+        double[] result = new double[x.length];
+        for (int i = 0; i < x.length; i ++ ){
+            result[i] = this._lower[i] + (this._upper[i] - this._lower[i]) * x[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the negative acquisition values of points of the unit cube.
+     */
+    private double[] evaluate(double[][] points) throws Exception{
+        double[][] X = new double[points.length][];
+        for (int i = 0; i < points.length; i ++ ){
+            X[i] = unnormalize(points[i]);
+        }
+        double[] y = new double[X.length];
+        score(X, y);
+        for (int i = 0; i < y.length; i ++ ){
+            y[i] = -y[i];
+        }
+        return y;
     }
 }
@@ -0,0 +1,158 @@
+package algorithm.maximizers;
+
+import algorithm.acquisition_functions.BaseAcquisitionFunction;
+import algorithm.initial_design.InitRandomUniform;
+import utils.ArrayUtils;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import algorithm.utils.Parallel;
+
+public class GreedyBatch extends BaseMaximizer{
+
+    private int _nSamples;
+    private int _nTop;
+
+    /**
+     * Proposes batches of points by greedy maximization of the joint acquisition value.
+     * Candidates are sampled like in RandomSampling and ranked by their single point
+     * acquisition value. The batch is then grown one point at a time: in every step the
+     * candidate among the nTop best that maximizes the joint value of the batch together
+     * with the points chosen so far is added. The joint values of one step are computed
+     * concurrently if a pool is given.
+     *
+     * @param objectiveFunction acquisition function
+     *                          The acquisition function which will be maximized. It has to support compute_batch.
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     * @param nSamples int
+     *                 Number of candidates that are sampled
+     * @param nTop int
+     *             Number of best candidates the batch is chosen from
+     * @param pool ForkJoinPool
+     *             Pool that scores the candidates, or null to score them on the calling thread
+     * @param seed long
+     *             Seed of the candidate generator
+     */
+    public GreedyBatch(BaseAcquisitionFunction objectiveFunction, double[] lower, double[] upper, int nSamples, int nTop,
+                       ForkJoinPool pool, long seed) throws Exception{
+        super(objectiveFunction, lower, upper);
+
+        if (nSamples <= 0 || nTop <= 0){
+            throw new Exception("nSamples(value = " + nSamples + ") or nTop(value = " + nTop + ") is invalid in GreedyBatch.GreedyBatch().");
+        }
+
+        this._nSamples = nSamples;
+        this._nTop = Math.min(nTop, nSamples);
+        this._random = new Random(seed);
+        set_pool(pool);
+    }
+
+    /**
+     * Maximizes the given acquisition function.
+     *
+     * @return (D)
+     *      Point with highest acquisition value.
+     * @throws Exception throws exception
+     */
+    @Override
+    public double[] maximize() throws Exception{
+        return maximize_batch(1)[0];
+    }
+
+    /**
+     * Proposes a batch of q points.
+     *
+     * @param q int
+     *          Number of points of the batch, at most nSamples
+     * @return (q, D)
+     *      The points of the batch
+     * @throws Exception throws exception
+     */
+    @Override
+    public double[][] maximize_batch(int q) throws Exception{
+        if (q <= 0 || q > this._nSamples){
+            throw new Exception("q(value = " + q + ") is invalid in GreedyBatch.maximize_batch(), it has to be in [1, "
+                    + this._nSamples + "].");
+        }
+        double[][] candidates = sample();
+        final double[] y = new double[candidates.length];
+        score(candidates, y);
+
+        Integer[] order = new Integer[candidates.length];
+        for (int i = 0; i < order.length; i ++ ){
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int c = Double.compare(y[b], y[a]);
+                return c != 0 ? c : Integer.compare(a, b);
+            }
+        });
+
+        List<double[]> top = new ArrayList<double[]>();
+        for (int i = 0; i < Math.max(this._nTop, q); i ++ ){
+            top.add(candidates[order[i]]);
+        }
+
+        List<double[]> batch = new ArrayList<double[]>();
+        batch.add(top.remove(0));
+        while (batch.size() < q){
+            double[] values = score_batches(batch, top);
+            int best = ArrayUtils.argmax(values);
+            batch.add(top.remove(best));
+        }
+        return batch.toArray(new double[batch.size()][]);
+    }
+
+    /**
+     * Samples the candidates, 70% uniformly in the input space and 30% around the incumbent.
+     */
+    private double[][] sample() throws Exception{
+        int n_uniform = (int)(this._nSamples * 0.7);
+        double[][] rand = InitRandomUniform.get(this._lower, this._upper, n_uniform, this._random);
+        Double[] loc = this._objectiveFunction.get_model().get_incumbent().first();
+
+        int n = this._nSamples - n_uniform;
+        int m = this._lower.length;
+        double[][] rand_incs = new double[n][m];
+        for (int i = 0; i < n; i ++ ){
+            for (int j = 0; j < m; j ++ ){
+                double v = loc[j] + this._random.nextGaussian() * 0.1;
+                v = Math.max(v, this._lower[j]);
+                v = Math.min(v, this._upper[j]);
+                rand_incs[i][j] = v;
+            }
+        }
+        return ArrayUtils.concatenate(rand, rand_incs);
+    }
+
+    /**
+     * Computes the joint acquisition value of the batch extended by each of the candidates.
+     */
+    private double[] score_batches(List<double[]> batch, List<double[]> candidates) throws Exception{
+        final double[] values = new double[candidates.size()];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < candidates.size(); i ++ ){
+            final int idx = i;
+            final double[][] X = new double[batch.size() + 1][];
+            for (int j = 0; j < batch.size(); j ++ ){
+                X[j] = batch.get(j);
+            }
+            X[batch.size()] = candidates.get(i);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    values[idx] = _objectiveFunction.compute_batch(X);
+                    return null;
+                }
+            });
+        }
+
+        Parallel.invoke(tasks, this._pool);
+        return values;
+    }
+}
@@ -0,0 +1,162 @@
+package algorithm.maximizers;
+
+import algorithm.acquisition_functions.BaseAcquisitionFunction;
+import algorithm.initial_design.InitRandomUniform;
+import algorithm.utils.ProjectedLBFGS;
+import smile.math.DifferentiableMultivariateFunction;
+import utils.ArrayUtils;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import algorithm.utils.Parallel;
+
+public class LBFGSB extends BaseMaximizer{
+
+    private int _nStarts;
+    private int _nCandidates;
+    private int _maxIter;
+
+    /**
+     * Number of corrections kept by L-BFGS.
+     */
+    private static final int MEMORY = 10;
+    /**
+     * Convergence tolerance on the projected gradient.
+     */
+    private static final double GTOL = 1e-6;
+
+    /**
+     * Multi-start maximizer that follows the analytic gradient of the acquisition
+     * function with bound-constrained L-BFGS. The starts are the incumbent and the best
+     * of nCandidates uniformly sampled points. Every start is optimized on its own, so
+     * the starts run concurrently if a pool is given and the result does not depend on
+     * the number of threads.
+     *
+     * @param objectiveFunction acquisition function
+     *                          The acquisition function which will be maximized. It has to provide gradients.
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     * @param nStarts int
+     *                Number of local optimizations
+     * @param nCandidates int
+     *                    Number of random points the starts are chosen from
+     * @param maxIter int
+     *                Maximal number of L-BFGS iterations per start
+     * @param pool ForkJoinPool
+     *             Pool that runs the starts, or null to run them on the calling thread
+     * @param seed long
+     *             Seed of the start point generator
+     */
+    public LBFGSB(BaseAcquisitionFunction objectiveFunction, double[] lower, double[] upper, int nStarts, int nCandidates,
+                  int maxIter, ForkJoinPool pool, long seed) throws Exception{
+        super(objectiveFunction, lower, upper);
+
+        if (nStarts <= 0){
+            throw new Exception("nStarts(value = " + nStarts + ") is invalid in LBFGSB.LBFGSB().");
+        }
+
+        this._nStarts = nStarts;
+        this._nCandidates = Math.max(nCandidates, nStarts);
+        this._maxIter = maxIter;
+        this._random = new Random(seed);
+        set_pool(pool);
+    }
+
+    /**
+     * Maximizes the given acquisition function.
+     *
+     * @return (D)
+     *      Point with highest acquisition value.
+     * @throws Exception throws exception
+     */
+    @Override
+    public double[] maximize() throws Exception{
+        if (!this._objectiveFunction.has_gradient()){
+            throw new Exception(this._objectiveFunction.getClass().getSimpleName() + " does not provide gradients, which LBFGSB requires.");
+        }
+
+        List<double[]> starts = new ArrayList<double[]>();
+        starts.add(ArrayUtils.Double2double(this._objectiveFunction.get_model().get_incumbent().first()));
+
+        if (this._nStarts > 1){
+            double[][] candidates = InitRandomUniform.get(this._lower, this._upper, this._nCandidates, this._random);
+            final double[] y = new double[candidates.length];
+            score(candidates, y);
+
+            Integer[] order = new Integer[candidates.length];
+            for (int i = 0; i < order.length; i ++ ){
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int c = Double.compare(y[b], y[a]);
+                    return c != 0 ? c : Integer.compare(a, b);
+                }
+            });
+            for (int i = 0; i < this._nStarts - 1; i ++ ){
+                starts.add(candidates[order[i]]);
+            }
+        }
+
+        List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+        for (final double[] start : starts){
+            tasks.add(new Callable<double[]>() {
+                @Override
+                public double[] call() {
+                    return optimize(start);
+                }
+            });
+        }
+
+        List<double[]> results = Parallel.invoke(tasks, this._pool);
+
+        // The last entry of every result holds the negative acquisition value
+        int dim = this._lower.length;
+        double[] best = results.get(0);
+        for (double[] result : results){
+            if (result[dim] < best[dim]){
+                best = result;
+            }
+        }
+        return Arrays.copyOf(best, dim);
+    }
+
+    /**
+     * Runs L-BFGS from the given start on the negative acquisition function.
+     *
+     * @return (D + 1) local optimum followed by its negative acquisition value
+     */
+    private double[] optimize(double[] start){
+        final int dim = start.length;
+        DifferentiableMultivariateFunction func = new DifferentiableMultivariateFunction() {
+            @Override
+            public double f(double[] x) {
+                return f(x, new double[dim]);
+            }
+
+            @Override
+            public double f(double[] x, double[] grad) {
+                try{
+                    double value = _objectiveFunction.compute_gradient(x, grad);
+                    for (int i = 0; i < dim; i ++ ){
+                        grad[i] = -grad[i];
+                    }
+                    return -value;
+                }
+                catch (Exception e){
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        double[] x = start.clone();
+        double f = ProjectedLBFGS.minimize(func, MEMORY, x, this._lower, this._upper, GTOL, this._maxIter);
+
+        double[] result = Arrays.copyOf(x, dim + 1);
+        result[dim] = f;
+        return result;
+    }
+}
@@ -4,11 +4,11 @@ import algorithm.acquisition_functions.BaseAcquisitionFunction;
 import algorithm.initial_design.InitRandomUniform;
 import utils.ArrayUtils;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class RandomSampling extends BaseMaximizer{
 
     private int _nSamples;
-    private Random _random;
 
     /**
      * Samples candidates uniformly at random and returns the point with the highest objective value.
@@ -33,6 +33,33 @@ public class RandomSampling extends BaseMaximizer{
         this._random = new Random();
     }
 
+    /**
+     * Samples candidates uniformly at random and returns the point with the highest objective value.
+     * The candidates are drawn on the calling thread from a seeded generator and only their
+     * scoring is split across the pool, so the result only depends on the seed and not on
+     * the number of threads.
+     *
+     * @param obectiveFunction acquisition function
+     *                         The acquisition function which will be maximized
+     * @param lower (D)
+     *              Lower bounds of the input space
+     * @param upper (D)
+     *              Upper bounds of the input space
+     * @param nSamples int
+     *                 Number of candidates that are samples
+     * @param pool ForkJoinPool
+     *             Pool that scores the candidates, or null to score them on the calling thread
+     * @param seed long
+     *             Seed of the candidate generator
+     */
+    public RandomSampling(BaseAcquisitionFunction obectiveFunction, double[] lower, double[] upper, int nSamples,
+                          ForkJoinPool pool, long seed) throws Exception{
+        this(obectiveFunction, lower, upper, nSamples);
+
+        this._random = new Random(seed);
+        set_pool(pool);
+    }
+
     /**
      * Maximizes the given acquisition function.
      *
@@ -41,7 +68,7 @@ public class RandomSampling extends BaseMaximizer{
      * @throws Exception throws exception
      */
     public double[] maximize() throws Exception{
-        double[][] rand = InitRandomUniform.get(this._lower, this._upper, (int)(_nSamples * 0.7));
+        double[][] rand = InitRandomUniform.get(this._lower, this._upper, (int)(_nSamples * 0.7), this._random);
         Double[] loc = this._objectiveFunction.get_model().get_incumbent().first();
 
         int n = this._nSamples - (int)(this._nSamples * 0.7);
@@ -57,10 +84,7 @@ public class RandomSampling extends BaseMaximizer{
         }
         double[][] X = ArrayUtils.concatenate(rand, rand_incs);
         double[] y = new double[X.length];
-
-        for (int i = 0; i < X.length; i ++ ){
-            y[i] = this._objectiveFunction.compute(ArrayUtils.double2Double(X[i]));
-        }
+        score(X, y);
 
         int x_star = ArrayUtils.argmax(y);
         return X[x_star];
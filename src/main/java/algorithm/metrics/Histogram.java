@@ -0,0 +1,124 @@
+package algorithm.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class Histogram {
+
+    /**
+     * Every power of two is split into 2^SUB_BITS buckets, so a value is known up to a
+     * relative error of 2^-SUB_BITS (about 3%).
+     */
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray _counts;
+    private final AtomicLong _count;
+    private final AtomicLong _sum;
+    private final AtomicLong _max;
+
+    /**
+     * Log-linear histogram of non-negative long values, e.g. durations in nanoseconds.
+     * Values below 2^(SUB_BITS + 1) have a bucket of their own, above the buckets grow
+     * with the value. The memory is fixed (about 15 kB) and record is lock free and
+     * does not allocate, so it can be called concurrently on the hot path.
+     */
+    public Histogram(){
+        this._counts = new AtomicLongArray(BUCKETS);
+        this._count = new AtomicLong();
+        this._sum = new AtomicLong();
+        this._max = new AtomicLong();
+    }
+
+    /**
+     * Adds a value, negative values are counted as 0.
+     *
+     * @param value Value to add
+     */
+    public void record(long value){
+        value = Math.max(0, value);
+        this._counts.incrementAndGet(index(value));
+        this._count.incrementAndGet();
+        this._sum.addAndGet(value);
+
+        long max = this._max.get();
+        while (value > max && !this._max.compareAndSet(max, value)){
+            max = this._max.get();
+        }
+    }
+
+    public long count(){
+        return this._count.get();
+    }
+
+    public long sum(){
+        return this._sum.get();
+    }
+
+    public long max(){
+        return this._max.get();
+    }
+
+    public double mean(){
+        long n = this._count.get();
+        return n == 0 ? 0.0 : (double) this._sum.get() / n;
+    }
+
+    /**
+     * Returns the smallest value such that at least p percent of the recorded values
+     * are less or equal, up to the resolution of the buckets. The result is the upper
+     * end of the bucket of that value, but at most the largest recorded value.
+     *
+     * @param p Percentile in [0, 100]
+     * @return the value at the percentile, 0 if the histogram is empty
+     */
+    public long percentile(double p){
+        long n = this._count.get();
+        if (n == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, p)) / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i ++ ){
+            seen += this._counts.get(i);
+            if (seen >= rank){
+                return Math.min(upper(i), this._max.get());
+            }
+        }
+        return this._max.get();
+    }
+
+    /**
+     * Sets all counts to zero. Values that are recorded concurrently may be lost.
+     */
+    public void reset(){
+        for (int i = 0; i < BUCKETS; i ++ ){
+            this._counts.set(i, 0);
+        }
+        this._count.set(0);
+        this._sum.set(0);
+        this._max.set(0);
+    }
+
+    private static int index(long value){
+        if (value < 2 * SUB_COUNT){
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Largest value of bucket i.
+     */
+    private static long upper(int i){
+        if (i < 2 * SUB_COUNT){
+            return i;
+        }
+        int shift = i / SUB_COUNT - 1;
+        long mantissa = i % SUB_COUNT + SUB_COUNT;
+        long result = ((mantissa + 1) << shift) - 1;
+        return result < 0 ? Long.MAX_VALUE : result;
+    }
+}
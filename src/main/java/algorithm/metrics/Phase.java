@@ -0,0 +1,28 @@
+package algorithm.metrics;
+
+/**
+ * The parts of an iteration of the optimization loop that are timed.
+ */
+public enum Phase {
+    /**
+     * Fitting the model to the observations, including FIT on iterations where the
+     * hyperparameters are optimized.
+     */
+    TRAIN,
+    /**
+     * Optimization of the hyperparameters of the model, a part of TRAIN.
+     */
+    FIT,
+    /**
+     * Maximization of the acquisition function.
+     */
+    MAXIMIZE,
+    /**
+     * Evaluation of the objective function.
+     */
+    EVALUATE,
+    /**
+     * Handing a record over to the trace, flushing the trace and writing checkpoints.
+     */
+    IO
+}
@@ -0,0 +1,69 @@
+package algorithm.metrics;
+
+import org.json.JSONObject;
+
+public class PhaseMetrics implements SolverListener {
+
+    private final Histogram[] _histograms;
+
+    /**
+     * Collects the durations of the phases of the optimization loop in one histogram
+     * per phase. Add it to a solver with add_listener.
+     */
+    public PhaseMetrics(){
+        this._histograms = new Histogram[Phase.values().length];
+        for (int i = 0; i < this._histograms.length; i ++ ){
+            this._histograms[i] = new Histogram();
+        }
+    }
+
+    @Override
+    public void on_event(Phase phase, int iteration, long start, long duration){
+        this._histograms[phase.ordinal()].record(duration);
+    }
+
+    /**
+     * @param phase Phase
+     * @return the histogram of the durations of the phase in nanoseconds
+     */
+    public Histogram get(Phase phase){
+        return this._histograms[phase.ordinal()];
+    }
+
+    public void reset(){
+        for (Histogram h : this._histograms){
+            h.reset();
+        }
+    }
+
+    /**
+     * Json getter function
+     *
+     * @return json object with count, total, mean, median, 90th and 99th percentile and
+     *         maximum of every phase that occurred, the times in milliseconds
+     */
+    public JSONObject get_json_data(){
+        JSONObject result = new JSONObject();
+        for (Phase phase : Phase.values()){
+            Histogram h = get(phase);
+            if (h.count() == 0){
+                continue;
+            }
+            JSONObject data = new JSONObject();
+            data.put("count", h.count());
+            data.put("total", h.sum() / 1e6);
+            data.put("mean", h.mean() / 1e6);
+            data.put("p50", h.percentile(50) / 1e6);
+            data.put("p90", h.percentile(90) / 1e6);
+            data.put("p99", h.percentile(99) / 1e6);
+            data.put("max", h.max() / 1e6);
+            result.put(phase.name().toLowerCase(), data);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString(){
+        return get_json_data().toString();
+    }
+}
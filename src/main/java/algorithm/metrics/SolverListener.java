@@ -0,0 +1,17 @@
+package algorithm.metrics;
+
+public interface SolverListener {
+
+    /**
+     * Called by the solver whenever a phase of an iteration finished. The times are
+     * taken with System.nanoTime. Evaluations may finish on other threads, so
+     * implementations have to be thread safe. They are called on the hot path of the
+     * optimization loop and should neither block nor allocate.
+     *
+     * @param phase The phase that finished
+     * @param iteration Iteration the phase belongs to
+     * @param start System.nanoTime at the start of the phase
+     * @param duration Duration of the phase in nanoseconds
+     */
+    void on_event(Phase phase, int iteration, long start, long duration);
+}
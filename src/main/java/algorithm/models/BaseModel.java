@@ -1,13 +1,28 @@
 package algorithm.models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.*;
 import utils.Pair;
 import org.json.JSONObject;
 import utils.ArrayUtils;
+import algorithm.utils.Observations;
 
 public class BaseModel {
-    protected List<Double[]> _X;
-    protected List<Double> _y;
+    /**
+     * The observations the model is trained on. The store is shared with the solver
+     * and may already contain points the model has not seen yet.
+     */
+    protected Observations _data;
+    /**
+     * Number of observations the model is trained on.
+     */
+    protected int _n;
+    /**
+     * Duration of the hyperparameter optimization of the last train in nanoseconds.
+     */
+    protected long _fit_time;
 
     public BaseModel(){
     }
@@ -15,29 +30,90 @@ public class BaseModel {
     /**
      * Trains the model on the provided data.
      *
-     * @param X (N, D)
-     *          Input data points. The dimensionality of X is (N, D),
-     *          with N as the number of points and D is the number of input dimensions.
-     * @param y (N)
-     *          The corresponding target values of the input data points.
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values,
+     *             with N as the number of points and D is the number of input dimensions.
      */
-    public void train(List<Double[]> X, List<Double> y) throws Exception{
+    public void train(Observations data) throws Exception{
+        this._data = data;
+        this._n = data.size();
     }
 
     /**
-     * Update the model with the new additional data. Override this function if your
-     * model allows to do something smarter than simple retraining
+     * Trains the model on the provided data. Override this function if your model
+     * has hyperparameters that can be optimized.
      *
-     * @param X (N, D)
-     *          Input data points. The dimensionality of X is (N, D),
-     *          with N as the number of points and D is the number of input dimensions.
-     * @param y (N)
-     *          The corresponding target values of the input data points.
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values.
+     * @param do_optimize bool
+     *                    If true the hyperparameters of the model are optimized
+     *                    before the model is fit, otherwise the current ones are kept.
+     */
+    public void train(Observations data, boolean do_optimize) throws Exception{
+        train(data);
+    }
+
+    /**
+     * Update the model with the data that was added to the store since the last
+     * call of train or update. Override this function if your model allows to do
+     * something smarter than simple retraining
+     *
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values.
+     */
+    public void update(Observations data) throws Exception{
+        train(data);
+    }
+
+    /**
+     * Forgets all but the first n observations the model is trained on, after the store
+     * was truncated to n rows. Override this function if your model allows to do something
+     * smarter than simple retraining.
+     *
+     * @param n Number of observations to keep
+     */
+    public void truncate(int n) throws Exception{
+        if (n < this._n){
+            train(this._data);
+        }
+    }
+
+    /**
+     * Writes the fitted state of the model to a checkpoint, so that load_state can restore
+     * it without fitting the model again. Override this function together with load_state
+     * if your model supports it, the base class writes nothing.
+     *
+     * @param out checkpoint stream
+     * @throws IOException throws exception
+     */
+    public void save_state(ObjectOutputStream out) throws IOException{
+    }
+
+    /**
+     * Restores the state written by save_state.
+     *
+     * @param in checkpoint stream
+     * @param data the restored observations, the model was fit to a prefix of them
+     * @return true if the state was restored, false if the model has to be trained again
+     * @throws Exception throws exception
+     */
+    public boolean load_state(ObjectInputStream in, Observations data) throws Exception{
+        return false;
+    }
+
+    /**
+     * Returns the time the last call of train spent optimizing the hyperparameters in
+     * nanoseconds, 0 if they were kept. Models with hyperparameters set it in train.
+     */
+    public long get_fit_time(){
+        return this._fit_time;
+    }
+
+    /**
+     * Returns the number of observations the model is trained on.
      */
-    public void update(List<Double[]> X, List<Double> y) throws Exception{
-        _X.addAll(X);
-        _y.addAll(y);
-        train(_X, _y);
+    public int get_num_observations(){
+        return this._n;
     }
 
     /**
@@ -53,6 +129,66 @@ public class BaseModel {
         return new ArrayList<Pair<Double, Double>>();
     }
 
+    /**
+     * Predicts for a given set of test data points the mean and variance of its target values.
+     * Override this function if your model allows to predict a batch of points more
+     * efficiently than point by point. Predictions must not modify the model, since
+     * maximizers may predict disjoint batches from several threads at once.
+     *
+     * @param X (N, D)
+     *          N Test data points with input dimensions D
+     * @param mean (N)
+     *             Output, predictive mean of the test data points
+     * @param var (N)
+     *            Output, predictive variance of the test data points
+     */
+    public void predict(double[][] X, double[] mean, double[] var) throws Exception{
+        List<Pair<Double, Double>> result = predict(ArrayUtils.arrayToList(X));
+        for (int i = 0; i < X.length; i ++ ){
+            mean[i] = result.get(i).first();
+            var[i] = result.get(i).second();
+        }
+    }
+
+    /**
+     * Predicts the joint distribution of the target values of a set of test points.
+     * Override this function if your model provides a joint posterior.
+     *
+     * @param X (N, D)
+     *          N Test data points with input dimensions D
+     * @param mean (N)
+     *             Output, predictive mean of the test data points
+     * @param cov (N, N)
+     *            Output, predictive covariance of the test data points
+     */
+    public void predict_joint(double[][] X, double[] mean, double[][] cov) throws Exception{
+        throw new Exception(this.getClass().getSimpleName() + " does not provide a joint posterior.");
+    }
+
+    /**
+     * Returns true if the model provides gradients of its predictions.
+     */
+    public boolean has_gradients(){
+        return false;
+    }
+
+    /**
+     * Computes the predictive mean and variance of a test point together with their
+     * gradients with respect to the point. Override this function together with
+     * has_gradients if your model is differentiable.
+     *
+     * @param x (D)
+     *          Test point
+     * @param mean_grad (D)
+     *                  Output, gradient of the predictive mean
+     * @param var_grad (D)
+     *                 Output, gradient of the predictive variance
+     * @return (mean, var)
+     */
+    public Pair<Double, Double> predictive_gradients(double[] x, double[] mean_grad, double[] var_grad) throws Exception{
+        throw new Exception(this.getClass().getSimpleName() + " does not provide gradients.");
+    }
+
     /**
      * Json getter function
      *
@@ -60,18 +196,18 @@ public class BaseModel {
      */
     public JSONObject get_json_data(){
         JSONObject result = new JSONObject();
-        result.put("X", this._X);
-        result.put("y", this._y);
+        if (this._data != null){
+            result.put("X", this._data.get_X(0, this._n));
+            result.put("y", Arrays.copyOf(this._data.get_y(), this._n));
+        }
         return result;
     }
 
     public Pair<Double[], Double> get_incumbent() throws Exception{
-        int best_index = 0;
-        for (int i = 0; i < _y.size(); i ++ ) {
-            if (_y.get(best_index) > _y.get(i)){
-                best_index = i;
-            }
+        if (this._data == null || this._n == 0){
+            throw new Exception("Model has to be trained first!");
         }
-        return  new Pair<Double[], Double>(_X.get(best_index), _y.get(best_index));
+        int best_index = this._data.argmin(this._n);
+        return new Pair<Double[], Double>(ArrayUtils.double2Double(this._data.get_x(best_index)), this._data.get_y(best_index));
     }
 }
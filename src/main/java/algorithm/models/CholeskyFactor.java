@@ -0,0 +1,331 @@
+package algorithm.models;
+
+import smile.math.matrix.DenseMatrix;
+import smile.math.matrix.EVD;
+import smile.math.matrix.Matrix;
+
+public class CholeskyFactor {
+
+    /**
+     * Rows of the lower triangular factor, row i holds i + 1 entries.
+     */
+    private double[][] _L;
+    /**
+     * Number of rows that are in use.
+     */
+    private int _n;
+    /**
+     * Value that is added to the diagonal of every row of A.
+     */
+    private double _jitter;
+
+    /**
+     * Jitter relative to the mean diagonal of A that is tried, in this order, by jittered.
+     */
+    private static final double[] RELATIVE_JITTER = {0.0, 1e-10, 1e-8, 1e-6};
+
+    /**
+     * Cholesky decomposition A = L * L^T of a symmetric positive definite matrix.
+     * The rows of L are stored separately, so the factor can be extended by
+     * additional rows and columns of A without touching the existing rows.
+     *
+     * @param A (N, N)
+     *          Symmetric positive definite matrix. Only the lower triangle is read.
+     */
+    public CholeskyFactor(double[][] A){
+        this(A, 0.0);
+    }
+
+    /**
+     * Cholesky decomposition of A + jitter * I.
+     *
+     * @param A (N, N)
+     *          Symmetric matrix. Only the lower triangle is read.
+     * @param jitter value that is added to the diagonal of A and of all rows appended later
+     */
+    private CholeskyFactor(double[][] A, double jitter){
+        this._L = new double[Math.max(A.length, 16)][];
+        this._n = 0;
+        this._jitter = jitter;
+        append(A);
+    }
+
+    /**
+     * Cholesky decomposition of a symmetric matrix that is positive definite up to rounding
+     * errors, e.g. the kernel matrix of nearly duplicated points. A is factorized as it is
+     * if possible, otherwise with the smallest jitter of 1e-10, 1e-8 and 1e-6 times its mean
+     * diagonal. A is not modified, so no attempt needs to rebuild it. If even the largest
+     * jitter fails, the eigenvalues of A are raised to that jitter and the resulting matrix
+     * is factorized, which changes A only in the directions where it is not positive definite.
+     * The jitter is also added to all rows appended later.
+     *
+     * @param A (N, N)
+     *          Symmetric matrix. Only the lower triangle is read.
+     * @return the factor, see jitter() for the value that was added to the diagonal
+     * @throws IllegalArgumentException if A contains values that are not finite
+     */
+    public static CholeskyFactor jittered(double[][] A){
+        int n = A.length;
+        double scale = 0.0;
+        for (int i = 0; i < n; i ++ ){
+            scale += Math.abs(A[i][i]);
+        }
+        scale = n > 0 && scale > 0 ? scale / n : 1.0;
+
+        for (double relative_jitter : RELATIVE_JITTER){
+            try{
+                return new CholeskyFactor(A, relative_jitter * scale);
+            }
+            catch (IllegalArgumentException e){
+                // Try the next jitter
+            }
+        }
+        return nearest(A, RELATIVE_JITTER[RELATIVE_JITTER.length - 1] * scale);
+    }
+
+    /**
+     * Restores a factor from its rows, e.g. from a checkpoint, without factorizing again.
+     *
+     * @param L (N, N)
+     *          Rows of the lower triangular factor, row i holds i + 1 entries
+     * @param jitter the jitter of the factor
+     * @return the factor
+     */
+    public static CholeskyFactor of_rows(double[][] L, double jitter){
+        CholeskyFactor result = new CholeskyFactor(new double[0][], jitter);
+        result._L = new double[Math.max(L.length, 16)][];
+        System.arraycopy(L, 0, result._L, 0, L.length);
+        result._n = L.length;
+        return result;
+    }
+
+    /**
+     * Returns row i of the factor, which holds i + 1 entries. The array is owned by the
+     * factor and must not be modified.
+     */
+    public double[] get_row(int i){
+        return this._L[i];
+    }
+
+    /**
+     * Factorizes V * max(Lambda, floor) * V^T with the eigendecomposition A = V * Lambda * V^T.
+     */
+    private static CholeskyFactor nearest(double[][] A, double floor){
+        int n = A.length;
+        double[][] full = new double[n][n];
+        for (int i = 0; i < n; i ++ ){
+            for (int j = 0; j <= i; j ++ ){
+                if (Double.isNaN(A[i][j]) || Double.isInfinite(A[i][j])){
+                    throw new IllegalArgumentException("The matrix contains values that are not finite.");
+                }
+                full[i][j] = A[i][j];
+                full[j][i] = A[i][j];
+            }
+        }
+
+        DenseMatrix M = Matrix.newInstance(full);
+        M.setSymmetric(true);
+        EVD evd = M.eigen();
+        double[] values = evd.getEigenValues();
+        DenseMatrix vectors = evd.getEigenVectors();
+
+        double[][] B = new double[n][];
+        for (int i = 0; i < n; i ++ ){
+            B[i] = new double[i + 1];
+            for (int j = 0; j <= i; j ++ ){
+                double s = 0.0;
+                for (int q = 0; q < n; q ++ ){
+                    s += vectors.get(i, q) * Math.max(values[q], floor) * vectors.get(j, q);
+                }
+                B[i][j] = s;
+            }
+        }
+        try{
+            CholeskyFactor result = new CholeskyFactor(B, 0.0);
+            result._jitter = floor;
+            return result;
+        }
+        catch (IllegalArgumentException e){
+            // Rounding errors of the reconstruction
+            return new CholeskyFactor(B, floor);
+        }
+    }
+
+    /**
+     * Extends the factor by a border of k rows, i.e. updates the decomposition of A (N, N)
+     * to the decomposition of the (N + k, N + k) matrix [[A, B^T], [B, C]] in O(k * N^2).
+     * The factor is left unchanged if the extended matrix is not positive definite.
+     * The jitter of the factor is added to the diagonal of the new rows.
+     *
+     * @param rows (k, >= N + k)
+     *             rows[r] holds the entries 0 .. N + r of row N + r of the extended matrix,
+     *             i.e. row r of B followed by the lower triangle of row r of C.
+     */
+    public void append(double[][] rows){
+        int k = rows.length;
+        double[][] fresh = new double[k][];
+
+        for (int r = 0; r < k; r ++ ){
+            int i = this._n + r;
+            double[] a = rows[r];
+            double[] l = new double[i + 1];
+
+            for (int j = 0; j < i; j ++ ){
+                double[] L_j = j < this._n ? this._L[j] : fresh[j - this._n];
+                double s = a[j];
+                for (int p = 0; p < j; p ++ ){
+                    s -= l[p] * L_j[p];
+                }
+                l[j] = s / L_j[j];
+            }
+
+            double d = a[i] + this._jitter;
+            for (int p = 0; p < i; p ++ ){
+                d -= l[p] * l[p];
+            }
+            if (!(d > 0)){
+                throw new IllegalArgumentException("The matrix is not positive definite.");
+            }
+            l[i] = Math.sqrt(d);
+            fresh[r] = l;
+        }
+
+        if (this._n + k > this._L.length){
+            double[][] L = new double[Math.max(this._n + k, this._L.length * 2)][];
+            System.arraycopy(this._L, 0, L, 0, this._n);
+            this._L = L;
+        }
+        System.arraycopy(fresh, 0, this._L, this._n, k);
+        this._n += k;
+    }
+
+    /**
+     * Reduces the factor to the decomposition of the leading (n, n) block of A,
+     * which is the leading block of L.
+     *
+     * @param n new dimension, n &lt;= N
+     */
+    public void truncate(int n){
+        for (int i = n; i < this._n; i ++ ){
+            this._L[i] = null;
+        }
+        this._n = Math.min(n, this._n);
+    }
+
+    /**
+     * Returns the value that was added to the diagonal of A to make it positive definite.
+     */
+    public double jitter(){
+        return this._jitter;
+    }
+
+    /**
+     * Returns the dimension N of the decomposed matrix.
+     */
+    public int size(){
+        return this._n;
+    }
+
+    /**
+     * Solves L * z = b in place.
+     *
+     * @param b (N) right hand side, overwritten with z
+     */
+    public void forward(double[] b){
+        for (int i = 0; i < this._n; i ++ ){
+            double[] L_i = this._L[i];
+            double s = b[i];
+            for (int p = 0; p < i; p ++ ){
+                s -= L_i[p] * b[p];
+            }
+            b[i] = s / L_i[i];
+        }
+    }
+
+    /**
+     * Solves L * Z = B in place for several right hand sides at once. Each row of L
+     * is applied to all right hand sides before moving on, so L is streamed only once.
+     *
+     * @param B (k, N) right hand sides stored as rows, overwritten with Z
+     */
+    public void forward(double[][] B){
+        int k = B.length;
+        for (int i = 0; i < this._n; i ++ ){
+            double[] L_i = this._L[i];
+            double d = L_i[i];
+            for (int b = 0; b < k; b ++ ){
+                double[] z = B[b];
+                double s = z[i];
+                for (int p = 0; p < i; p ++ ){
+                    s -= L_i[p] * z[p];
+                }
+                z[i] = s / d;
+            }
+        }
+    }
+
+    /**
+     * Solves L^T * x = z in place.
+     *
+     * @param b (N) right hand side, overwritten with x
+     */
+    public void backward(double[] b){
+        for (int i = this._n - 1; i >= 0; i -- ){
+            double[] L_i = this._L[i];
+            double v = b[i] / L_i[i];
+            b[i] = v;
+            for (int p = 0; p < i; p ++ ){
+                b[p] -= L_i[p] * v;
+            }
+        }
+    }
+
+    /**
+     * Solves A * x = b in place.
+     *
+     * @param b (N) right hand side, overwritten with x
+     */
+    public void solve(double[] b){
+        forward(b);
+        backward(b);
+    }
+
+    /**
+     * Returns log det(A) = 2 * sum(log(L_ii)).
+     */
+    public double log_determinant(){
+        double result = 0.0;
+        for (int i = 0; i < this._n; i ++ ){
+            result += Math.log(this._L[i][i]);
+        }
+        return 2 * result;
+    }
+
+    /**
+     * Computes the inverse A^-1 = L^-T * L^-1 in O(N^3).
+     *
+     * @return (N, N)
+     */
+    public double[][] inverse(){
+        int n = this._n;
+        // Row b of Z holds column b of L^-1, which is zero above the diagonal
+        double[][] Z = new double[n][n];
+        for (int b = 0; b < n; b ++ ){
+            Z[b][b] = 1.0;
+        }
+        forward(Z);
+
+        double[][] result = new double[n][n];
+        for (int a = 0; a < n; a ++ ){
+            for (int b = 0; b <= a; b ++ ){
+                double s = 0.0;
+                for (int i = a; i < n; i ++ ){
+                    s += Z[a][i] * Z[b][i];
+                }
+                result[a][b] = s;
+                result[b][a] = s;
+            }
+        }
+        return result;
+    }
+}
@@ -1,11 +1,23 @@
 package algorithm.models;
 
 import org.apache.log4j.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import algorithm.utils.Normalization;
-import org.apache.logging.log4j.core.util.ArrayUtils;
+import algorithm.utils.Observations;
+import algorithm.utils.Parallel;
+import utils.ArrayUtils;
 import utils.Pair;
 import smile.math.kernel.MercerKernel;
+import algorithm.kernels.DifferentiableKernel;
+import algorithm.kernels.DistanceCache;
+import algorithm.kernels.ParametricKernel;
+import algorithm.kernels.StationaryKernel;
 
 public class GaussianProcess extends BaseModel{
     private Logger logger = Logger.getLogger(GaussianProcess.class);
@@ -20,6 +32,17 @@ public class GaussianProcess extends BaseModel{
     private double _mean;
     private double _std;
     private GaussianProcessRegression<double[]> _gpr;
+    private ForkJoinPool _pool;
+    /**
+     * Pairwise distances of the (normalized) points of the store for stationary kernels,
+     * it follows the store like the Cholesky factor.
+     */
+    private DistanceCache _distances;
+
+    /**
+     * Number of test points that share one kernel block in the batch prediction.
+     */
+    private static final int PREDICT_BLOCK_SIZE = 64;
 
     /**
      * Interface to the GP library.
@@ -43,8 +66,6 @@ public class GaussianProcess extends BaseModel{
         this._noise = noise;
         this._normalize_output = normalize_output;
         this._normalize_input = normalize_input;
-        this._X = new ArrayList<Double[]>();
-        this._y = new ArrayList<Double>();
         this._is_trained = false;
         this._lower = lower;
         this._upper = upper;
@@ -56,107 +77,303 @@ public class GaussianProcess extends BaseModel{
      * loglikelihood. The prior mean of the GP is set to the empirical
      * mean of X.
      *
-     * @param X (N, D)
-     *          Input data points. The dimensionality of X is (N, D),
-     *          with N as the number of points and D is the number of input dimensions.
-     * @param y (N)
-     *          The corresponding target values.
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values,
+     *             with N as the number of points and D is the number of input dimensions.
+     * @throws Exception throws exception
+     */
+    @Override
+    public void train(Observations data) throws Exception{
+        train(data, true);
+    }
+
+    /**
+     * Computes the Cholesky decomposition of the covariance of X. If do_optimize is set
+     * and the kernel is parametric, the kernel hyperparameters and the noise are first
+     * estimated by maximizing the marginal loglikelihood, starting from the current values.
+     *
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values.
+     * @param do_optimize bool
+     *                    If true the hyperparameters are optimized, otherwise the
+     *                    current ones are kept.
      * @throws Exception throws exception
      */
     @Override
-    public void train(List<Double[]> X, List<Double> y) throws Exception{
-        if (_normalize_input) {
-            this._X = Normalization.zero_one_normalization(X, _lower, _upper);
+    public void train(Observations data, boolean do_optimize) throws Exception{
+        int n = data.size();
+        double[][] X_array = input_view(data, 0, n);
+        double[] y_array = output_view(data, n);
+        update_distances(data, X_array);
+
+        this._fit_time = 0;
+        if (do_optimize && this._kernel instanceof ParametricKernel){
+            optimize_hyperparameters(X_array, y_array);
+        }
+
+        // The noise is left as it is, an ill-conditioned covariance matrix gets the smallest jitter
+        // that makes it positive definite for this fit only
+        try{
+            if (this._distances != null){
+                double[][] K = this._distances.kernel_matrix((StationaryKernel) this._kernel, this._noise);
+                _gpr = new GaussianProcessRegression<double[]>(X_array, y_array, _kernel, _noise, K);
+            }
+            else{
+                _gpr = new GaussianProcessRegression<double[]>(X_array, y_array, _kernel, _noise);
+            }
+        }
+        catch (IllegalArgumentException e){
+            throw new Exception("Cannot factorize the covariance matrix of the Gaussian Process: " + e.getMessage());
         }
-        else{
-            this._X = X;
+        if (_gpr.jitter() > 0){
+            logger.info(String.format("Added jitter %g to the covariance matrix of the Gaussian Process", _gpr.jitter()));
         }
 
-        double sum = 0;
-        for (double v : y){
-            sum += v;
+        this._data = data;
+        this._n = n;
+        _is_trained = true;
+    }
+
+    /**
+     * Updates the model with the points that were added to the store since the last
+     * call of train or update. As long as the store, the kernel and the noise of the
+     * current fit are unchanged, the Cholesky factor is extended by the new points
+     * in O(N^2) instead of refactorizing the whole covariance matrix. Otherwise, or if
+     * the extended covariance matrix is not positive definite, the model is retrained.
+     *
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values.
+     * @throws Exception throws exception
+     */
+    @Override
+    public void update(Observations data) throws Exception{
+        if (!this._is_trained || data != this._data || this._gpr.kernel() != this._kernel || this._gpr.shrinkage() != this._noise){
+            train(data, false);
+            return;
         }
-        _mean = sum / y.size();
-        _std = 0;
-        for (double v : y){
-            _std += (v - _mean) * (v - _mean);
+
+        int n = data.size();
+        if (n == this._n){
+            return;
         }
-        _std = Math.sqrt(_std);
 
-        if (_normalize_output){
-            if (_std == 0){
-                throw new Exception("Cannot normalize output. All targets have the same value!");
+        double[] y_array = output_view(data, n);
+        double[][] X_new = input_view(data, this._n, n);
+        try{
+            if (this._distances != null && this._distances.size() == this._n){
+                this._distances.append(X_new);
+                double[][] rows = this._distances.kernel_rows((StationaryKernel) this._kernel, this._noise, this._n, n);
+                _gpr.update(X_new, y_array, rows);
+            }
+            else{
+                _gpr.update(X_new, y_array);
             }
-            this._y = Normalization.zero_mean_unit_var_normalization(y, _mean, _std);
         }
-        else{
-            this._y = y;
+        catch (IllegalArgumentException e){
+            logger.info("Covariance matrix is not positive definite after the update, retrain Gaussian Process");
+            train(data, false);
+            return;
         }
+        this._n = n;
+    }
 
-        int n = X.size(), m = X.get(0).length;
-        double[][] X_array = new double[n][m];
-        double[] y_array = new double[n];
+    /**
+     * Writes the hyperparameters, the noise and the Cholesky factor of the fit.
+     *
+     * @param out checkpoint stream
+     * @throws IOException throws exception
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void save_state(ObjectOutputStream out) throws IOException{
+        out.writeBoolean(this._is_trained);
+        if (!this._is_trained){
+            return;
+        }
+        out.writeObject(this._kernel instanceof ParametricKernel ? ((ParametricKernel<double[]>) this._kernel).get_hyperparameters() : null);
+        out.writeDouble(this._noise);
+        out.writeInt(this._n);
 
-        for (int i = 0; i < n; i ++ ){
-            for (int j = 0; j < m; j ++ ){
-                X_array[i][j] = this._X.get(i)[j];
-            }
+        CholeskyFactor cholesky = this._gpr.cholesky();
+        double[][] L = new double[this._n][];
+        for (int i = 0; i < this._n; i ++ ){
+            L[i] = cholesky.get_row(i);
         }
+        out.writeDouble(cholesky.jitter());
+        out.writeObject(L);
+    }
 
-        for (int i = 0; i < n; i ++ ){
-            y_array[i] = this._y.get(i);
+    /**
+     * Restores the hyperparameters, the noise and the Cholesky factor written by save_state.
+     * Only the weights and the distance cache are recomputed, in O(N^2).
+     *
+     * @param in checkpoint stream
+     * @param data the restored observations
+     * @return true if the model was trained when the checkpoint was written
+     * @throws Exception throws exception
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean load_state(ObjectInputStream in, Observations data) throws Exception{
+        if (!in.readBoolean()){
+            return false;
         }
+        double[] theta = (double[]) in.readObject();
+        if (theta != null){
+            this._kernel = ((ParametricKernel<double[]>) this._kernel).with_hyperparameters(theta);
+        }
+        this._noise = in.readDouble();
+        int n = in.readInt();
 
-        while (true) {
-            boolean is_break = true;
-            try {
-                _gpr = new GaussianProcessRegression<double[]>(X_array, y_array, _kernel, _noise);
-            } catch (Exception e) {
-                if (this._noise == 0){
-                    this._noise = 0.1;
-                    logger.info("Noise of Gaussian Process += 0.1");
-                }
-                else{
-                    this._noise *= Math.sqrt(10);
-                    logger.info("Noise of Gaussian Process *= sqrt(10)");
-                }
-                is_break = false;
-            }
-            if (is_break){
-                break;
-            }
+        double jitter = in.readDouble();
+        double[][] L = (double[][]) in.readObject();
+
+        double[][] X_array = input_view(data, 0, n);
+        double[] y_array = output_view(data, n);
+        this._data = null;
+        update_distances(data, X_array);
+        this._gpr = new GaussianProcessRegression<double[]>(X_array, y_array, this._kernel, this._noise, CholeskyFactor.of_rows(L, jitter));
+
+        this._data = data;
+        this._n = n;
+        this._is_trained = true;
+        return true;
+    }
+
+    /**
+     * Maximizes the marginal loglikelihood of the data with respect to the kernel
+     * hyperparameters and the noise. The optimization is warm-started from the current
+     * hyperparameters, which are replaced by the optimum.
+     *
+     * @param X (N, D)
+     *          (Normalized) input points
+     * @param y (N)
+     *          (Normalized) target values
+     */
+    @SuppressWarnings("unchecked")
+    private void optimize_hyperparameters(double[][] X, double[] y){
+        ParametricKernel<double[]> kernel = (ParametricKernel<double[]>) this._kernel;
+        long t = System.nanoTime();
+        double[] theta = MarginalLikelihood.optimize(kernel, this._noise, X, y, this._distances);
+        this._fit_time = System.nanoTime() - t;
+        if (theta == null){
+            logger.info("Covariance matrix is not positive definite at the start of the hyperparameter optimization");
+            return;
         }
 
-        _is_trained = true;
+        int m = theta.length - 1;
+        this._kernel = kernel.with_hyperparameters(Arrays.copyOf(theta, m));
+        this._noise = Math.exp(theta[m]);
+        if (logger.isDebugEnabled()){
+            logger.debug(String.format("Optimized hyperparameters in %d ms: %s, noise = %g",
+                    this._fit_time / 1000000, this._kernel, this._noise));
+        }
     }
 
-    public void update(List<Double[]> X, List<Double> y) throws Exception{
-        if (this._X.size() > 0){
-            if (this._normalize_input){
-                List<Double[]> _X_new = new ArrayList<Double[]>();
-                for (Double[] _x : this._X){
-                    _X_new.add(Normalization.zero_one_unnormalization(_x, this._lower, this._upper));
-                }
-                this._X = _X_new;
-            }
-            if (this._normalize_output){
-                List<Double> _y_new = new ArrayList<Double>();
-                for (Double _v : this._y){
-                    _y_new.add(Normalization.zero_mean_unit_var_unnormalization(_v, this._mean, this._std));
-                }
-                this._y = _y_new;
-            }
+    /**
+     * Forgets all but the first n observations, after the store was truncated to n
+     * rows. The Cholesky factor is cut back instead of being recomputed.
+     *
+     * @param n Number of observations to keep
+     * @throws Exception throws exception
+     */
+    @Override
+    public void truncate(int n) throws Exception{
+        if (!this._is_trained || n >= this._n){
+            return;
+        }
+        if (this._distances != null){
+            this._distances.truncate(n);
+        }
+        if (n < 2){
+            this._n = 0;
+            this._is_trained = false;
+            return;
+        }
+        _gpr.truncate(n, output_view(this._data, n));
+        this._n = n;
+    }
+
+    /**
+     * Brings the distance cache in line with the first N points of the store. Points that
+     * are already cached are kept as long as the store is the same, only new points
+     * add rows.
+     *
+     * @param data the store
+     * @param X (N, D)
+     *          (Normalized) input points of the store
+     */
+    private void update_distances(Observations data, double[][] X){
+        if (!(this._kernel instanceof StationaryKernel)){
+            this._distances = null;
+            return;
+        }
+        StationaryKernel kernel = (StationaryKernel) this._kernel;
+        if (this._distances == null || data != this._data || this._distances.components() != kernel.get_distance_weights().length){
+            this._distances = new DistanceCache(kernel.get_distance_weights().length);
+        }
+        if (this._distances.size() > X.length){
+            this._distances.truncate(X.length);
         }
+        this._distances.append(Arrays.copyOfRange(X, this._distances.size(), X.length));
+    }
 
-        this._X.addAll(X);
-        this._y.addAll(y);
-        train(this._X, this._y);
+    /**
+     * Returns the (normalized) input points from .. to - 1 of the store.
+     */
+    double[][] input_view(Observations data, int from, int to){
+        if (this._normalize_input){
+            return data.get_X_normalized(from, to, this._lower, this._upper);
+        }
+        return data.get_X(from, to);
+    }
+
+    /**
+     * Estimates the empirical mean and deviation of the first n targets
+     * and returns the (normalized) targets.
+     */
+    double[] output_view(Observations data, int n) throws Exception{
+        double sum = 0;
+        for (int i = 0; i < n; i ++ ){
+            sum += data.get_y(i);
+        }
+        double mean = sum / n;
+        double std = 0;
+        for (int i = 0; i < n; i ++ ){
+            double v = data.get_y(i);
+            std += (v - mean) * (v - mean);
+        }
+        std = Math.sqrt(std);
+
+        if (_normalize_output && std == 0){
+            throw new Exception("Cannot normalize output. All targets have the same value!");
+        }
+        this._mean = mean;
+        this._std = std;
+
+        if (_normalize_output){
+            return data.get_y_normalized(n, mean, std);
+        }
+        return Arrays.copyOf(data.get_y(), n);
     }
 
     public double get_noise(){
         return _noise;
     }
 
+    public MercerKernel<double[]> get_kernel(){
+        return _kernel;
+    }
+
+    /**
+     * Sets the pool that is used to split batch predictions across cores.
+     *
+     * @param pool ForkJoinPool, or null to predict on the calling thread
+     */
+    public void set_pool(ForkJoinPool pool){
+        this._pool = pool;
+    }
+
     /**
      * Returns the predictive mean and variance of the objective function at
      * the given test points.
@@ -167,43 +384,172 @@ public class GaussianProcess extends BaseModel{
      * @throws Exception throws exception
      */
     public List<Pair<Double, Double>> predict(List<Double[]> X) throws Exception{
+        int n = X.size();
+        double[] mean = new double[n];
+        double[] var = new double[n];
+        predict(ArrayUtils.listToArray_2d(X), mean, var);
+
+        List<Pair<Double, Double>> result = new ArrayList<Pair<Double, Double>>();
+        for (int i = 0; i < n; i ++ ){
+            result.add(new Pair<Double, Double>(mean[i], var[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the predictive mean and variance of the objective function at
+     * the given test points. The points are processed in blocks which share the
+     * kernel evaluations between mean and variance. If a pool is set, the blocks
+     * are distributed over its threads, unless the caller already runs on a pool,
+     * e.g. a maximizer that scores its candidates in chunks.
+     *
+     * @param X (N, D)
+     *          Input test points
+     * @param mean (N)
+     *             Output, predictive mean
+     * @param var (N)
+     *            Output, predictive variance
+     * @throws Exception throws exception
+     */
+    @Override
+    public void predict(final double[][] X, final double[] mean, final double[] var) throws Exception{
         if (!_is_trained){
             throw new Exception("Model has to be trained first!");
         }
-        if (this._normalize_input){
-            X = Normalization.zero_one_normalization(X, _lower, _upper);
+
+        int n = X.length;
+        if (this._pool == null || n <= PREDICT_BLOCK_SIZE || ForkJoinTask.inForkJoinPool()){
+            predict_block(X, mean, var, 0, n);
+            return;
         }
-        List<Pair<Double, Double>> result = new ArrayList<Pair<Double, Double>>();
-        for (Double[] x : X){
-            int length = x.length;
-            double[] x_array = new double[length];
-            for (int i = 0; i < length; i ++ ){
-                x_array[i] = x[i];
-            }
-            double mean = this._gpr.predict_mean(x_array);
-            double variance = this._gpr.predict_variance(x_array);
 
-            if (this._normalize_output){
-                mean = Normalization.zero_mean_unit_var_unnormalization(mean, this._mean, this._std);
-                variance *= this._std * this._std;
-            }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = 0; start < n; start += PREDICT_BLOCK_SIZE){
+            final int from = start, to = Math.min(n, start + PREDICT_BLOCK_SIZE);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    predict_block(X, mean, var, from, to);
+                    return null;
+                }
+            });
+        }
+        Parallel.invoke(tasks, this._pool);
+    }
 
-            result.add(new Pair(mean, variance));
+    /**
+     * Returns the joint posterior of the objective function at the given test points.
+     *
+     * @param X (N, D)
+     *          Input test points
+     * @param mean (N)
+     *             Output, predictive mean
+     * @param cov (N, N)
+     *            Output, predictive covariance
+     * @throws Exception throws exception
+     */
+    @Override
+    public void predict_joint(double[][] X, double[] mean, double[][] cov) throws Exception{
+        if (!_is_trained){
+            throw new Exception("Model has to be trained first!");
+        }
+
+        int n = X.length;
+        double[][] x = new double[n][];
+        for (int i = 0; i < n; i ++ ){
+            x[i] = this._normalize_input ? Normalization.zero_one_normalization(X[i], this._lower, this._upper) : X[i];
+        }
+        this._gpr.predict_joint(x, mean, cov);
+
+        if (this._normalize_output){
+            for (int i = 0; i < n; i ++ ){
+                mean[i] = mean[i] * this._std + this._mean;
+                for (int j = 0; j < n; j ++ ){
+                    cov[i][j] *= this._std * this._std;
+                }
+            }
         }
-        return result;
     }
 
     @Override
-    public Pair<Double[], Double> get_incumbent() throws Exception{
-        Pair<Double[], Double> result = super.get_incumbent();
+    public boolean has_gradients(){
+        return this._kernel instanceof DifferentiableKernel;
+    }
 
-        if (_normalize_input){
-            result.setFirst(Normalization.zero_one_unnormalization(result.first(), _lower, _upper));
+    /**
+     * Returns the predictive mean and variance of the objective function at
+     * the given test point together with their gradients.
+     *
+     * @param x (D)
+     *          Input test point
+     * @param mean_grad (D)
+     *                  Output, gradient of the predictive mean
+     * @param var_grad (D)
+     *                 Output, gradient of the predictive variance
+     * @return (mean, variance)
+     * @throws Exception throws exception
+     */
+    @Override
+    public Pair<Double, Double> predictive_gradients(double[] x, double[] mean_grad, double[] var_grad) throws Exception{
+        if (!_is_trained){
+            throw new Exception("Model has to be trained first!");
+        }
+        if (!has_gradients()){
+            throw new Exception("Kernel " + this._kernel + " is not differentiable.");
         }
 
-        if (_normalize_output){
-            result.setSecond(Normalization.zero_mean_unit_var_unnormalization(result.second(), _mean, _std));
+        if (this._normalize_input){
+            x = Normalization.zero_one_normalization(x, this._lower, this._upper);
+        }
+        Pair<Double, Double> result = this._gpr.predict_gradients(x, mean_grad, var_grad);
+        double mean = result.first(), var = result.second();
+
+        for (int j = 0; j < x.length; j ++ ){
+            if (this._normalize_input){
+                mean_grad[j] /= this._upper[j] - this._lower[j];
+                var_grad[j] /= this._upper[j] - this._lower[j];
+            }
+            if (this._normalize_output){
+                mean_grad[j] *= this._std;
+                var_grad[j] *= this._std * this._std;
+            }
+        }
+        if (this._normalize_output){
+            mean = mean * this._std + this._mean;
+            var *= this._std * this._std;
+        }
+        return new Pair<Double, Double>(mean, var);
+    }
+
+    private void predict_block(double[][] X, double[] mean, double[] var, int from, int to){
+        int n = to - from;
+        double[][] x = new double[n][];
+        for (int i = 0; i < n; i ++ ){
+            if (this._normalize_input){
+                x[i] = Normalization.zero_one_normalization(X[from + i], this._lower, this._upper);
+            }
+            else{
+                x[i] = X[from + i];
+            }
+        }
+
+        double[] m = new double[n];
+        double[] v = var == null ? null : new double[n];
+        this._gpr.predict(x, m, v);
+
+        for (int i = 0; i < n; i ++ ){
+            if (this._normalize_output){
+                mean[from + i] = m[i] * this._std + this._mean;
+                if (v != null){
+                    var[from + i] = v[i] * this._std * this._std;
+                }
+            }
+            else{
+                mean[from + i] = m[i];
+                if (v != null){
+                    var[from + i] = v[i];
+                }
+            }
         }
-        return result;
     }
 }
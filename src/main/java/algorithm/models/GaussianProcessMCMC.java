@@ -0,0 +1,356 @@
+package algorithm.models;
+
+import org.apache.log4j.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import algorithm.kernels.DistanceCache;
+import algorithm.kernels.ParametricKernel;
+import algorithm.utils.Observations;
+import algorithm.utils.Parallel;
+import utils.ArrayUtils;
+import utils.Pair;
+
+public class GaussianProcessMCMC extends BaseModel{
+    private Logger logger = Logger.getLogger(GaussianProcessMCMC.class);
+
+    private ParametricKernel<double[]> _kernel;
+    private int _n_chains;
+    private int _burnin;
+    private int _n_steps;
+    private double[] _lower;
+    private double[] _upper;
+    private ForkJoinPool _pool;
+    private boolean _is_trained;
+
+    /**
+     * Current state of every chain: log kernel hyperparameters followed by the log noise.
+     */
+    private double[][] _chains;
+    private Random[] _chain_random;
+    /**
+     * One Gaussian process per chain with the current sample of its hyperparameters.
+     */
+    private List<GaussianProcess> _models;
+
+    /**
+     * Scale of the horseshoe prior on the noise.
+     */
+    private static final double HORSESHOE_SCALE = 0.1;
+    /**
+     * Initial width of the slice in log space.
+     */
+    private static final double SLICE_WIDTH = 1.0;
+    private static final int MAX_STEP_OUT = 10;
+
+    /**
+     * Gaussian process that marginalizes its kernel hyperparameters and noise by Markov
+     * chain Monte Carlo. Several chains sample the posterior of the hyperparameters with
+     * coordinate-wise slice sampling (Neal 2003); the prior is uniform within the bounds
+     * of the kernel and a horseshoe prior on the noise. Every chain contributes its
+     * current sample as one Gaussian process of an ensemble. The chains, the fits of the
+     * ensemble and its predictions run concurrently on the pool. Every chain keeps its state
+     * between iterations, so after the first burn-in only n_steps steps are done per training.
+     *
+     * @param kernel ParametricKernel Object
+     *               Kernel whose hyperparameters are sampled, its hyperparameters are the start of the chains
+     * @param n_chains int
+     *                 Number of chains, i.e. the size of the ensemble
+     * @param burnin int
+     *               Number of steps of every chain in the first training
+     * @param n_steps int
+     *                Number of steps of every chain in later trainings
+     * @param lower Lower bound of the input space which is used for the input space normalization
+     * @param upper Upper bound of the input space which is used for the input space normalization
+     * @param pool ForkJoinPool
+     *             Pool that runs the chains and the ensemble, or null to run them on the calling thread
+     * @param seed long
+     *             Seed of the chains
+     */
+    public GaussianProcessMCMC(ParametricKernel<double[]> kernel, int n_chains, int burnin, int n_steps,
+                               double[] lower, double[] upper, ForkJoinPool pool, long seed){
+        this._kernel = kernel;
+        this._n_chains = n_chains;
+        this._burnin = burnin;
+        this._n_steps = n_steps;
+        this._lower = lower;
+        this._upper = upper;
+        this._pool = pool;
+        this._is_trained = false;
+
+        Random random = new Random(seed);
+        this._chain_random = new Random[n_chains];
+        for (int c = 0; c < n_chains; c ++ ){
+            this._chain_random[c] = new Random(random.nextLong());
+        }
+    }
+
+    @Override
+    public void train(Observations data) throws Exception{
+        train(data, true);
+    }
+
+    /**
+     * Advances the chains on the data and refits the ensemble with their new samples.
+     * Without do_optimize the ensemble is refit with the current samples.
+     *
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values.
+     * @param do_optimize bool
+     *                    If true the chains are advanced
+     * @throws Exception throws exception
+     */
+    @Override
+    public void train(final Observations data, boolean do_optimize) throws Exception{
+        final boolean first = this._chains == null;
+        if (first){
+            // The chains start around the hyperparameters of the given kernel
+            double[] start = MarginalLikelihood.initial_hyperparameters(this._kernel, 0.0);
+            double[] l = MarginalLikelihood.lower_bounds(this._kernel);
+            double[] u = MarginalLikelihood.upper_bounds(this._kernel);
+            this._chains = new double[this._n_chains][];
+            for (int c = 0; c < this._n_chains; c ++ ){
+                double[] theta = start.clone();
+                for (int i = 0; i < theta.length; i ++ ){
+                    theta[i] = Math.min(u[i], Math.max(l[i], theta[i] + 0.5 * this._chain_random[c].nextGaussian()));
+                }
+                this._chains[c] = theta;
+            }
+        }
+
+        final boolean sample = do_optimize || first;
+        GaussianProcess view = new GaussianProcess(this._kernel, 0.0, true, true, this._lower, this._upper);
+        final double[][] X = view.input_view(data, 0, data.size());
+        final double[] y = view.output_view(data, data.size());
+        // All chains assemble their kernel matrices from the same distances
+        final DistanceCache distances = sample ? MarginalLikelihood.distances(this._kernel, X) : null;
+
+        final GaussianProcess[] models = new GaussianProcess[this._n_chains];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int c = 0; c < this._n_chains; c ++ ){
+            final int chain = c;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    if (sample){
+                        run_chain(chain, first ? _burnin : _n_steps, X, y, distances);
+                    }
+                    double[] theta = _chains[chain];
+                    int m = theta.length - 1;
+                    GaussianProcess model = new GaussianProcess(_kernel.with_hyperparameters(Arrays.copyOf(theta, m)),
+                            Math.exp(theta[m]), true, true, _lower, _upper);
+                    model.train(data, false);
+                    models[chain] = model;
+                    return null;
+                }
+            });
+        }
+        Parallel.invoke(tasks, this._pool);
+
+        this._models = Arrays.asList(models);
+        this._data = data;
+        this._n = data.size();
+        this._is_trained = true;
+    }
+
+    /**
+     * Updates all Gaussian processes of the ensemble incrementally with the current samples.
+     *
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values.
+     * @throws Exception throws exception
+     */
+    @Override
+    public void update(final Observations data) throws Exception{
+        if (!this._is_trained || data != this._data){
+            train(data, false);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final GaussianProcess model : this._models){
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    model.update(data);
+                    return null;
+                }
+            });
+        }
+        Parallel.invoke(tasks, this._pool);
+        this._n = data.size();
+    }
+
+    @Override
+    public void truncate(int n) throws Exception{
+        if (!this._is_trained || n >= this._n){
+            return;
+        }
+        for (GaussianProcess model : this._models){
+            model.truncate(n);
+        }
+        this._n = n;
+    }
+
+    /**
+     * Returns the Gaussian processes of the ensemble, one per chain.
+     */
+    public List<GaussianProcess> get_models(){
+        return Collections.unmodifiableList(this._models);
+    }
+
+    /**
+     * Returns the pool the ensemble runs on, or null.
+     */
+    public ForkJoinPool get_pool(){
+        return this._pool;
+    }
+
+    @Override
+    public List<Pair<Double, Double>> predict(List<Double[]> X) throws Exception{
+        int n = X.size();
+        double[] mean = new double[n];
+        double[] var = new double[n];
+        predict(ArrayUtils.listToArray_2d(X), mean, var);
+
+        List<Pair<Double, Double>> result = new ArrayList<Pair<Double, Double>>();
+        for (int i = 0; i < n; i ++ ){
+            result.add(new Pair<Double, Double>(mean[i], var[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns mean and variance of the mixture of the ensemble at the test points.
+     *
+     * @param X (N, D)
+     *          Input test points
+     * @param mean (N)
+     *             Output, predictive mean
+     * @param var (N)
+     *            Output, predictive variance
+     * @throws Exception throws exception
+     */
+    @Override
+    public void predict(final double[][] X, double[] mean, double[] var) throws Exception{
+        if (!this._is_trained){
+            throw new Exception("Model has to be trained first!");
+        }
+
+        int n = X.length, k = this._models.size();
+        final double[][] means = new double[k][n];
+        final double[][] vars = new double[k][n];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < k; i ++ ){
+            final int idx = i;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    _models.get(idx).predict(X, means[idx], vars[idx]);
+                    return null;
+                }
+            });
+        }
+        Parallel.invoke(tasks, this._pool);
+
+        for (int j = 0; j < n; j ++ ){
+            double m = 0.0, second_moment = 0.0;
+            for (int i = 0; i < k; i ++ ){
+                m += means[i][j];
+                second_moment += vars[i][j] + means[i][j] * means[i][j];
+            }
+            m /= k;
+            mean[j] = m;
+            if (var != null){
+                var[j] = Math.max(second_moment / k - m * m, 0.0);
+            }
+        }
+    }
+
+    /**
+     * Advances one chain by n_steps sweeps of coordinate-wise slice sampling.
+     */
+    private void run_chain(int chain, int n_steps, double[][] X, double[] y, DistanceCache distances){
+        Random random = this._chain_random[chain];
+        double[] theta = this._chains[chain].clone();
+        double[] l = MarginalLikelihood.lower_bounds(this._kernel);
+        double[] u = MarginalLikelihood.upper_bounds(this._kernel);
+
+        double log_p = log_posterior(theta, X, y, distances);
+        if (Double.isInfinite(log_p)){
+            logger.info(String.format("Chain %d starts at a hyperparameter with zero posterior", chain));
+        }
+        for (int step = 0; step < n_steps; step ++ ){
+            for (int i = 0; i < theta.length; i ++ ){
+                log_p = slice(theta, i, log_p, l[i], u[i], random, X, y, distances);
+            }
+        }
+        this._chains[chain] = theta;
+    }
+
+    /**
+     * One slice sampling update of coordinate i with stepping out and shrinkage.
+     *
+     * @return the log posterior of the new state
+     */
+    private double slice(double[] theta, int i, double log_p, double lower, double upper, Random random,
+                         double[][] X, double[] y, DistanceCache distances){
+        double x0 = theta[i];
+        double level = log_p + Math.log(random.nextDouble());
+
+        double left = x0 - SLICE_WIDTH * random.nextDouble();
+        double right = left + SLICE_WIDTH;
+        for (int k = 0; k < MAX_STEP_OUT && left > lower; k ++ ){
+            theta[i] = left;
+            if (log_posterior(theta, X, y, distances) <= level){
+                break;
+            }
+            left -= SLICE_WIDTH;
+        }
+        for (int k = 0; k < MAX_STEP_OUT && right < upper; k ++ ){
+            theta[i] = right;
+            if (log_posterior(theta, X, y, distances) <= level){
+                break;
+            }
+            right += SLICE_WIDTH;
+        }
+        left = Math.max(left, lower);
+        right = Math.min(right, upper);
+
+        while (true){
+            double x = left + (right - left) * random.nextDouble();
+            theta[i] = x;
+            double p = log_posterior(theta, X, y, distances);
+            if (p > level){
+                return p;
+            }
+            if (x < x0){
+                left = x;
+            }
+            else{
+                right = x;
+            }
+            if (right - left < 1e-10){
+                theta[i] = x0;
+                return log_p;
+            }
+        }
+    }
+
+    /**
+     * Log posterior of the hyperparameters up to a constant: marginal loglikelihood,
+     * uniform prior within the bounds and horseshoe prior on the noise.
+     */
+    private double log_posterior(double[] theta, double[][] X, double[] y, DistanceCache distances){
+        double[] l = this._kernel.get_lower_bounds();
+        double[] u = this._kernel.get_upper_bounds();
+        for (int i = 0; i < l.length; i ++ ){
+            if (theta[i] < l[i] || theta[i] > u[i]){
+                return Double.NEGATIVE_INFINITY;
+            }
+        }
+        double noise = Math.exp(theta[theta.length - 1]);
+        double log_prior = Math.log(Math.log(1 + 3.0 * (HORSESHOE_SCALE / noise) * (HORSESHOE_SCALE / noise)));
+        return log_prior - MarginalLikelihood.negative_log_likelihood(this._kernel, theta, X, y, distances, null);
+    }
+}
@@ -1,9 +1,9 @@
 package algorithm.models;
 
 import smile.math.kernel.MercerKernel;
-import smile.math.matrix.Matrix;
-import smile.math.matrix.DenseMatrix;
-import smile.math.matrix.Cholesky;
+import algorithm.kernels.DifferentiableKernel;
+import utils.Pair;
+import java.util.Arrays;
 
 public class GaussianProcessRegression <T> {
     private static final long serialVersionUID = 1L;
@@ -25,7 +25,7 @@ public class GaussianProcessRegression <T> {
      */
     private double lambda;
 
-    private Cholesky cholesky;
+    private CholeskyFactor cholesky;
 
     /**
      * Constructor. Fitting a regular Gaussian process model.
@@ -35,6 +35,23 @@ public class GaussianProcessRegression <T> {
      * @param lambda the shrinkage/regularization parameter.
      */
     public GaussianProcessRegression(T[] x, double[] y, MercerKernel<T> kernel, double lambda) {
+        this(x, y, kernel, lambda, kernel_matrix(x, kernel, lambda));
+    }
+
+    /**
+     * Constructor. Fitting a regular Gaussian process model with a kernel matrix that
+     * was assembled by the caller, e.g. from cached pairwise distances. If the kernel
+     * matrix is not numerically positive definite, e.g. because of nearly duplicated
+     * control points, the smallest jitter that makes it so is added to its diagonal,
+     * see CholeskyFactor.jittered.
+     * @param x the training dataset.
+     * @param y the response variable.
+     * @param kernel the Mercer kernel.
+     * @param lambda the shrinkage/regularization parameter.
+     * @param K the lower triangle of the kernel matrix of x with lambda on the diagonal,
+     *          row i holds the entries 0 .. i.
+     */
+    public GaussianProcessRegression(T[] x, double[] y, MercerKernel<T> kernel, double lambda, double[][] K) {
         if (x.length != y.length) {
             throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
         }
@@ -43,28 +60,156 @@ public class GaussianProcessRegression <T> {
             throw new IllegalArgumentException("Invalid regularization parameter lambda = " + lambda);
         }
 
+        if (K.length != x.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and K don't match: %d != %d", x.length, K.length));
+        }
+
+        this.kernel = kernel;
+        this.lambda = lambda;
+        this.knots = x;
+
+        this.cholesky = CholeskyFactor.jittered(K);
+        w = y.clone();
+        this.cholesky.solve(w);
+    }
+
+    /**
+     * Constructor. Restores a Gaussian process model from the Cholesky factor of its
+     * kernel matrix, e.g. from a checkpoint, without factorizing it again.
+     * @param x the training dataset.
+     * @param y the response variable.
+     * @param kernel the Mercer kernel.
+     * @param lambda the shrinkage/regularization parameter.
+     * @param cholesky the Cholesky factor of the kernel matrix of x with lambda on the diagonal.
+     */
+    public GaussianProcessRegression(T[] x, double[] y, MercerKernel<T> kernel, double lambda, CholeskyFactor cholesky) {
+        if (x.length != y.length || x.length != cholesky.size()) {
+            throw new IllegalArgumentException(String.format("The sizes of X, Y and the factor don't match: %d, %d, %d", x.length, y.length, cholesky.size()));
+        }
+
         this.kernel = kernel;
         this.lambda = lambda;
         this.knots = x;
 
+        this.cholesky = cholesky;
+        w = y.clone();
+        this.cholesky.solve(w);
+    }
+
+    /**
+     * Returns the lower triangle of the kernel matrix of x with lambda on the diagonal.
+     */
+    private static <T> double[][] kernel_matrix(T[] x, MercerKernel<T> kernel, double lambda) {
         int n = x.length;
 
-        DenseMatrix K = Matrix.zeros(n, n);
+        double[][] K = new double[n][];
         for (int i = 0; i < n; i++) {
+            K[i] = new double[i + 1];
             for (int j = 0; j <= i; j++) {
-                double k = kernel.k(x[i], x[j]);
-                K.set(i, j, k);
-                K.set(j, i, k);
+                K[i][j] = kernel.k(x[i], x[j]);
+            }
+
+            K[i][i] += lambda;
+        }
+        return K;
+    }
+
+    /**
+     * Appends new control points. The Cholesky factor of the current kernel matrix is
+     * extended by the new rows instead of being recomputed, which costs O(k * n^2)
+     * instead of O((n + k)^3). The kernel and lambda are kept.
+     * @param x the new control points.
+     * @param y the response variable of all (old and new) control points. It is passed
+     *          as a whole since a renormalization of the outputs changes all values.
+     */
+    public void update(T[] x, double[] y) {
+        int n = knots.length;
+        double[][] rows = new double[x.length][];
+        for (int r = 0; r < x.length; r++) {
+            rows[r] = new double[n + r + 1];
+            for (int j = 0; j < n; j++) {
+                rows[r][j] = kernel.k(x[r], knots[j]);
+            }
+            for (int j = 0; j <= r; j++) {
+                rows[r][n + j] = kernel.k(x[r], x[j]);
             }
 
-            K.add(i, i, lambda);
+            rows[r][n + r] += lambda;
+        }
+
+        update(x, y, rows);
+    }
+
+    /**
+     * Appends new control points whose border of the kernel matrix was assembled by
+     * the caller, e.g. from cached pairwise distances.
+     * @param x the new control points.
+     * @param y the response variable of all (old and new) control points.
+     * @param rows rows[r] holds the entries 0 .. n + r of row n + r of the kernel matrix
+     *             with lambda on the diagonal, n being the current number of control points.
+     */
+    public void update(T[] x, double[] y, double[][] rows) {
+        int n = knots.length, m = n + x.length;
+        if (m != y.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", m, y.length));
         }
 
-        this.cholesky = K.cholesky();
+        this.cholesky.append(rows);
+
+        knots = Arrays.copyOf(knots, m);
+        System.arraycopy(x, 0, knots, n, x.length);
+
         w = y.clone();
         this.cholesky.solve(w);
     }
 
+    /**
+     * Removes all but the first n control points, e.g. to drop fantasized points
+     * again. The Cholesky factor of the remaining points is the leading block of the
+     * current factor, so this costs O(n^2) for the new weights only.
+     * @param n the number of control points to keep.
+     * @param y the response variable of the remaining control points.
+     */
+    public void truncate(int n, double[] y) {
+        if (n != y.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", n, y.length));
+        }
+
+        this.cholesky.truncate(n);
+        knots = Arrays.copyOf(knots, n);
+
+        w = y.clone();
+        this.cholesky.solve(w);
+    }
+
+    /**
+     * Returns the kernel.
+     */
+    public MercerKernel<T> kernel() {
+        return kernel;
+    }
+
+    /**
+     * Returns the Cholesky factor of the kernel matrix.
+     */
+    public CholeskyFactor cholesky() {
+        return cholesky;
+    }
+
+    /**
+     * Returns the jitter that was added to lambda to factorize the kernel matrix.
+     */
+    public double jitter() {
+        return cholesky.jitter();
+    }
+
+    /**
+     * Returns the number of control points.
+     */
+    public int size() {
+        return knots.length;
+    }
+
     /**
      * Returns the coefficients.
      */
@@ -95,13 +240,127 @@ public class GaussianProcessRegression <T> {
         for (int i = 0; i < n; i ++ )
             k[i] = kernel.k(x, knots[i]);
 
-        double[] wk = k.clone();
-        cholesky.solve(wk);
+        // k(x, x) - k^T K^-1 k = k(x, x) - |L^-1 k|^2
+        cholesky.forward(k);
 
         double f = kernel.k(x, x);
         for (int i = 0; i < n; i ++ ){
-            f -= k[i] * wk[i];
+            f -= k[i] * k[i];
         }
         return f;
     }
-}
\ No newline at end of file
+
+    /**
+     * Predicts mean and variance of several points at once. The kernel vectors against
+     * the control points are computed once and shared by mean and variance, and the
+     * variances of all points are computed with a single blocked triangular solve.
+     * @param x the test points.
+     * @param mean output, the predictive mean of each test point.
+     * @param variance output, the predictive variance of each test point. May be null if
+     *                 only the mean is needed.
+     */
+    public void predict(T[] x, double[] mean, double[] variance){
+        int n = knots.length, m = x.length;
+        double[][] k = new double[m][n];
+        for (int b = 0; b < m; b ++ ){
+            double[] k_b = k[b];
+            double f = 0.0;
+            for (int i = 0; i < n; i ++ ){
+                k_b[i] = kernel.k(x[b], knots[i]);
+                f += w[i] * k_b[i];
+            }
+            mean[b] = f;
+        }
+
+        if (variance == null){
+            return;
+        }
+
+        cholesky.forward(k);
+
+        for (int b = 0; b < m; b ++ ){
+            double[] k_b = k[b];
+            double f = kernel.k(x[b], x[b]);
+            for (int i = 0; i < n; i ++ ){
+                f -= k_b[i] * k_b[i];
+            }
+            variance[b] = f;
+        }
+    }
+
+    /**
+     * Predicts the joint posterior of several points, i.e. their means and the full
+     * covariance matrix K(x, x) - K(x, knots) K^-1 K(knots, x) = K(x, x) - V^T V with
+     * V = L^-1 K(knots, x).
+     * @param x the test points.
+     * @param mean output, the predictive mean of each test point.
+     * @param cov output, the predictive covariance of the test points.
+     */
+    public void predict_joint(T[] x, double[] mean, double[][] cov){
+        int n = knots.length, m = x.length;
+        double[][] v = new double[m][n];
+        for (int b = 0; b < m; b ++ ){
+            double f = 0.0;
+            for (int i = 0; i < n; i ++ ){
+                v[b][i] = kernel.k(x[b], knots[i]);
+                f += w[i] * v[b][i];
+            }
+            mean[b] = f;
+        }
+
+        cholesky.forward(v);
+
+        for (int a = 0; a < m; a ++ ){
+            for (int b = 0; b <= a; b ++ ){
+                double f = kernel.k(x[a], x[b]);
+                for (int i = 0; i < n; i ++ ){
+                    f -= v[a][i] * v[b][i];
+                }
+                cov[a][b] = f;
+                cov[b][a] = f;
+            }
+        }
+    }
+
+    /**
+     * Predicts mean and variance of a point together with their gradients with
+     * respect to the point. Requires a differentiable kernel.
+     * @param x the test point.
+     * @param mean_grad output, the gradient of the predictive mean.
+     * @param var_grad output, the gradient of the predictive variance.
+     * @return the predictive mean and variance.
+     */
+    public Pair<Double, Double> predict_gradients(T x, double[] mean_grad, double[] var_grad){
+        if (!(kernel instanceof DifferentiableKernel)) {
+            throw new UnsupportedOperationException("The kernel " + kernel + " is not differentiable.");
+        }
+        DifferentiableKernel<T> dkernel = (DifferentiableKernel<T>) kernel;
+
+        int n = knots.length, d = mean_grad.length;
+        double[][] dk = new double[n][d];
+        double[] k = new double[n];
+        double mean = 0.0;
+        for (int i = 0; i < n; i ++ ){
+            k[i] = dkernel.gradient(x, knots[i], dk[i]);
+            mean += w[i] * k[i];
+        }
+
+        // d var / dx = d k(x, x) / dx - 2 * (d k / dx)^T K^-1 k
+        double[] alpha = k.clone();
+        cholesky.solve(alpha);
+
+        double var = dkernel.gradient(x, x, var_grad);
+        for (int j = 0; j < d; j ++ ){
+            mean_grad[j] = 0.0;
+            var_grad[j] *= 2;
+        }
+        for (int i = 0; i < n; i ++ ){
+            var -= k[i] * alpha[i];
+            for (int j = 0; j < d; j ++ ){
+                mean_grad[j] += w[i] * dk[i][j];
+                var_grad[j] -= 2 * alpha[i] * dk[i][j];
+            }
+        }
+        return new Pair<Double, Double>(mean, var);
+    }
+}
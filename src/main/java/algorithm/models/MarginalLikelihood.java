@@ -0,0 +1,227 @@
+package algorithm.models;
+
+import algorithm.kernels.DistanceCache;
+import algorithm.kernels.ParametricKernel;
+import algorithm.kernels.StationaryKernel;
+import algorithm.utils.ProjectedLBFGS;
+import smile.math.DifferentiableMultivariateFunction;
+import java.util.Arrays;
+
+public class MarginalLikelihood {
+
+    /**
+     * Noise the optimization starts from if no noise was set yet.
+     */
+    private static final double INITIAL_NOISE = 1e-3;
+    /**
+     * Bounds of the log noise.
+     */
+    private static final double MIN_LOG_NOISE = Math.log(1e-10);
+    private static final double MAX_LOG_NOISE = 0.0;
+    private static final double GTOL = 1e-5;
+    private static final int MAX_ITER = 100;
+
+    /**
+     * Type-II maximum likelihood estimation of the hyperparameters of an exact GP:
+     * minimizes the negative marginal loglikelihood with respect to the kernel
+     * hyperparameters and the noise with bound-constrained L-BFGS, starting from
+     * the hyperparameters of the given kernel and the given noise.
+     *
+     * @param kernel the kernel whose hyperparameters are optimized
+     * @param noise the current noise
+     * @param X (N, D)
+     *          Input points
+     * @param y (N)
+     *          Target values
+     * @return (P + 1) the optimal log kernel hyperparameters followed by the log noise,
+     *         or null if the covariance matrix is not positive definite at the start
+     */
+    public static double[] optimize(ParametricKernel<double[]> kernel, double noise, double[][] X, double[] y){
+        return optimize(kernel, noise, X, y, distances(kernel, X));
+    }
+
+    /**
+     * Type-II maximum likelihood estimation of the hyperparameters of an exact GP whose
+     * kernel matrices are assembled from the given cache of pairwise distances.
+     *
+     * @param kernel the kernel whose hyperparameters are optimized
+     * @param noise the current noise
+     * @param X (N, D)
+     *          Input points
+     * @param y (N)
+     *          Target values
+     * @param distances cache of the pairwise distances of X, or null if the kernel is not stationary
+     * @return (P + 1) the optimal log kernel hyperparameters followed by the log noise,
+     *         or null if the covariance matrix is not positive definite at the start
+     */
+    public static double[] optimize(final ParametricKernel<double[]> kernel, double noise, final double[][] X, final double[] y,
+                                    final DistanceCache distances){
+        double[] theta = initial_hyperparameters(kernel, noise);
+        double[] l = lower_bounds(kernel);
+        double[] u = upper_bounds(kernel);
+        final int p = theta.length;
+
+        DifferentiableMultivariateFunction nll = new DifferentiableMultivariateFunction() {
+            @Override
+            public double f(double[] x) {
+                return f(x, new double[p]);
+            }
+
+            @Override
+            public double f(double[] x, double[] grad) {
+                return negative_log_likelihood(kernel, x, X, y, distances, grad);
+            }
+        };
+
+        if (Double.isInfinite(nll.f(theta))){
+            return null;
+        }
+        ProjectedLBFGS.minimize(nll, 10, theta, l, u, GTOL, MAX_ITER);
+        return theta;
+    }
+
+    /**
+     * Returns the log hyperparameters of the kernel followed by the log noise, clipped to the bounds.
+     *
+     * @return (P + 1)
+     */
+    public static double[] initial_hyperparameters(ParametricKernel<double[]> kernel, double noise){
+        double[] theta_kernel = kernel.get_hyperparameters();
+        int m = theta_kernel.length;
+        double[] theta = Arrays.copyOf(theta_kernel, m + 1);
+        theta[m] = Math.log(Math.max(noise, INITIAL_NOISE));
+
+        double[] l = lower_bounds(kernel);
+        double[] u = upper_bounds(kernel);
+        for (int i = 0; i <= m; i ++ ){
+            theta[i] = Math.min(u[i], Math.max(l[i], theta[i]));
+        }
+        return theta;
+    }
+
+    /**
+     * Returns the lower bounds of the log kernel hyperparameters followed by the one of the log noise.
+     *
+     * @return (P + 1)
+     */
+    public static double[] lower_bounds(ParametricKernel<double[]> kernel){
+        double[] bounds = kernel.get_lower_bounds();
+        double[] result = Arrays.copyOf(bounds, bounds.length + 1);
+        result[bounds.length] = MIN_LOG_NOISE;
+        return result;
+    }
+
+    /**
+     * Returns the upper bounds of the log kernel hyperparameters followed by the one of the log noise.
+     *
+     * @return (P + 1)
+     */
+    public static double[] upper_bounds(ParametricKernel<double[]> kernel){
+        double[] bounds = kernel.get_upper_bounds();
+        double[] result = Arrays.copyOf(bounds, bounds.length + 1);
+        result[bounds.length] = MAX_LOG_NOISE;
+        return result;
+    }
+
+    /**
+     * Returns the cache of the pairwise distances of X if the kernel is stationary, otherwise null.
+     */
+    public static DistanceCache distances(ParametricKernel<double[]> kernel, double[][] X){
+        if (kernel instanceof StationaryKernel){
+            return DistanceCache.create((StationaryKernel) kernel, X);
+        }
+        return null;
+    }
+
+    /**
+     * Negative marginal loglikelihood 0.5 * y^T K^-1 y + 0.5 * log det(K) + 0.5 * N * log(2 pi)
+     * of the data and its gradient 0.5 * tr((K^-1 - alpha alpha^T) dK / dtheta) with
+     * alpha = K^-1 y.
+     *
+     * @param kernel the kernel whose hyperparameters are varied
+     * @param theta (P + 1)
+     *              Log kernel hyperparameters followed by the log noise
+     * @param X (N, D)
+     *          Input points
+     * @param y (N)
+     *          Target values
+     * @param distances cache of the pairwise distances of X, or null to evaluate the kernel for every pair
+     * @param grad (P + 1)
+     *             Output, gradient with respect to theta, or null if only the value is needed,
+     *             which saves the O(N^3) inverse of K
+     * @return the negative marginal loglikelihood, or infinity if K is not positive definite
+     */
+    public static double negative_log_likelihood(ParametricKernel<double[]> kernel, double[] theta, double[][] X, double[] y,
+                                                 DistanceCache distances, double[] grad){
+        int n = X.length, m = theta.length - 1;
+        ParametricKernel<double[]> k = kernel.with_hyperparameters(Arrays.copyOf(theta, m));
+        double noise = Math.exp(theta[m]);
+        StationaryKernel stationary = distances != null ? (StationaryKernel) k : null;
+
+        double[][] K;
+        if (stationary != null){
+            K = distances.kernel_matrix(stationary, noise);
+        }
+        else{
+            K = new double[n][];
+            for (int i = 0; i < n; i ++ ){
+                K[i] = new double[i + 1];
+                for (int j = 0; j <= i; j ++ ){
+                    K[i][j] = k.k(X[i], X[j]);
+                }
+                K[i][i] += noise;
+            }
+        }
+
+        if (grad != null){
+            Arrays.fill(grad, 0.0);
+        }
+        CholeskyFactor cholesky;
+        try{
+            cholesky = new CholeskyFactor(K);
+        }
+        catch (IllegalArgumentException e){
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double[] alpha = y.clone();
+        cholesky.solve(alpha);
+        double fit = 0.0;
+        for (int i = 0; i < n; i ++ ){
+            fit += y[i] * alpha[i];
+        }
+
+        double value = 0.5 * fit + 0.5 * cholesky.log_determinant() + 0.5 * n * Math.log(2 * Math.PI);
+        if (grad == null){
+            return value;
+        }
+
+        double[][] K_inv = cholesky.inverse();
+        double[] dk = new double[m];
+        double[] zero = new double[distances != null ? distances.components() : 0];
+        double trace = 0.0;
+        for (int i = 0; i < n; i ++ ){
+            double[] s = distances != null ? distances.get_row(i) : null;
+            for (int j = 0; j <= i; j ++ ){
+                // Off-diagonal pairs appear twice in the trace
+                double a = (K_inv[i][j] - alpha[i] * alpha[j]) * (i == j ? 0.5 : 1.0);
+                if (stationary == null){
+                    k.hyperparameter_gradient(X[i], X[j], dk);
+                }
+                else if (j < i){
+                    stationary.hyperparameter_gradient(K[i][j], s, j * zero.length, dk);
+                }
+                else{
+                    stationary.hyperparameter_gradient(K[i][i] - noise, zero, 0, dk);
+                }
+                for (int q = 0; q < m; q ++ ){
+                    grad[q] += a * dk[q];
+                }
+            }
+            trace += K_inv[i][i] - alpha[i] * alpha[i];
+        }
+        grad[m] = 0.5 * noise * trace;
+
+        return value;
+    }
+}
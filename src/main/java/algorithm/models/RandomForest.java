@@ -0,0 +1,543 @@
+package algorithm.models;
+
+import org.apache.log4j.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import algorithm.utils.Observations;
+import algorithm.utils.Parallel;
+import smile.sort.QuickSort;
+import utils.ArrayUtils;
+import utils.Pair;
+
+public class RandomForest extends BaseModel{
+    private Logger logger = Logger.getLogger(RandomForest.class);
+
+    private int _n_trees;
+    private int _min_samples_split;
+    private double _max_features;
+    private ForkJoinPool _pool;
+    private Random _random;
+    private boolean _is_trained;
+
+    private List<Tree> _trees;
+    /**
+     * Copy of the observations the trees index into, rows are only appended.
+     */
+    private double[][] _X;
+    private double[] _y;
+
+    /**
+     * Lower bound of the predictive variance.
+     */
+    private static final double MIN_VARIANCE = 1e-10;
+    /**
+     * Number of test points that are predicted by one task of the pool.
+     */
+    private static final int PREDICT_BLOCK_SIZE = 64;
+
+    /**
+     * Random forest of regression trees. Every tree is grown on a bootstrap sample of the
+     * observations; at every node the best of a random subset of the input dimensions is
+     * chosen to split. The predictive mean is the average of the leaf means of the trees,
+     * the predictive variance combines the spread of the leaf means across the trees with
+     * the variance within the leaves (law of total variance).
+     * Training costs O(T * N log^2 N). New observations are inserted into the existing
+     * trees with online bagging (every tree sees a point Poisson(1) times) and only the
+     * leaves that become too large are split, which costs O(T * depth) per point.
+     * The trees are grown in parallel if a pool is given; every tree has its own seeded
+     * generator, so the model does not depend on the number of threads.
+     *
+     * @param n_trees int
+     *                Number of trees
+     * @param min_samples_split int
+     *                          Minimal number of samples a node needs to be split
+     * @param max_features double
+     *                     Fraction of the input dimensions that are considered per split
+     * @param pool ForkJoinPool
+     *             Pool that grows the trees, or null to grow them on the calling thread
+     * @param seed long
+     *             Seed of the bootstrap samples and the feature subsets
+     */
+    public RandomForest(int n_trees, int min_samples_split, double max_features, ForkJoinPool pool, long seed){
+        this._n_trees = n_trees;
+        this._min_samples_split = Math.max(2, min_samples_split);
+        this._max_features = max_features;
+        this._pool = pool;
+        this._random = new Random(seed);
+        this._is_trained = false;
+    }
+
+    /**
+     * Grows all trees from scratch.
+     *
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values.
+     * @throws Exception throws exception
+     */
+    @Override
+    public void train(Observations data) throws Exception{
+        int n = data.size();
+        this._X = new double[Math.max(16, n)][];
+        this._y = new double[Math.max(16, n)];
+        for (int i = 0; i < n; i ++ ){
+            this._X[i] = data.get_x(i);
+            this._y[i] = data.get_y(i);
+        }
+
+        this._trees = new ArrayList<Tree>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < this._n_trees; t ++ ){
+            final Tree tree = new Tree(this._random.nextLong());
+            final int size = n;
+            this._trees.add(tree);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    int[] bootstrap = new int[size];
+                    for (int i = 0; i < size; i ++ ){
+                        bootstrap[i] = tree.random.nextInt(size);
+                    }
+                    tree.build(bootstrap);
+                    return null;
+                }
+            });
+        }
+        Parallel.invoke(tasks, this._pool);
+
+        this._data = data;
+        this._n = n;
+        this._is_trained = true;
+    }
+
+    /**
+     * Inserts the points that were added to the store since the last call of train
+     * or update into the existing trees.
+     *
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values.
+     * @throws Exception throws exception
+     */
+    @Override
+    public void update(Observations data) throws Exception{
+        if (!this._is_trained || data != this._data){
+            train(data);
+            return;
+        }
+
+        final int from = this._n, to = data.size();
+        if (to == from){
+            return;
+        }
+        if (to > this._y.length){
+            int capacity = Math.max(to, 2 * this._y.length);
+            this._X = Arrays.copyOf(this._X, capacity);
+            this._y = Arrays.copyOf(this._y, capacity);
+        }
+        for (int i = from; i < to; i ++ ){
+            this._X[i] = data.get_x(i);
+            this._y[i] = data.get_y(i);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Tree tree : this._trees){
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int row = from; row < to; row ++ ){
+                        for (int k = poisson(tree.random); k > 0; k -- ){
+                            tree.insert(row);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        Parallel.invoke(tasks, this._pool);
+        this._n = to;
+    }
+
+    /**
+     * Removes the observations n .. N - 1 from the leaves of all trees. The splits
+     * are kept.
+     *
+     * @param n Number of observations to keep
+     * @throws Exception throws exception
+     */
+    @Override
+    public void truncate(final int n) throws Exception{
+        if (!this._is_trained || n >= this._n){
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Tree tree : this._trees){
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    tree.remove_from(n);
+                    return null;
+                }
+            });
+        }
+        Parallel.invoke(tasks, this._pool);
+        this._n = n;
+    }
+
+    /**
+     * Returns the number, sum and sum of squares of the targets of every node of a tree,
+     * in the order in which the nodes were created.
+     *
+     * @param t Index of the tree
+     * @return (3, number of nodes)
+     * @throws Exception throws exception
+     */
+    public double[][] get_node_statistics(int t) throws Exception{
+        if (!this._is_trained){
+            throw new Exception("Model has to be trained first!");
+        }
+        Tree tree = this._trees.get(t);
+        return new double[][]{
+                Arrays.copyOf(tree.count, tree.size),
+                Arrays.copyOf(tree.sum, tree.size),
+                Arrays.copyOf(tree.sum_sq, tree.size)};
+    }
+
+    @Override
+    public List<Pair<Double, Double>> predict(List<Double[]> X) throws Exception{
+        int n = X.size();
+        double[] mean = new double[n];
+        double[] var = new double[n];
+        predict(ArrayUtils.listToArray_2d(X), mean, var);
+
+        List<Pair<Double, Double>> result = new ArrayList<Pair<Double, Double>>();
+        for (int i = 0; i < n; i ++ ){
+            result.add(new Pair<Double, Double>(mean[i], var[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the predictive mean and variance of the forest at the test points.
+     *
+     * @param X (N, D)
+     *          Input test points
+     * @param mean (N)
+     *             Output, predictive mean
+     * @param var (N)
+     *            Output, predictive variance
+     * @throws Exception throws exception
+     */
+    @Override
+    public void predict(final double[][] X, final double[] mean, final double[] var) throws Exception{
+        if (!this._is_trained){
+            throw new Exception("Model has to be trained first!");
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = 0; start < X.length; start += PREDICT_BLOCK_SIZE){
+            final int from = start, to = Math.min(X.length, start + PREDICT_BLOCK_SIZE);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    double[] leaf = new double[2];
+                    for (int i = from; i < to; i ++ ){
+                        double m = 0.0, second_moment = 0.0;
+                        for (Tree tree : _trees){
+                            tree.predict(X[i], leaf);
+                            m += leaf[0];
+                            second_moment += leaf[1] + leaf[0] * leaf[0];
+                        }
+                        m /= _trees.size();
+                        mean[i] = m;
+                        if (var != null){
+                            var[i] = Math.max(second_moment / _trees.size() - m * m, MIN_VARIANCE);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        if (tasks.size() == 1){
+            tasks.get(0).call();
+        }
+        else{
+            Parallel.invoke(tasks, this._pool);
+        }
+    }
+
+    /**
+     * Draws from a Poisson distribution with mean 1.
+     */
+    private static int poisson(Random random){
+        double limit = Math.exp(-1.0), p = random.nextDouble();
+        int k = 0;
+        while (p > limit){
+            p *= random.nextDouble();
+            k ++;
+        }
+        return k;
+    }
+
+    /**
+     * Regression tree stored in parallel arrays. Every node keeps the number, sum and sum
+     * of squares of the targets of its samples, leaves additionally keep their samples
+     * (rows of the forest data, repeated according to their bootstrap multiplicity).
+     */
+    private class Tree {
+        Random random;
+        int size;
+        int[] feature;
+        double[] threshold;
+        /**
+         * Left child, -1 for leaves.
+         */
+        int[] left;
+        int[] right;
+        int[] parent;
+        double[] count;
+        double[] sum;
+        double[] sum_sq;
+        int[][] samples;
+        int[] n_samples;
+
+        Tree(long seed){
+            this.random = new Random(seed);
+            allocate(16);
+        }
+
+        void allocate(int capacity){
+            this.feature = this.feature == null ? new int[capacity] : Arrays.copyOf(this.feature, capacity);
+            this.threshold = this.threshold == null ? new double[capacity] : Arrays.copyOf(this.threshold, capacity);
+            this.left = this.left == null ? new int[capacity] : Arrays.copyOf(this.left, capacity);
+            this.right = this.right == null ? new int[capacity] : Arrays.copyOf(this.right, capacity);
+            this.parent = this.parent == null ? new int[capacity] : Arrays.copyOf(this.parent, capacity);
+            this.count = this.count == null ? new double[capacity] : Arrays.copyOf(this.count, capacity);
+            this.sum = this.sum == null ? new double[capacity] : Arrays.copyOf(this.sum, capacity);
+            this.sum_sq = this.sum_sq == null ? new double[capacity] : Arrays.copyOf(this.sum_sq, capacity);
+            this.samples = this.samples == null ? new int[capacity][] : Arrays.copyOf(this.samples, capacity);
+            this.n_samples = this.n_samples == null ? new int[capacity] : Arrays.copyOf(this.n_samples, capacity);
+        }
+
+        int add_node(int parent){
+            if (this.size == this.left.length){
+                allocate(2 * this.size);
+            }
+            int node = this.size ++;
+            this.left[node] = -1;
+            this.right[node] = -1;
+            this.parent[node] = parent;
+            this.count[node] = 0;
+            this.sum[node] = 0;
+            this.sum_sq[node] = 0;
+            this.samples[node] = null;
+            this.n_samples[node] = 0;
+            return node;
+        }
+
+        void build(int[] idx){
+            this.size = 0;
+            grow(add_node(-1), idx);
+        }
+
+        /**
+         * Grows the subtree below a leaf from the given samples.
+         */
+        void grow(int root, int[] idx){
+            ArrayDeque<Integer> nodes = new ArrayDeque<Integer>();
+            ArrayDeque<int[]> sets = new ArrayDeque<int[]>();
+            nodes.push(root);
+            sets.push(idx);
+
+            while (!nodes.isEmpty()){
+                int node = nodes.pop();
+                int[] set = sets.pop();
+
+                double c = set.length, s = 0.0, s2 = 0.0;
+                for (int row : set){
+                    s += _y[row];
+                    s2 += _y[row] * _y[row];
+                }
+                this.count[node] = c;
+                this.sum[node] = s;
+                this.sum_sq[node] = s2;
+
+                if (!split(node, set)){
+                    this.left[node] = -1;
+                    this.samples[node] = set;
+                    this.n_samples[node] = set.length;
+                    continue;
+                }
+
+                int n_left = 0;
+                for (int row : set){
+                    if (_X[row][this.feature[node]] <= this.threshold[node]){
+                        n_left ++;
+                    }
+                }
+                int[] left_set = new int[n_left];
+                int[] right_set = new int[set.length - n_left];
+                int l = 0, r = 0;
+                for (int row : set){
+                    if (_X[row][this.feature[node]] <= this.threshold[node]){
+                        left_set[l ++] = row;
+                    }
+                    else{
+                        right_set[r ++] = row;
+                    }
+                }
+
+                int left_child = add_node(node);
+                int right_child = add_node(node);
+                this.left[node] = left_child;
+                this.right[node] = right_child;
+                this.samples[node] = null;
+                this.n_samples[node] = 0;
+                nodes.push(left_child);
+                sets.push(left_set);
+                nodes.push(right_child);
+                sets.push(right_set);
+            }
+        }
+
+        /**
+         * Finds the split of a random subset of the features that minimizes the squared
+         * error of the children and stores it in the node.
+         *
+         * @return false if the node should be a leaf
+         */
+        boolean split(int node, int[] set){
+            int n = set.length;
+            if (n < _min_samples_split){
+                return false;
+            }
+            double s = this.sum[node];
+            if (this.sum_sq[node] - s * s / n <= 1e-12 * Math.max(1.0, this.sum_sq[node])){
+                return false;
+            }
+
+            int dim = _X[set[0]].length;
+            int m = Math.max(1, (int)Math.ceil(dim * _max_features));
+            int[] features = new int[dim];
+            for (int j = 0; j < dim; j ++ ){
+                features[j] = j;
+            }
+
+            double best = s * s / n;
+            boolean found = false;
+            double[] keys = new double[n];
+            int[] order = new int[n];
+            for (int f = 0; f < m; f ++ ){
+                // Partial Fisher-Yates shuffle picks the next feature
+                int pick = f + this.random.nextInt(dim - f);
+                int j = features[pick];
+                features[pick] = features[f];
+                features[f] = j;
+
+                for (int i = 0; i < n; i ++ ){
+                    keys[i] = _X[set[i]][j];
+                    order[i] = set[i];
+                }
+                QuickSort.sort(keys, order);
+
+                double s_left = 0.0;
+                for (int i = 0; i < n - 1; i ++ ){
+                    s_left += _y[order[i]];
+                    if (keys[i] == keys[i + 1]){
+                        continue;
+                    }
+                    double s_right = s - s_left;
+                    double score = s_left * s_left / (i + 1) + s_right * s_right / (n - i - 1);
+                    if (score > best + 1e-12 * Math.abs(best)){
+                        best = score;
+                        found = true;
+                        this.feature[node] = j;
+                        double t = 0.5 * (keys[i] + keys[i + 1]);
+                        this.threshold[node] = t < keys[i + 1] ? t : keys[i];
+                    }
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Routes a sample to its leaf and splits the leaf if it became large enough.
+         */
+        void insert(int row){
+            double y = _y[row];
+            int node = 0;
+            while (true){
+                this.count[node] += 1;
+                this.sum[node] += y;
+                this.sum_sq[node] += y * y;
+                if (this.left[node] == -1){
+                    break;
+                }
+                node = _X[row][this.feature[node]] <= this.threshold[node] ? this.left[node] : this.right[node];
+            }
+
+            int k = this.n_samples[node];
+            if (this.samples[node] == null){
+                this.samples[node] = new int[4];
+            }
+            else if (k == this.samples[node].length){
+                this.samples[node] = Arrays.copyOf(this.samples[node], 2 * k);
+            }
+            this.samples[node][k] = row;
+            this.n_samples[node] = k + 1;
+
+            // A leaf that could not be split is only tried again once its size doubled
+            if (k + 1 == _min_samples_split || (k + 1 > _min_samples_split && Integer.bitCount(k + 1) == 1)){
+                int[] set = Arrays.copyOf(this.samples[node], k + 1);
+                this.samples[node] = null;
+                this.n_samples[node] = 0;
+                grow(node, set);
+            }
+        }
+
+        /**
+         * Removes all samples with row &gt;= n from the leaves and the node statistics.
+         */
+        void remove_from(int n){
+            for (int node = 0; node < this.size; node ++ ){
+                if (this.left[node] != -1 || this.samples[node] == null){
+                    continue;
+                }
+                int[] set = this.samples[node];
+                int kept = 0;
+                for (int i = 0; i < this.n_samples[node]; i ++ ){
+                    int row = set[i];
+                    if (row < n){
+                        set[kept ++] = row;
+                        continue;
+                    }
+                    double y = _y[row];
+                    for (int p = node; p != -1; p = this.parent[p]){
+                        this.count[p] -= 1;
+                        this.sum[p] -= y;
+                        this.sum_sq[p] -= y * y;
+                    }
+                }
+                this.n_samples[node] = kept;
+            }
+        }
+
+        /**
+         * Returns mean and variance of the leaf of x. Empty leaves are replaced by their
+         * closest non-empty ancestor.
+         */
+        void predict(double[] x, double[] result){
+            int node = 0;
+            while (this.left[node] != -1){
+                node = x[this.feature[node]] <= this.threshold[node] ? this.left[node] : this.right[node];
+            }
+            while (this.count[node] < 0.5 && this.parent[node] != -1){
+                node = this.parent[node];
+            }
+            double c = Math.max(this.count[node], 1.0);
+            double m = this.sum[node] / c;
+            result[0] = m;
+            result[1] = Math.max(this.sum_sq[node] / c - m * m, 0.0);
+        }
+    }
+}
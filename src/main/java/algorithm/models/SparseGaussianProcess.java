@@ -0,0 +1,462 @@
+package algorithm.models;
+
+import org.apache.log4j.*;
+import java.util.*;
+import algorithm.kernels.ParametricKernel;
+import algorithm.utils.Normalization;
+import algorithm.utils.Observations;
+import utils.ArrayUtils;
+import utils.Pair;
+import smile.math.kernel.MercerKernel;
+
+public class SparseGaussianProcess extends BaseModel{
+    private Logger logger = Logger.getLogger(SparseGaussianProcess.class);
+
+    private MercerKernel<double[]> _kernel;
+    private double _noise;
+    private int _max_inducing;
+    private double[] _lower;
+    private double[] _upper;
+    private boolean _is_trained;
+
+    /**
+     * Normalized inducing points and the rows of the store they were taken from.
+     */
+    private List<double[]> _Z;
+    private List<Integer> _Z_idx;
+    /**
+     * Lower triangle of K(Z, Z) and its Cholesky factor.
+     */
+    private double[][] _Kzz;
+    private CholeskyFactor _Kzz_cholesky;
+    /**
+     * Column j holds k(z_j, x_p) of all absorbed points p, i.e. K(Z, X) stored by rows of Z.
+     */
+    private List<double[]> _Kzx;
+    /**
+     * Sufficient statistics of the absorbed points: K(Z, X) K(X, Z), K(Z, X) y and K(Z, X) 1.
+     */
+    private double[][] _B;
+    private double[] _b_y;
+    private double[] _b_1;
+    /**
+     * Targets of the absorbed points, kept to remove their contribution again.
+     */
+    private double[] _y;
+    private double _sum_y;
+    private double _sum_y2;
+
+    private CholeskyFactor _A_cholesky;
+    private double[] _w;
+    private double _mean;
+    private double _std;
+
+    /**
+     * A point becomes an inducing point if its variance conditioned on the current inducing
+     * points is larger than this fraction of its prior variance.
+     */
+    private static final double SELECTION_THRESHOLD = 1e-4;
+    /**
+     * Relative jitter on the diagonal of K(Z, Z).
+     */
+    private static final double JITTER = 1e-8;
+    /**
+     * Number of test points that share one kernel block in the batch prediction.
+     */
+    private static final int PREDICT_BLOCK_SIZE = 64;
+
+    /**
+     * Sparse Gaussian process with the deterministic training conditional (DTC)
+     * approximation: the N observations are explained through m &lt;= max_inducing
+     * inducing points Z, which costs O(N * m^2) time and O(N * m) memory instead of
+     * O(N^3) and O(N^2). The inducing points are selected greedily from the observations
+     * as they arrive: a point is added if the current inducing points explain it poorly.
+     * New observations are absorbed into the sufficient statistics of the approximation
+     * in O(m^2) per point. Inputs are normalized to [0, 1] and outputs to zero mean
+     * and unit variance.
+     *
+     * @param kernel MercerKernel Object
+     *               Specifies the kernel. If it is parametric, its hyperparameters are fit
+     *               on the inducing points when the model is trained with optimization.
+     * @param noise float
+     *              Noise variance of the normalized targets, has to be positive
+     * @param max_inducing int
+     *                     Maximal number of inducing points m
+     * @param lower Lower bound of the input space which is used for the input space normalization
+     * @param upper Upper bound of the input space which is used for the input space normalization
+     */
+    public SparseGaussianProcess(MercerKernel<double[]> kernel, double noise, int max_inducing, double[] lower, double[] upper){
+        this._kernel = kernel;
+        this._noise = Math.max(noise, 1e-10);
+        this._max_inducing = max_inducing;
+        this._lower = lower;
+        this._upper = upper;
+        this._is_trained = false;
+    }
+
+    @Override
+    public void train(Observations data) throws Exception{
+        train(data, true);
+    }
+
+    /**
+     * Selects the inducing points and computes the approximation from scratch. If
+     * do_optimize is set and the kernel is parametric, the hyperparameters are estimated
+     * by maximizing the marginal likelihood of an exact GP on the inducing points, and
+     * the inducing points are selected again with the new kernel.
+     *
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values.
+     * @param do_optimize bool
+     *                    If true the hyperparameters are optimized
+     * @throws Exception throws exception
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void train(Observations data, boolean do_optimize) throws Exception{
+        int n = data.size();
+        rebuild(data, n);
+
+        this._fit_time = 0;
+        if (do_optimize && this._kernel instanceof ParametricKernel && this._Z.size() >= 2){
+            long t = System.nanoTime();
+            int m = this._Z.size();
+            double[][] X = this._Z.toArray(new double[m][]);
+            double[] y = new double[m];
+            double mean = this._sum_y / n, std = std(n);
+            for (int j = 0; j < m; j ++ ){
+                y[j] = (data.get_y(this._Z_idx.get(j)) - mean) / std;
+            }
+
+            ParametricKernel<double[]> kernel = (ParametricKernel<double[]>) this._kernel;
+            double[] theta = MarginalLikelihood.optimize(kernel, this._noise, X, y);
+            this._fit_time = System.nanoTime() - t;
+            if (theta != null){
+                this._kernel = kernel.with_hyperparameters(Arrays.copyOf(theta, theta.length - 1));
+                this._noise = Math.exp(theta[theta.length - 1]);
+                if (logger.isDebugEnabled()){
+                    logger.debug(String.format("Optimized hyperparameters on %d inducing points: %s, noise = %g", m, this._kernel, this._noise));
+                }
+                rebuild(data, n);
+            }
+        }
+
+        this._data = data;
+        this._n = n;
+        solve();
+        this._is_trained = true;
+    }
+
+    /**
+     * Absorbs the points that were added to the store since the last call of train
+     * or update. Points that the inducing points explain poorly become inducing points
+     * as long as fewer than max_inducing were selected.
+     *
+     * @param data (N, D), (N)
+     *             Input data points and the corresponding target values.
+     * @throws Exception throws exception
+     */
+    @Override
+    public void update(Observations data) throws Exception{
+        if (!this._is_trained || data != this._data){
+            train(data, false);
+            return;
+        }
+
+        int n = data.size();
+        if (n == this._n){
+            return;
+        }
+        absorb(data, this._n, n);
+        this._n = n;
+        solve();
+    }
+
+    /**
+     * Forgets all but the first n observations, after the store was truncated to n rows.
+     * Their contributions are subtracted from the sufficient statistics, unless one of
+     * them is an inducing point, in which case the approximation is rebuilt.
+     *
+     * @param n Number of observations to keep
+     * @throws Exception throws exception
+     */
+    @Override
+    public void truncate(int n) throws Exception{
+        if (!this._is_trained || n >= this._n){
+            return;
+        }
+        if (n < 2){
+            this._n = 0;
+            this._is_trained = false;
+            return;
+        }
+
+        boolean inducing_removed = false;
+        for (int idx : this._Z_idx){
+            inducing_removed |= idx >= n;
+        }
+
+        if (inducing_removed){
+            rebuild(this._data, n);
+        }
+        else{
+            int m = this._Z.size();
+            double[] k = new double[m];
+            // accumulate decrements _n, so the points are removed from the back
+            for (int p = this._n - 1; p >= n; p -- ){
+                for (int j = 0; j < m; j ++ ){
+                    k[j] = this._Kzx.get(j)[p];
+                }
+                accumulate(k, this._y[p], -1);
+            }
+        }
+        this._n = n;
+        solve();
+    }
+
+    public double get_noise(){
+        return this._noise;
+    }
+
+    /**
+     * Returns the number of inducing points.
+     */
+    public int get_num_inducing(){
+        return this._Z.size();
+    }
+
+    @Override
+    public List<Pair<Double, Double>> predict(List<Double[]> X) throws Exception{
+        int n = X.size();
+        double[] mean = new double[n];
+        double[] var = new double[n];
+        predict(ArrayUtils.listToArray_2d(X), mean, var);
+
+        List<Pair<Double, Double>> result = new ArrayList<Pair<Double, Double>>();
+        for (int i = 0; i < n; i ++ ){
+            result.add(new Pair<Double, Double>(mean[i], var[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the predictive mean k_Z(x)^T (noise * K_ZZ + K_ZX K_XZ)^-1 K_ZX y and the
+     * DTC predictive variance k(x, x) - k_Z(x)^T K_ZZ^-1 k_Z(x) + noise * k_Z(x)^T
+     * (noise * K_ZZ + K_ZX K_XZ)^-1 k_Z(x) of the test points in O(m^2) per point.
+     *
+     * @param X (N, D)
+     *          Input test points
+     * @param mean (N)
+     *             Output, predictive mean
+     * @param var (N)
+     *            Output, predictive variance
+     * @throws Exception throws exception
+     */
+    @Override
+    public void predict(double[][] X, double[] mean, double[] var) throws Exception{
+        if (!this._is_trained){
+            throw new Exception("Model has to be trained first!");
+        }
+
+        int m = this._Z.size();
+        for (int start = 0; start < X.length; start += PREDICT_BLOCK_SIZE){
+            int b = Math.min(X.length, start + PREDICT_BLOCK_SIZE) - start;
+            double[][] v_zz = new double[b][];
+            double[][] v_a = new double[b][];
+            double[] k_xx = new double[b];
+            for (int i = 0; i < b; i ++ ){
+                double[] x = Normalization.zero_one_normalization(X[start + i], this._lower, this._upper);
+                double[] k = new double[m];
+                double f = 0.0;
+                for (int j = 0; j < m; j ++ ){
+                    k[j] = this._kernel.k(this._Z.get(j), x);
+                    f += k[j] * this._w[j];
+                }
+                mean[start + i] = f * this._std + this._mean;
+                k_xx[i] = this._kernel.k(x, x);
+                v_zz[i] = k;
+                v_a[i] = k.clone();
+            }
+            if (var == null){
+                continue;
+            }
+
+            this._Kzz_cholesky.forward(v_zz);
+            this._A_cholesky.forward(v_a);
+            for (int i = 0; i < b; i ++ ){
+                double v = k_xx[i];
+                for (int j = 0; j < m; j ++ ){
+                    v += this._noise * v_a[i][j] * v_a[i][j] - v_zz[i][j] * v_zz[i][j];
+                }
+                var[start + i] = Math.max(v, 0.0) * this._std * this._std;
+            }
+        }
+    }
+
+    /**
+     * Discards the approximation and absorbs the first n points of the store.
+     */
+    private void rebuild(Observations data, int n){
+        this._Z = new ArrayList<double[]>();
+        this._Z_idx = new ArrayList<Integer>();
+        this._Kzz = new double[this._max_inducing][];
+        this._Kzz_cholesky = new CholeskyFactor(new double[0][]);
+        this._Kzx = new ArrayList<double[]>();
+        this._B = new double[this._max_inducing][this._max_inducing];
+        this._b_y = new double[this._max_inducing];
+        this._b_1 = new double[this._max_inducing];
+        this._y = new double[Math.max(16, n)];
+        this._sum_y = 0;
+        this._sum_y2 = 0;
+        this._data = data;
+        this._n = 0;
+        absorb(data, 0, n);
+    }
+
+    /**
+     * Adds the points from .. to - 1 of the store to the sufficient statistics and
+     * selects new inducing points among them.
+     */
+    private void absorb(Observations data, int from, int to){
+        double[][] X = data.get_X_normalized(from, to, this._lower, this._upper);
+        for (int i = 0; i < X.length; i ++ ){
+            int p = from + i;
+            double[] x = X[i];
+            int m = this._Z.size();
+
+            double[] k = new double[m + 1];
+            for (int j = 0; j < m; j ++ ){
+                k[j] = this._kernel.k(this._Z.get(j), x);
+            }
+
+            if (m < this._max_inducing){
+                double k_xx = this._kernel.k(x, x);
+                double[] v = Arrays.copyOf(k, m);
+                this._Kzz_cholesky.forward(v);
+                double c = k_xx;
+                for (int j = 0; j < m; j ++ ){
+                    c -= v[j] * v[j];
+                }
+                if (c > SELECTION_THRESHOLD * k_xx){
+                    add_inducing(data, x, p, k, k_xx);
+                    m ++;
+                }
+            }
+
+            for (int j = 0; j < m; j ++ ){
+                store(j, p, k[j]);
+            }
+            if (p >= this._y.length){
+                this._y = Arrays.copyOf(this._y, Math.max(2 * this._y.length, p + 1));
+            }
+            this._y[p] = data.get_y(p);
+            accumulate(Arrays.copyOf(k, m), this._y[p], 1);
+        }
+    }
+
+    /**
+     * Makes the point x (row p of the store) an inducing point. The new row and column
+     * of K(Z, Z) and of the sufficient statistics are computed from the absorbed points.
+     *
+     * @param k (m + 1) k(z_j, x) of the current inducing points, k[m] is set to k(x, x)
+     */
+    private void add_inducing(Observations data, double[] x, int p, double[] k, double k_xx){
+        int m = this._Z.size();
+        double[] row = Arrays.copyOf(k, m + 1);
+        row[m] = k_xx * (1 + JITTER);
+        this._Kzz_cholesky.append(new double[][]{row});
+        this._Kzz[m] = row;
+        k[m] = k_xx;
+
+        // k(x, x_q) of the points that were absorbed before x
+        double[] column = new double[Math.max(16, 2 * this._n)];
+        for (int q = 0; q < this._n; q ++ ){
+            column[q] = this._kernel.k(x, data.get_x_normalized(q, this._lower, this._upper));
+        }
+        this._Kzx.add(column);
+        this._Z.add(x);
+        this._Z_idx.add(p);
+
+        for (int j = 0; j <= m; j ++ ){
+            double[] other = this._Kzx.get(j);
+            double s = 0.0;
+            for (int q = 0; q < this._n; q ++ ){
+                s += other[q] * column[q];
+            }
+            this._B[j][m] = s;
+            this._B[m][j] = s;
+        }
+        double s_y = 0.0, s_1 = 0.0;
+        for (int q = 0; q < this._n; q ++ ){
+            s_y += column[q] * data.get_y(q);
+            s_1 += column[q];
+        }
+        this._b_y[m] = s_y;
+        this._b_1[m] = s_1;
+    }
+
+    /**
+     * Adds (sign = 1) or removes (sign = -1) the contribution of one point to the sufficient statistics.
+     */
+    private void accumulate(double[] k, double y, int sign){
+        int m = k.length;
+        for (int i = 0; i < m; i ++ ){
+            for (int j = 0; j < m; j ++ ){
+                this._B[i][j] += sign * k[i] * k[j];
+            }
+            this._b_y[i] += sign * k[i] * y;
+            this._b_1[i] += sign * k[i];
+        }
+        this._sum_y += sign * y;
+        this._sum_y2 += sign * y * y;
+        this._n += sign;
+    }
+
+    /**
+     * Sets entry p of a column of K(Z, X), growing the column if necessary.
+     */
+    private void store(int j, int p, double value){
+        double[] column = this._Kzx.get(j);
+        if (p >= column.length){
+            column = Arrays.copyOf(column, Math.max(2 * column.length, p + 1));
+            this._Kzx.set(j, column);
+        }
+        column[p] = value;
+    }
+
+    private double std(int n){
+        double mean = this._sum_y / n;
+        return Math.sqrt(Math.max(this._sum_y2 / n - mean * mean, 0.0));
+    }
+
+    /**
+     * Factorizes noise * K(Z, Z) + K(Z, X) K(X, Z) and computes the weights of the
+     * predictive mean for the normalized targets.
+     */
+    private void solve() throws Exception{
+        int n = this._n, m = this._Z.size();
+        this._mean = this._sum_y / n;
+        this._std = std(n);
+        if (this._std == 0){
+            throw new Exception("Cannot normalize output. All targets have the same value!");
+        }
+
+        double[][] A = new double[m][];
+        for (int i = 0; i < m; i ++ ){
+            A[i] = new double[i + 1];
+            for (int j = 0; j <= i; j ++ ){
+                A[i][j] = this._noise * this._Kzz[i][j] + this._B[i][j];
+            }
+        }
+        this._A_cholesky = CholeskyFactor.jittered(A);
+        if (this._A_cholesky.jitter() > 0 && logger.isDebugEnabled()){
+            logger.debug(String.format("Add jitter %g to the inducing point system", this._A_cholesky.jitter()));
+        }
+
+        this._w = new double[m];
+        for (int j = 0; j < m; j ++ ){
+            this._w[j] = (this._b_y[j] - this._mean * this._b_1[j]) / this._std;
+        }
+        this._A_cholesky.solve(this._w);
+    }
+}
@@ -0,0 +1,38 @@
+package algorithm.objective_func;
+
+import org.json.JSONObject;
+
+public abstract class BudgetTask extends Task {
+
+    /**
+     * Evaluates X with the given budget, e.g. the number of epochs a model is trained.
+     * A smaller budget is cheaper but gives a noisier or biased estimate of the value at
+     * the maximum budget.
+     *
+     * @param X (D)
+     *          Configuration
+     * @param budget Budget in [get_min_budget(), get_max_budget()]
+     * @return the function value at this budget
+     */
+    public abstract double evaluate(double[] X, double budget);
+
+    public abstract double get_min_budget();
+
+    public abstract double get_max_budget();
+
+    /**
+     * Evaluates X with the maximum budget.
+     */
+    @Override
+    public double evaluate(double[] X){
+        return evaluate(X, get_max_budget());
+    }
+
+    @Override
+    public JSONObject get_json_data(){
+        JSONObject result = super.get_json_data();
+        result.put("min_budget", get_min_budget());
+        result.put("max_budget", get_max_budget());
+        return result;
+    }
+}
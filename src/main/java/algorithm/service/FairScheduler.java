@@ -0,0 +1,122 @@
+package algorithm.service;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+public class FairScheduler {
+
+    private final Executor _executor;
+    private final Map<Object, Lane> _lanes;
+    /**
+     * Lanes that have tasks and none running, in the order they get the next worker.
+     */
+    private final ArrayDeque<Lane> _ready;
+    private final Runnable _worker;
+
+    /**
+     * Runs the tasks of many keys, e.g. studies, on one executor. The tasks of a key run
+     * one after the other in the order they were submitted, so they may share state
+     * without locking. Keys with waiting tasks take turns: a worker always runs the next
+     * task of the key that waited longest, so a study with many queued suggestions can
+     * not starve the others and every study gets about 1/K of the workers when K studies
+     * are busy.
+     *
+     * @param executor Executor with a bounded number of threads that runs the tasks
+     */
+    public FairScheduler(Executor executor){
+        this._executor = executor;
+        this._lanes = new HashMap<Object, Lane>();
+        this._ready = new ArrayDeque<Lane>();
+        this._worker = new Runnable() {
+            @Override
+            public void run() {
+                run_next();
+            }
+        };
+    }
+
+    /**
+     * Queues a task of a key.
+     *
+     * @param key Key of the task, e.g. the id of the study
+     * @param task Task
+     * @return the future of the result of the task
+     */
+    public <T> Future<T> submit(Object key, Callable<T> task){
+        FutureTask<T> future = new FutureTask<T>(task);
+        synchronized (this){
+            Lane lane = this._lanes.get(key);
+            if (lane == null){
+                lane = new Lane(key);
+                this._lanes.put(key, lane);
+            }
+            lane.tasks.add(future);
+            if (!lane.scheduled){
+                lane.scheduled = true;
+                this._ready.addLast(lane);
+            }
+        }
+        // Every lane in _ready has at least one worker run on its way
+        this._executor.execute(this._worker);
+        return future;
+    }
+
+    /**
+     * Returns the number of tasks that wait or run.
+     */
+    public synchronized int size(){
+        int result = 0;
+        for (Lane lane : this._lanes.values()){
+            result += lane.tasks.size();
+        }
+        return result;
+    }
+
+    private void run_next(){
+        Lane lane;
+        FutureTask<?> task;
+        synchronized (this){
+            lane = this._ready.pollFirst();
+            if (lane == null){
+                // All lanes with tasks are running, they schedule their next task themselves
+                return;
+            }
+            task = lane.tasks.peek();
+        }
+
+        // FutureTask keeps the exception of the task
+        task.run();
+
+        boolean more;
+        synchronized (this){
+            lane.tasks.poll();
+            more = !lane.tasks.isEmpty();
+            if (more){
+                this._ready.addLast(lane);
+            }
+            else{
+                lane.scheduled = false;
+                this._lanes.remove(lane.key);
+            }
+        }
+        if (more){
+            this._executor.execute(this._worker);
+        }
+    }
+
+    private static class Lane {
+        private final Object key;
+        private final ArrayDeque<FutureTask<?>> tasks;
+        private boolean scheduled;
+
+        private Lane(Object key){
+            this.key = key;
+            this.tasks = new ArrayDeque<FutureTask<?>>();
+        }
+    }
+}
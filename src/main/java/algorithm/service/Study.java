@@ -0,0 +1,103 @@
+package algorithm.service;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import algorithm.metrics.PhaseMetrics;
+import algorithm.solver.BayesianOptimizationSolver;
+import utils.Pair;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class Study {
+
+    private final String _id;
+    private final BayesianOptimizationSolver _solver;
+    private final PhaseMetrics _metrics;
+    /**
+     * Status after the last suggestion or report. It is replaced, never changed, so it
+     * can be read while the next suggestion is computed.
+     */
+    private volatile JSONObject _status;
+
+    /**
+     * A study of the StudyServer: the points are suggested by the solver, evaluated by
+     * the client and reported back by trial number, in any order. The methods that
+     * change the study are meant to be called one after the other, e.g. by the tasks of
+     * a FairScheduler.
+     *
+     * @param id Id of the study
+     * @param solver Solver of the study
+     * @param prefetch Executor that precomputes the next suggestion after every suggest,
+     *                 or null to compute it in suggest
+     */
+    public Study(String id, BayesianOptimizationSolver solver, Executor prefetch){
+        this._id = id;
+        this._solver = solver;
+        this._metrics = new PhaseMetrics();
+        this._solver.add_listener(this._metrics);
+        this._solver.set_prefetch(prefetch);
+        update_status();
+    }
+
+    public String get_id(){
+        return this._id;
+    }
+
+    /**
+     * Suggests the next point to evaluate.
+     *
+     * @return trial number, point
+     */
+    public Pair<Integer, double[]> suggest() throws Exception{
+        Pair<Integer, double[]> result = this._solver.ask();
+        update_status();
+        return result;
+    }
+
+    /**
+     * Reports the function value of a suggested point.
+     *
+     * @param trial Trial number returned by suggest
+     * @param y Function value
+     * @throws Exception if the trial is unknown or was already reported
+     */
+    public void report(int trial, double y) throws Exception{
+        if (!this._solver.get_pending_trials().contains(trial)){
+            throw new Exception("Trial " + trial + " of study " + this._id + " is not pending.");
+        }
+        this._solver.tell(trial, y);
+        update_status();
+    }
+
+    /**
+     * Returns the number of observations, pending trials, the incumbent and the
+     * durations of the phases of the study.
+     */
+    public JSONObject get_status(){
+        return this._status;
+    }
+
+    /**
+     * Writes the rest of the trace of the study.
+     */
+    public void close() throws IOException{
+        this._solver.set_prefetch(null);
+        this._solver.close();
+    }
+
+    private void update_status(){
+        JSONObject result = new JSONObject();
+        result.put("id", this._id);
+        result.put("observations", this._solver.get_observations().size());
+        result.put("pending", new JSONArray(this._solver.get_pending_trials()));
+        List<Double> values = this._solver.get_incumbent_values();
+        if (!values.isEmpty()){
+            result.put("incumbent", this._solver.get_incumbents().get(values.size() - 1));
+            result.put("incumbent_value", values.get(values.size() - 1));
+        }
+        result.put("metrics", this._metrics.get_json_data());
+        this._status = result;
+    }
+}
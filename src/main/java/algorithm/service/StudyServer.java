@@ -0,0 +1,416 @@
+package algorithm.service;
+
+import org.apache.log4j.*;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import algorithm.fmin.BayesianOptimization;
+import algorithm.objective_func.Task;
+import algorithm.solver.BayesianOptimizationSolver;
+import utils.Pair;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StudyServer {
+
+    private Logger logger = Logger.getLogger(StudyServer.class);
+
+    private final HttpServer _server;
+    private final ExecutorService _http;
+    private final ForkJoinPool _pool;
+    private final FairScheduler _scheduler;
+    private final ConcurrentHashMap<String, Study> _studies;
+    private final AtomicInteger _next_id;
+    /**
+     * Directory of the traces of the studies, or null if the server writes none.
+     */
+    private final File _output_dir;
+    /**
+     * Canonical paths of the traces of the live studies and the ids of their studies.
+     * Two studies writing one file would truncate and interleave each other's records.
+     */
+    private final ConcurrentHashMap<String, String> _traces;
+
+    /**
+     * Hosts many Bayesian optimization studies in one JVM behind a local HTTP endpoint.
+     * Clients evaluate the points themselves:
+     *
+     *     POST   /studies                 {"lower": [..], "upper": [..], "maximizer": "random",
+     *                                      "acquisition": "log_ei", "model": "gp", "n_init": 5,
+     *                                      "initial_design": "sobol", "seed": 1, "train_interval": 5,
+     *                                      "output_path": "trace.json"}
+     *                                      -> {"id": ..}, all fields but the bounds are optional
+     *     GET    /studies                 -> {"studies": [status, ..]}
+     *     GET    /studies/{id}            -> status
+     *     POST   /studies/{id}/suggest    -> {"trial": .., "x": [..]}
+     *     POST   /studies/{id}/report     {"trial": .., "y": ..} -> status
+     *     DELETE /studies/{id}            -> status, the trace of the study is closed
+     *
+     * Model fitting and acquisition maximization of all studies run on one pool with
+     * n_workers threads. A FairScheduler lets the studies take turns on it and runs the
+     * requests of one study one after the other. After every suggestion the next one is
+     * precomputed in the turn of the study, so a suggest usually returns without
+     * waiting for the model. Errors are answered with
+     * {"error": message} and status 400, 404 or 405.
+     *
+     * The server writes no traces, studies with an output_path are rejected.
+     *
+     * @param port Port on the loopback interface, 0 for any free port
+     * @param n_workers Number of threads for model fitting and acquisition maximization
+     * @throws IOException if the port can not be bound
+     */
+    public StudyServer(int port, int n_workers) throws IOException{
+        this(port, n_workers, null);
+    }
+
+    /**
+     * Hosts many Bayesian optimization studies, see StudyServer(port, n_workers). The
+     * output_path of a study is the name of its trace file in output_dir, it can not
+     * name a file outside of it.
+     *
+     * @param port Port on the loopback interface, 0 for any free port
+     * @param n_workers Number of threads for model fitting and acquisition maximization
+     * @param output_dir Directory of the traces of the studies, or null to write none
+     * @throws IOException if the port can not be bound or output_dir is not a directory
+     */
+    public StudyServer(int port, int n_workers, String output_dir) throws IOException{
+        if (output_dir != null && !new File(output_dir).isDirectory()){
+            throw new IOException(output_dir + " is not a directory.");
+        }
+        this._output_dir = output_dir == null ? null : new File(output_dir).getCanonicalFile();
+        this._pool = new ForkJoinPool(n_workers);
+        this._scheduler = new FairScheduler(this._pool);
+        this._studies = new ConcurrentHashMap<String, Study>();
+        this._traces = new ConcurrentHashMap<String, String>();
+        this._next_id = new AtomicInteger();
+
+        // The request threads only wait for the pool, they do not compute
+        this._http = Executors.newFixedThreadPool(Math.max(16, 4 * n_workers));
+        this._server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this._server.setExecutor(this._http);
+        this._server.createContext("/studies", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+    }
+
+    public void start(){
+        this._server.start();
+        logger.info("Study server listening on " + this._server.getAddress());
+    }
+
+    /**
+     * Stops accepting requests, waits up to delay seconds for running requests and
+     * closes the traces of all studies.
+     *
+     * @param delay Seconds to wait for running requests
+     */
+    public void stop(int delay) throws Exception{
+        this._server.stop(delay);
+        this._http.shutdown();
+        for (Study study : this._studies.values()){
+            study.close();
+            release_trace(study);
+        }
+        this._pool.shutdown();
+        this._pool.awaitTermination(delay, TimeUnit.SECONDS);
+    }
+
+    public int get_port(){
+        return this._server.getAddress().getPort();
+    }
+
+    /**
+     * Creates a study from its json description.
+     *
+     * @param request json object, see the constructor
+     * @return the new study
+     */
+    public Study create(JSONObject request) throws Exception{
+        final double[] lower = to_array(request.getJSONArray("lower"));
+        final double[] upper = to_array(request.getJSONArray("upper"));
+        if (lower.length == 0 || lower.length != upper.length){
+            throw new Exception("The bounds of the study have to be non-empty and of the same length.");
+        }
+        for (int i = 0; i < lower.length; i ++ ){
+            if (!(lower[i] < upper[i])){
+                throw new Exception(String.format("Lower bound %g >= upper bound %g in dimension %d", lower[i], upper[i], i));
+            }
+        }
+
+        String output_path = output_path(request.optString("output_path", null));
+        if (output_path != null && this._traces.putIfAbsent(output_path, "") != null){
+            throw new Exception("output_path(value = " + request.getString("output_path") + ") is the trace of another study.");
+        }
+        try{
+            Study study = create(request, lower, upper, output_path);
+            if (output_path != null){
+                this._traces.put(output_path, study.get_id());
+            }
+            return study;
+        }
+        catch (Exception e){
+            if (output_path != null){
+                this._traces.remove(output_path);
+            }
+            throw e;
+        }
+    }
+
+    private Study create(JSONObject request, final double[] lower, final double[] upper, String output_path) throws Exception{
+        final String id = Integer.toString(this._next_id.getAndIncrement());
+        Task task = new Task() {
+            @Override
+            public double evaluate(double[] X) {
+                throw new UnsupportedOperationException("The points of study " + id + " are evaluated by the client.");
+            }
+
+            @Override
+            public double[] get_lower() {
+                return lower;
+            }
+
+            @Override
+            public double[] get_upper() {
+                return upper;
+            }
+
+            @Override
+            public JSONObject get_json_data() {
+                JSONObject result = new JSONObject();
+                result.put("Task", "Study " + id);
+                return result;
+            }
+        };
+        int n_init = request.optInt("n_init", Math.max(2, lower.length + 1));
+        BayesianOptimization bo = new BayesianOptimization(task, n_init, request.optString("maximizer", "random"),
+                request.optString("acquisition", "log_ei"), request.optString("model", "gp"), n_init,
+                request.optString("initial_design", "sobol"), output_path,
+                request.has("seed") ? request.getLong("seed") : System.nanoTime(), this._pool,
+                request.optInt("train_interval", BayesianOptimization.DEFAULT_TRAIN_INTERVAL));
+
+        BayesianOptimizationSolver solver = bo.get_solver();
+        // The next suggestion is precomputed in the turn of the study on the shared pool
+        Study study = new Study(id, solver, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                _scheduler.submit(id, Executors.callable(command));
+            }
+        });
+        this._studies.put(id, study);
+        logger.info("Created study " + id);
+        return study;
+    }
+
+    public Study get(String id){
+        return this._studies.get(id);
+    }
+
+    /**
+     * Frees the name of the trace of a closed study for new studies.
+     */
+    private void release_trace(Study study){
+        this._traces.values().remove(study.get_id());
+    }
+
+    /**
+     * Resolves the output_path of a study, a file name, in the output directory.
+     *
+     * @param name File name given by the client, or null
+     * @return the path of the trace, or null if name is null
+     * @throws Exception if the server writes no traces or name is not a file in the output directory
+     */
+    private String output_path(String name) throws Exception{
+        if (name == null){
+            return null;
+        }
+        if (this._output_dir == null){
+            throw new Exception("The server writes no traces, output_path is not allowed.");
+        }
+        // Separators, "." and ".." resolve to a file that is not directly in the output directory
+        File file = new File(this._output_dir, name).getCanonicalFile();
+        if (name.isEmpty() || !this._output_dir.equals(file.getParentFile())){
+            throw new Exception("output_path(value = " + name + ") has to be a file name in the output directory of the server.");
+        }
+        return file.getPath();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException{
+        int code = 200;
+        JSONObject response;
+        try{
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+            // path = {"", "studies", id, action}, the context also matches e.g. /studiesfoo
+            if (path.length < 2 || !path[1].equals("studies")){
+                response = error("Unknown path " + exchange.getRequestURI().getPath());
+                code = 404;
+            }
+            else if (path.length == 2){
+                if (method.equals("POST")){
+                    response = new JSONObject().put("id", create(new JSONObject(read(exchange))).get_id());
+                    code = 201;
+                }
+                else if (method.equals("GET")){
+                    JSONArray studies = new JSONArray();
+                    for (Study study : this._studies.values()){
+                        studies.put(study.get_status());
+                    }
+                    response = new JSONObject().put("studies", studies);
+                }
+                else{
+                    response = error("Method " + method + " is not allowed.");
+                    code = 405;
+                }
+            }
+            else if (path.length <= 4 && this._studies.containsKey(path[2])){
+                final Study study = this._studies.get(path[2]);
+                String action = path.length == 4 ? path[3] : "";
+                if (action.equals("suggest") && method.equals("POST")){
+                    Pair<Integer, double[]> trial = schedule(study, new Callable<Pair<Integer, double[]>>() {
+                        @Override
+                        public Pair<Integer, double[]> call() throws Exception {
+                            return study.suggest();
+                        }
+                    });
+                    response = new JSONObject().put("trial", trial.first()).put("x", trial.second());
+                }
+                else if (action.equals("report") && method.equals("POST")){
+                    JSONObject request = new JSONObject(read(exchange));
+                    final int trial = request.getInt("trial");
+                    final double y = request.getDouble("y");
+                    schedule(study, new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            study.report(trial, y);
+                            return null;
+                        }
+                    });
+                    response = study.get_status();
+                }
+                else if (action.isEmpty() && method.equals("GET")){
+                    response = study.get_status();
+                }
+                else if (action.isEmpty() && method.equals("DELETE")){
+                    this._studies.remove(study.get_id());
+                    // Behind the requests of the study that are still queued
+                    schedule(study, new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            study.close();
+                            release_trace(study);
+                            return null;
+                        }
+                    });
+                    response = study.get_status();
+                    logger.info("Deleted study " + study.get_id());
+                }
+                else{
+                    response = error(method + " " + exchange.getRequestURI().getPath() + " is not allowed.");
+                    code = 405;
+                }
+            }
+            else{
+                response = error("Unknown study or path " + exchange.getRequestURI().getPath());
+                code = 404;
+            }
+        }
+        catch (Exception e){
+            response = error(e.getMessage() == null ? e.toString() : e.getMessage());
+            code = 400;
+        }
+
+        byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, body.length);
+        OutputStream out = exchange.getResponseBody();
+        try{
+            out.write(body);
+        }
+        finally{
+            out.close();
+        }
+    }
+
+    /**
+     * Runs a task of the study on the pool and waits for its result.
+     */
+    private <T> T schedule(Study study, Callable<T> task) throws Exception{
+        try{
+            return this._scheduler.submit(study.get_id(), task).get();
+        }
+        catch (ExecutionException e){
+            if (e.getCause() instanceof Exception){
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static JSONObject error(String message){
+        return new JSONObject().put("error", message);
+    }
+
+    private static String read(HttpExchange exchange) throws IOException{
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0){
+            result.write(buffer, 0, n);
+        }
+        return new String(result.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static double[] to_array(JSONArray array){
+        double[] result = new double[array.length()];
+        for (int i = 0; i < result.length; i ++ ){
+            result[i] = array.getDouble(i);
+        }
+        return result;
+    }
+
+    /**
+     * Starts a study server.
+     *
+     * @param args port (default 8080), number of worker threads (default: number of cores),
+     *             directory of the traces of the studies (default: none)
+     */
+    public static void main(String[] args) throws Exception{
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int n_workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final StudyServer server = new StudyServer(port, n_workers, args.length > 2 ? args[2] : null);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try{
+                    server.stop(1);
+                }
+                catch (Exception e){
+                    Logger.getLogger(StudyServer.class).error("Could not stop the study server", e);
+                }
+            }
+        });
+        server.start();
+    }
+}
@@ -5,11 +5,28 @@ import org.json.JSONObject;
 import algorithm.acquisition_functions.BaseAcquisitionFunction;
 import algorithm.models.BaseModel;
 import algorithm.maximizers.BaseMaximizer;
-import java.io.PrintWriter;
+import algorithm.metrics.Phase;
+import algorithm.metrics.SolverListener;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import utils.Pair;
+import utils.ArrayUtils;
 import algorithm.objective_func.Task;
+import algorithm.utils.Observations;
+import algorithm.utils.TraceRecord;
+import algorithm.utils.TraceWriter;
 
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.List;
 
 public class BaseSolver {
@@ -23,10 +40,9 @@ public class BaseSolver {
     protected BaseModel _model;
     protected BaseMaximizer _maximize_func;
     protected String _output_path;
-    protected PrintWriter _writer;
+    protected TraceWriter _trace;
 
-    protected List<Double[]> _X;
-    protected List<Double> _y;
+    protected Observations _observations;
 
     protected long _time_start;
     protected List<Long> _time_overhead;
@@ -35,6 +51,16 @@ public class BaseSolver {
     protected List<Long> _time_func_eval;
     protected List<Long> _runtime;
 
+    /**
+     * Iteration the model and acquisition phases that are reported to the listeners
+     * belong to, set by the optimization loops.
+     */
+    protected int _iteration;
+    private List<SolverListener> _listeners;
+
+    private static final int CHECKPOINT_MAGIC = 0x424f4350;
+    private static final int CHECKPOINT_VERSION = 1;
+
     /**
      * Base class which specifies the interface for solvers. Derive from
      * this class if you implement your own solver.
@@ -53,7 +79,9 @@ public class BaseSolver {
      *                      Optimization method that is used to maximize the acquisition
      *                      function
      * @param output_path String
-     *                    Output path
+     *                    Output path of the trace, one Json line per iteration or the compact
+     *                    binary format of BinaryTraceWriter if it ends with ".bin". The file
+     *                    is created when the optimization starts.
      * @throws Exception throws exception
      */
     public BaseSolver(Task objective_func, double[] lower, double[] upper, BaseAcquisitionFunction acquisition_func,
@@ -70,24 +98,40 @@ public class BaseSolver {
         this._time_overhead = new ArrayList<Long>();
         this._time_func_eval = new ArrayList<Long>();
         this._runtime = new ArrayList<Long>();
+        this._listeners = new CopyOnWriteArrayList<SolverListener>();
 
         this._incumbents = new ArrayList<Double[]>();
         this._incumbent_values = new ArrayList<Double>();
 
-        this._X = new ArrayList<Double[]>();
-        this._y = new ArrayList<Double>();
+        this._observations = new Observations(lower.length);
+    }
 
-        if (output_path != null){
-            createSaveDir();
+    /**
+     * Opens the trace if an output path is set and it is not open yet.
+     *
+     * @param append If true the trace is continued, e.g. when a study is resumed
+     * @throws Exception if the output file can not be created
+     */
+    protected void open_output(boolean append) throws Exception{
+        if (this._output_path != null && this._trace == null){
+            createSaveDir(append);
         }
     }
 
     /**
      * Creates the save directory to store the runs
      */
-    private void createSaveDir() throws Exception{
+    private void createSaveDir(boolean append) throws Exception{
         try{
-            this._writer = new PrintWriter(this._output_path, "UTF-8");
+            JSONObject header = new JSONObject();
+            header.put("Solver", this.getClass().getSimpleName());
+            header.put("Task", this._objective_func.get_json_data());
+            if (this._acquisition_func != null){
+                header.put("Acquisition", this._acquisition_func.get_json_data());
+            }
+            header.put("lower", this._lower);
+            header.put("upper", this._upper);
+            this._trace = TraceWriter.open(this._output_path, header, this._lower.length, append);
         }
         catch (Exception e){
             logger.error("Can't create output file: " + this._output_path + " in BaseSolver.createSaveDir().");
@@ -95,8 +139,8 @@ public class BaseSolver {
         }
     }
 
-    public Pair<List<Double[]>, List<Double>> get_observations(){
-        return new Pair<List<Double[]>, List<Double>>(this._X, this._y);
+    public Observations get_observations(){
+        return this._observations;
     }
 
     public List<Double[]> get_incumbents(){
@@ -115,6 +159,82 @@ public class BaseSolver {
         return this._time_overhead;
     }
 
+    /**
+     * Waits until the trace of all iterations so far is on disk.
+     *
+     * @throws IOException if writing the trace failed
+     */
+    public void flush_output() throws IOException{
+        if (this._trace != null){
+            long t = System.nanoTime();
+            this._trace.flush();
+            emit(Phase.IO, this._iteration, t);
+        }
+    }
+
+    /**
+     * Writes the rest of the trace and closes the output file. A later run starts a new trace.
+     *
+     * @throws IOException if writing the trace failed
+     */
+    public void close() throws IOException{
+        if (this._trace != null){
+            TraceWriter trace = this._trace;
+            this._trace = null;
+            trace.close();
+        }
+    }
+
+    /**
+     * Registers a listener that is told the duration of every phase of the
+     * optimization loop, e.g. PhaseMetrics.
+     *
+     * @param listener SolverListener
+     */
+    public void add_listener(SolverListener listener){
+        this._listeners.add(listener);
+    }
+
+    public void remove_listener(SolverListener listener){
+        this._listeners.remove(listener);
+    }
+
+    /**
+     * Emits the phases of the optimization loop as Java Flight Recorder events. The
+     * listener is only part of the build on JDK 11 or newer and needs a runtime with
+     * JFR, otherwise nothing happens.
+     *
+     * @return true if the events are emitted
+     */
+    public boolean enable_jfr(){
+        try{
+            Class<?> c = Class.forName("algorithm.metrics.JfrListener");
+            add_listener((SolverListener) c.getConstructor().newInstance());
+            return true;
+        }
+        catch (Throwable e){
+            logger.warn("Java Flight Recorder events are not available: " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Reports a phase that started at start (System.nanoTime) and ends now to the listeners.
+     *
+     * @return the duration of the phase in nanoseconds
+     */
+    protected long emit(Phase phase, int it, long start){
+        long duration = System.nanoTime() - start;
+        emit(phase, it, start, duration);
+        return duration;
+    }
+
+    protected void emit(Phase phase, int it, long start, long duration){
+        for (SolverListener listener : this._listeners){
+            listener.on_event(phase, it, start, duration);
+        }
+    }
+
     public BaseModel get_model() throws Exception{
         if (this._model == null){
             logger.error("No model trained yet!");
@@ -144,24 +264,20 @@ public class BaseSolver {
     /**
      * Suggests a new point to evaluate.
      *
-     * @param X double[N][D]
-     *          Initial points that are already evaluated
-     * @param y double[N]
-     *          Function values of the already evaluated points
+     * @param data double[N][D], double[N]
+     *             Points that are already evaluated and their function values
      * @return double[D]
      *          Suggested point
      */
-    public double[] choose_next(List<Double[]> X, List<Double> y) throws Exception{
+    public double[] choose_next(Observations data) throws Exception{
         return new double[]{0d};
     }
 
     /**
      * Suggests a new point to evaluate.
      *
-     * @param X double[N][D]
-     *          Initial points that are already evaluated
-     * @param y double[N]
-     *          Function values of the already evaluated points
+     * @param data double[N][D], double[N]
+     *             Points that are already evaluated and their function values
      * @param do_optimize bool
      *                    If true the hyperparameters of the model are
      *                    optimized before the acquisition function is
@@ -169,10 +285,157 @@ public class BaseSolver {
      * @return double[D]
      *          Suggested point
      */
-    public double[] choose_next(List<Double[]> X, List<Double> y, boolean do_optimize) throws Exception{
+    public double[] choose_next(Observations data, boolean do_optimize) throws Exception{
         return new double[]{0d};
     }
 
+    /**
+     * Writes a checkpoint of the study: observations, incumbents, timings, the state of
+     * the random number generator of the maximizer and the fitted state of the model.
+     * The checkpoint is written to a temporary file, synced to disk and renamed, so a
+     * crash while writing leaves the previous checkpoint intact. The trace is flushed
+     * first, so it covers at least the iterations of the checkpoint.
+     *
+     * @param path Path of the checkpoint
+     * @param it Number of finished iterations
+     * @throws IOException if the checkpoint can not be written
+     */
+    public void save_checkpoint(String path, int it) throws IOException{
+        flush_output();
+        long t = System.nanoTime();
+
+        File tmp = new File(path + ".tmp");
+        FileOutputStream file = new FileOutputStream(tmp);
+        try{
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(file, 1 << 16));
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeUTF(this._model == null ? "" : this._model.getClass().getName());
+            out.writeInt(it);
+            out.writeLong(System.currentTimeMillis() - this._time_start);
+
+            int n = this._observations.size(), d = this._observations.dim();
+            out.writeInt(d);
+            out.writeInt(n);
+            for (int i = 0; i < n; i ++ ){
+                for (int j = 0; j < d; j ++ ){
+                    out.writeDouble(this._observations.get(i, j));
+                }
+                out.writeDouble(this._observations.get_y(i));
+            }
+
+            out.writeInt(this._incumbents.size());
+            for (int i = 0; i < this._incumbents.size(); i ++ ){
+                for (Double v : this._incumbents.get(i)){
+                    out.writeDouble(v);
+                }
+                out.writeDouble(this._incumbent_values.get(i));
+            }
+            write_list(out, this._time_overhead);
+            write_list(out, this._time_func_eval);
+            write_list(out, this._runtime);
+
+            if (this._maximize_func != null){
+                this._maximize_func.save_state(out);
+            }
+            if (this._model != null){
+                this._model.save_state(out);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        finally{
+            file.close();
+        }
+        Files.move(tmp.toPath(), new File(path).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long duration = emit(Phase.IO, it - 1, t);
+        if (logger.isInfoEnabled()){
+            logger.info(String.format("Saved checkpoint of iteration %d in %d ms", it, duration / 1000000));
+        }
+    }
+
+    /**
+     * Restores a checkpoint written by save_checkpoint. The solver has to be set up with
+     * the same task, model and maximizer as the one that wrote it. The model is restored
+     * without fitting it again if it supports save_state, otherwise it is trained in the
+     * next iteration.
+     *
+     * @param path Path of the checkpoint
+     * @param capacity Number of observations the restored store should have room for
+     * @return the number of finished iterations
+     * @throws Exception if the checkpoint can not be read or belongs to another model
+     */
+    protected int load_checkpoint(String path, int capacity) throws Exception{
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(path)));
+        try{
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION){
+                throw new Exception(path + " is not a checkpoint.");
+            }
+            String model = in.readUTF();
+            String expected = this._model == null ? "" : this._model.getClass().getName();
+            if (!model.equals(expected)){
+                throw new Exception(String.format("The checkpoint %s was written with the model %s, not %s.", path, model, expected));
+            }
+            int it = in.readInt();
+            this._time_start = System.currentTimeMillis() - in.readLong();
+
+            int d = in.readInt(), n = in.readInt();
+            if (d != this._lower.length){
+                throw new Exception(String.format("Dimension mismatch of the checkpoint %s: %d != %d", path, d, this._lower.length));
+            }
+            this._observations = new Observations(d, Math.max(capacity, n));
+            double[] x = new double[d];
+            for (int i = 0; i < n; i ++ ){
+                for (int j = 0; j < d; j ++ ){
+                    x[j] = in.readDouble();
+                }
+                this._observations.add(x, in.readDouble());
+            }
+
+            int m = in.readInt();
+            this._incumbents.clear();
+            this._incumbent_values.clear();
+            for (int i = 0; i < m; i ++ ){
+                Double[] incumbent = new Double[d];
+                for (int j = 0; j < d; j ++ ){
+                    incumbent[j] = in.readDouble();
+                }
+                this._incumbents.add(incumbent);
+                this._incumbent_values.add(in.readDouble());
+            }
+            read_list(in, this._time_overhead);
+            read_list(in, this._time_func_eval);
+            read_list(in, this._runtime);
+
+            if (this._maximize_func != null){
+                this._maximize_func.load_state(in);
+            }
+            if (this._model != null && !this._model.load_state(in, this._observations)){
+                logger.info("The model is trained again in the next iteration");
+            }
+            logger.info(String.format("Restored checkpoint of iteration %d with %d observations", it, n));
+            return it;
+        }
+        finally{
+            in.close();
+        }
+    }
+
+    private static void write_list(ObjectOutputStream out, List<Long> list) throws IOException{
+        out.writeInt(list.size());
+        for (Long v : list){
+            out.writeLong(v);
+        }
+    }
+
+    private static void read_list(ObjectInputStream in, List<Long> list) throws IOException{
+        list.clear();
+        int n = in.readInt();
+        for (int i = 0; i < n; i ++ ){
+            list.add(in.readLong());
+        }
+    }
+
     /**
      * Json getter function
      *
@@ -183,8 +446,8 @@ public class BaseSolver {
         JSONObject result = new JSONObject();
         result.put("optimization_overhead", this._time_overhead.get(it));
         result.put("runtime", System.currentTimeMillis() - this._time_start);
-        result.put("incumbent", this._incumbents);
-        result.put("incumbent_fval", this._incumbent_values);
+        result.put("incumbent", this._incumbents.get(it));
+        result.put("incumbent_fval", this._incumbent_values.get(it));
         result.put("time_func_eval", this._time_func_eval.get(it));
         result.put("iteration", it);
 
@@ -192,23 +455,97 @@ public class BaseSolver {
     }
 
     /**
-     * Saves meta information of an iteration in a Json file.
+     * Saves meta information of an iteration in the trace. Model, task and acquisition
+     * function are described once in the header of the trace, so only the delta record
+     * of the iteration is written.
      *
      * @param it Iteration
      */
     public void save_json(int it){
-        JSONObject base_solver_data = this.get_json_data(it);
-        JSONObject base_model_data = this._model.get_json_data();
-        JSONObject base_task_data = this._objective_func.get_json_data();
-        JSONObject base_acquisition_data = this._acquisition_func.get_json_data();
+        save_output(it);
+    }
 
-        JSONObject result = new JSONObject();
-        result.put("Solver", base_solver_data);
-        result.put("Model", base_model_data);
-        result.put("Task", base_task_data);
-        result.put("Acquisition", base_acquisition_data);
+    /**
+     * Returns whether a model that normalizes its output can be fit to the data: it needs
+     * two points with different function values.
+     */
+    protected static boolean can_fit(Observations data){
+        for (int i = 1; i < data.size(); i ++ ){
+            if (data.get_y(i) != data.get_y(0)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records a finished evaluation: extends the data and tracks incumbent, timings and output.
+     */
+    protected void record(int it, Evaluation result){
+        this._observations.add(result.x, result.y);
+        this._time_overhead.add(result.time_overhead);
+        this._time_func_eval.add(result.time_func_eval);
+        emit(Phase.EVALUATE, it, result.start, result.duration);
+        if (logger.isInfoEnabled()){
+            logger.info(String.format("Configuration achieved a performance of %f in %d ms", result.y, result.time_func_eval));
+        }
+
+        int best_idx = this._observations.argmin();
+        Double[] incumbent = ArrayUtils.double2Double(this._observations.get_x(best_idx));
+        Double incumbent_value = this._observations.get_y(best_idx);
 
-        this._writer.write(result.toString());
-        this._writer.write('\n'); // Json more readable
+        this._incumbents.add(incumbent);
+        this._incumbent_values.add(incumbent_value);
+        this._runtime.add(System.currentTimeMillis() - this._time_start);
+
+        if (this._output_path != null){
+            save_output(it);
+        }
+    }
+
+    /**
+     * Hands the delta record of an iteration, i.e. the last evaluated point, its value,
+     * the incumbent value and the timings, over to the trace writer.
+     *
+     * @param it Iteration
+     */
+    protected void save_output(int it){
+        int n = this._observations.size();
+        boolean new_incumbent = it == 0 || this._incumbent_values.get(it) < this._incumbent_values.get(it - 1);
+        long t = System.nanoTime();
+        this._trace.write(new TraceRecord(it, this._observations.get_x(n - 1), this._observations.get_y(n - 1), new_incumbent,
+                this._incumbent_values.get(it), this._time_overhead.get(it), this._time_func_eval.get(it), this._runtime.get(it)));
+        emit(Phase.IO, it, t);
+    }
+
+    /**
+     * One evaluation of the objective function that runs on the executor.
+     */
+    protected static class Evaluation implements Callable<Evaluation> {
+        private Task task;
+        double[] x;
+        double y;
+        long time_overhead;
+        long time_func_eval;
+        /**
+         * System.nanoTime at the start of the evaluation and its duration in nanoseconds.
+         */
+        long start;
+        long duration;
+
+        protected Evaluation(Task task, double[] x, long time_overhead){
+            this.task = task;
+            this.x = x;
+            this.time_overhead = time_overhead;
+        }
+
+        @Override
+        public Evaluation call(){
+            this.start = System.nanoTime();
+            this.y = this.task.evaluate(this.x);
+            this.duration = System.nanoTime() - this.start;
+            this.time_func_eval = this.duration / 1000000;
+            return this;
+        }
     }
 }
@@ -4,13 +4,21 @@ import org.apache.log4j.*;
 import algorithm.acquisition_functions.BaseAcquisitionFunction;
 import algorithm.models.BaseModel;
 import algorithm.maximizers.BaseMaximizer;
-import org.json.JSONObject;
+import algorithm.metrics.Phase;
 import utils.Pair;
 import utils.ArrayUtils;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+import algorithm.initial_design.BaseInitialDesign;
 import algorithm.initial_design.InitRandomUniform;
-import utils.ArrayUtils;
+import algorithm.utils.Observations;
+import algorithm.utils.Parallel;
 import algorithm.objective_func.Task;
 
 public class BayesianOptimizationSolver extends BaseSolver{
@@ -18,8 +26,34 @@ public class BayesianOptimizationSolver extends BaseSolver{
     private Logger logger = Logger.getLogger(BayesianOptimizationSolver.class);
 
     private int _initial_points;
+    private BaseInitialDesign _initial_design;
     private int _train_interval;
     private int _n_restarts;
+    private String _checkpoint_path;
+    private int _checkpoint_interval;
+    /**
+     * Number of observations at the last optimization of the hyperparameters by suggest.
+     */
+    private int _fit_observations;
+
+    /**
+     * Guards model, observations and the precomputed suggestion of ask and tell.
+     */
+    private final ReentrantLock _lock;
+    /**
+     * Asked trials that are not told yet, and told trials that are not recorded yet.
+     * Both are guarded by _trials.
+     */
+    private final Map<Integer, Evaluation> _trials;
+    private final ArrayDeque<Evaluation> _told;
+    private int _n_asks;
+    private double[] _suggestion;
+    /**
+     * Number of asks the suggestion was computed for, it is stale after the next ask.
+     */
+    private int _suggestion_asks;
+    private Executor _prefetch;
+    private boolean _prefetching;
 
 
     /**
@@ -54,9 +88,15 @@ public class BayesianOptimizationSolver extends BaseSolver{
         super(objective_func, lower, upper, acquisition_func, model, maximize_func, output_path);
 
         this._initial_points = initial_points;
+        this._initial_design = new InitRandomUniform(lower, upper, new Random().nextLong());
         this._train_interval = train_interval;
         this._n_restarts = n_restarts;
 
+        this._lock = new ReentrantLock();
+        this._trials = new LinkedHashMap<Integer, Evaluation>();
+        this._told = new ArrayDeque<Evaluation>();
+        this._suggestion_asks = -1;
+
         this._incumbents = new ArrayList<Double[]>();
         this._incumbent_values = new ArrayList<Double>();
     }
@@ -76,56 +116,138 @@ public class BayesianOptimizationSolver extends BaseSolver{
      *              (Estimated) function value of the incumbent
      */
     public Pair<Double[], Double> run(int num_iterations, double[][] X, double[] y) throws Exception{
+        open_output(false);
         this._time_start = System.currentTimeMillis();
 
         if (X == null && y == null){
-            long start_time_overhead = System.currentTimeMillis();
-            double[][] init = InitRandomUniform.get(this._lower, this._upper, this._initial_points);
+            this._observations = new Observations(this._lower.length, Math.max(num_iterations, this._initial_points));
+            initial_design(0);
+        }
+        else if (X == null || y == null){
+            throw new Exception("X or y is null in BayesianOptimizationSolver.run().");
+        }
+        else{
+            this._observations = new Observations(X, y);
+        }
+
+        return optimize(this._initial_points, num_iterations);
+    }
+
+    /**
+     * Continues a study from a checkpoint that was written by run, see set_checkpoint.
+     * Observations, incumbents, timings, the random number generator of the maximizer
+     * and the fitted model are restored, so no point is evaluated and no model is fit
+     * again. The solver has to be set up like the one that wrote the checkpoint. The
+     * trace is continued.
+     *
+     * @param num_iterations The number of iterations of the whole study
+     * @param checkpoint_path Path of the checkpoint
+     * @return Incumbent, Value
+     *      Incumbent: double[D]
+     *              Incumbent
+     *      Value: double
+     *              (Estimated) function value of the incumbent
+     */
+    public Pair<Double[], Double> resume(int num_iterations, String checkpoint_path) throws Exception{
+        open_output(true);
+        int it = load_checkpoint(checkpoint_path, Math.max(num_iterations, this._initial_points));
+
+        if (it < this._initial_points){
+            initial_design(it);
+        }
+        return optimize(Math.max(it, this._initial_points), num_iterations);
+    }
+
+    /**
+     * Writes a checkpoint every interval iterations of run, so that a study that was
+     * interrupted can be continued with resume.
+     *
+     * @param path Path of the checkpoint, or null to write no checkpoints
+     * @param interval Number of iterations between two checkpoints
+     */
+    public void set_checkpoint(String path, int interval){
+        this._checkpoint_path = path;
+        this._checkpoint_interval = Math.max(1, interval);
+    }
 
-            X = new double[init.length][this._lower.length];
-            y = new double[init.length];
+    /**
+     * Sets after how many new observations the hyperparameters of the model are
+     * optimized again, in between the model is only updated with the new observations.
+     *
+     * @param train_interval Number of observations
+     */
+    public void set_train_interval(int train_interval){
+        this._train_interval = Math.max(1, train_interval);
+    }
+
+    /**
+     * Sets the design of the initial points, by default they are sampled uniformly.
+     * The design starts at its first point in every run.
+     *
+     * @param initial_design BaseInitialDesign
+     *                       e.g. Sobol, Halton or LatinHypercube
+     */
+    public void set_initial_design(BaseInitialDesign initial_design){
+        this._initial_design = initial_design;
+    }
 
-            long time_overhead = (System.currentTimeMillis() - start_time_overhead) / this._initial_points;
-            for (int i = 0; i < init.length; i ++ ){
-                double[] x = init[i];
+    /**
+     * Evaluates the points from .. initial_points - 1 of the initial design.
+     */
+    private void initial_design(int from) throws Exception{
+        long start_time_overhead = System.nanoTime();
+        this._initial_design.reset();
+        this._initial_design.skip(from);
+        double[][] init = this._initial_design.get(this._initial_points - from);
+
+        long time_overhead = (System.nanoTime() - start_time_overhead) / 1000000 / Math.max(1, init.length);
+        for (int i = from; i < this._initial_points; i ++ ){
+            this._iteration = i;
+            double[] x = init[i - from];
+            if (logger.isInfoEnabled()){
                 logger.info("Evaluate: " + ArrayUtils.arrayToString(ArrayUtils.double2Double(x)));
+            }
 
-                long start_time = System.currentTimeMillis();
-                double new_y = this._objective_func.evaluate(x);
+            long start_time = System.nanoTime();
+            double new_y = this._objective_func.evaluate(x);
+            long time_func_eval = emit(Phase.EVALUATE, i, start_time) / 1000000;
 
-                X[i] = x;
-                y[i] = new_y;
-                this._time_func_eval.add(System.currentTimeMillis() - start_time);
-                this._time_overhead.add(time_overhead);
+            this._observations.add(x, new_y);
+            this._time_func_eval.add(time_func_eval);
+            this._time_overhead.add(time_overhead);
 
-                logger.info(String.format("Configuration achieved a performance of %f in %d seconds", y[i], this._time_func_eval.get(i)));
+            if (logger.isInfoEnabled()){
+                logger.info(String.format("Configuration achieved a performance of %f in %d ms", new_y, time_func_eval));
+            }
 
-                int best_idx = ArrayUtils.argmin(y);
-                double[] incumbent = X[best_idx];
-                double incumbent_value = y[best_idx];
+            int best_idx = this._observations.argmin();
+            double[] incumbent = this._observations.get_x(best_idx);
+            double incumbent_value = this._observations.get_y(best_idx);
 
-                this._incumbents.add(ArrayUtils.double2Double(incumbent));
-                this._incumbent_values.add(incumbent_value);
+            this._incumbents.add(ArrayUtils.double2Double(incumbent));
+            this._incumbent_values.add(incumbent_value);
 
-                this._runtime.add(System.currentTimeMillis() - this._time_start);
+            this._runtime.add(System.currentTimeMillis() - this._time_start);
 
-                if (this._output_path != null){
-                    save_output(i);
-                }
+            if (this._output_path != null){
+                save_output(i);
             }
+            checkpoint(i);
         }
-        else if (X == null || y == null){
-            throw new Exception("X or y is null in BayesianOptimizationSolver.run().");
-        }
-
-        this._X = ArrayUtils.arrayToList(X);
-        this._y = ArrayUtils.arrayToList(y);
+    }
 
+    /**
+     * The main Bayesian optimization loop from iteration start on.
+     */
+    private Pair<Double[], Double> optimize(int start, int num_iterations) throws Exception{
         // Main Bayesian optimization loop
-        for (int it = this._initial_points; it < num_iterations; it ++ ){
-            logger.info(String.format("Start iteration %d ...", it));
+        for (int it = start; it < num_iterations; it ++ ){
+            this._iteration = it;
+            if (logger.isInfoEnabled()){
+                logger.info(String.format("Start iteration %d ...", it));
+            }
 
-            long start_time = System.currentTimeMillis();
+            long start_time = System.nanoTime();
 
             boolean do_optimize = false;
             if (it % this._train_interval == 0){
@@ -133,56 +255,565 @@ public class BayesianOptimizationSolver extends BaseSolver{
             }
 
             // Choose next point to evaluate
-            double[] new_x = choose_next(this._X, this._y, do_optimize);
+            double[] new_x = choose_next(this._observations, do_optimize);
 
-            long time_overhead = System.currentTimeMillis() - start_time;
+            long time_overhead = (System.nanoTime() - start_time) / 1000000;
             this._time_overhead.add(time_overhead);
-            logger.info(String.format("Optimization overhead was %d seconds", time_overhead));
-            logger.info(String.format("Next candidate %s", ArrayUtils.arrayToString(ArrayUtils.double2Double(new_x))));
+            if (logger.isInfoEnabled()){
+                logger.info(String.format("Optimization overhead was %d ms", time_overhead));
+                logger.info(String.format("Next candidate %s", ArrayUtils.arrayToString(ArrayUtils.double2Double(new_x))));
+            }
 
             // Evaluate
-            start_time = System.currentTimeMillis();
+            start_time = System.nanoTime();
             double new_y = this._objective_func.evaluate(new_x);
-            long time_func_eval = System.currentTimeMillis() - start_time;
+            long time_func_eval = emit(Phase.EVALUATE, it, start_time) / 1000000;
             this._time_func_eval.add(time_func_eval);
 
-            logger.info(String.format("Configuration achieved a performance of %f", new_y));
-            logger.info(String.format("Evaluation of this configuration took %d seconds", time_func_eval));
+            if (logger.isInfoEnabled()){
+                logger.info(String.format("Configuration achieved a performance of %f", new_y));
+                logger.info(String.format("Evaluation of this configuration took %d ms", time_func_eval));
+            }
 
             // Extend the data
-            this._X.add(ArrayUtils.double2Double(new_x));
-            this._y.add(new_y);
+            this._observations.add(new_x, new_y);
 
             // Estimate incumbent
-            int best_idx = ArrayUtils.argmin(this._y);
-            Double[] incumbent = this._X.get(best_idx);
-            Double incumbent_value = this._y.get(best_idx);
+            int best_idx = this._observations.argmin();
+            Double[] incumbent = ArrayUtils.double2Double(this._observations.get_x(best_idx));
+            Double incumbent_value = this._observations.get_y(best_idx);
 
             this._incumbents.add(incumbent);
             this._incumbent_values.add(incumbent_value);
-            logger.info(String.format("Current incumbent %s with estimated performance %f", ArrayUtils.arrayToString(incumbent), incumbent_value));
+            if (logger.isInfoEnabled()){
+                logger.info(String.format("Current incumbent %s with estimated performance %f", ArrayUtils.arrayToString(incumbent), incumbent_value));
+            }
 
             this._runtime.add(System.currentTimeMillis() - this._time_start);
 
             if (this._output_path != null){
                 save_output(it);
             }
+            checkpoint(it);
         }
 
         Double[] incumbent = this._incumbents.get(this._incumbents.size() - 1);
         Double incumbent_value = this._incumbent_values.get(this._incumbent_values.size() - 1);
         logger.info(String.format("Return %s as incumbent with error %f ", ArrayUtils.arrayToString(incumbent), incumbent_value));
 
+        flush_output();
         return new Pair<Double[], Double>(incumbent, incumbent_value);
     }
 
+    /**
+     * Writes a checkpoint after iteration it if one is due.
+     */
+    private void checkpoint(int it) throws Exception{
+        if (this._checkpoint_path != null && (it + 1) % this._checkpoint_interval == 0){
+            save_checkpoint(this._checkpoint_path, it + 1);
+        }
+    }
+
+    /**
+     * Asynchronous parallel Bayesian optimization loop. Keeps n_workers evaluations
+     * of the objective function in flight on the executor. Whenever an evaluation
+     * finishes, its result is recorded (incumbent, runtime, output) and the next
+     * point is proposed while the points that are still being evaluated are accounted
+     * for by fantasized function values. The objective function has to allow
+     * concurrent calls of evaluate.
+     *
+     * @param num_iterations The number of evaluations, including the initial design
+     * @param executor ExecutorService that runs the evaluations
+     * @param n_workers Number of evaluations that are in flight at the same time
+     * @param fantasy {"kb", "cl_min", "cl_mean", "cl_max"}
+     *                Fantasized value of pending points: the predictive mean of the
+     *                model (kriging believer) or the minimum, mean or maximum of the
+     *                observed values (constant liar)
+     * @return Incumbent, Value
+     *      Incumbent: double[D]
+     *              Incumbent
+     *      Value: double
+     *              (Estimated) function value of the incumbent
+     */
+    public Pair<Double[], Double> run_async(int num_iterations, ExecutorService executor, int n_workers, String fantasy) throws Exception{
+        if (!fantasy.equals("kb") && !fantasy.equals("cl_min") && !fantasy.equals("cl_mean") && !fantasy.equals("cl_max")){
+            throw new Exception(fantasy + " is not a valid fantasy in BayesianOptimizationSolver.run_async().");
+        }
+        open_output(false);
+
+        this._time_start = System.currentTimeMillis();
+        this._observations = new Observations(this._lower.length, num_iterations);
+
+        this._initial_design.reset();
+        double[][] init = this._initial_design.get(this._initial_points);
+        CompletionService<Evaluation> completion = new ExecutorCompletionService<Evaluation>(executor);
+        List<double[]> pending = new ArrayList<double[]>();
+
+        int submitted = 0;
+        for (int it = 0; it < num_iterations; it ++ ){
+            // Fill all free slots
+            while (submitted < num_iterations && pending.size() < n_workers){
+                long start_time = System.nanoTime();
+                this._iteration = submitted;
+                double[] new_x;
+                if (submitted < init.length){
+                    new_x = init[submitted];
+                }
+                else{
+                    new_x = choose_next(pending, fantasy, submitted % this._train_interval == 0);
+                }
+                long time_overhead = (System.nanoTime() - start_time) / 1000000;
+                if (logger.isInfoEnabled()){
+                    logger.info(String.format("Submit candidate %s, %d evaluations pending",
+                            ArrayUtils.arrayToString(ArrayUtils.double2Double(new_x)), pending.size()));
+                }
+
+                completion.submit(new Evaluation(this._objective_func, new_x, time_overhead));
+                pending.add(new_x);
+                submitted ++;
+            }
+
+            Evaluation result = completion.take().get();
+            pending.remove(result.x);
+            record(it, result);
+        }
+
+        Double[] incumbent = this._incumbents.get(this._incumbents.size() - 1);
+        Double incumbent_value = this._incumbent_values.get(this._incumbent_values.size() - 1);
+        logger.info(String.format("Return %s as incumbent with error %f ", ArrayUtils.arrayToString(incumbent), incumbent_value));
+
+        flush_output();
+        return new Pair<Double[], Double>(incumbent, incumbent_value);
+    }
+
+    /**
+     * Synchronous batch Bayesian optimization loop. In every iteration a batch of q
+     * points is proposed by maximizing the joint acquisition value, the batch is
+     * evaluated in parallel on the executor and the loop waits until all evaluations
+     * of the batch are finished. The objective function has to allow concurrent calls
+     * of evaluate.
+     *
+     * @param num_iterations The number of evaluations, including the initial design
+     * @param q Number of points per batch
+     * @param executor ExecutorService that runs the evaluations
+     * @return Incumbent, Value
+     *      Incumbent: double[D]
+     *              Incumbent
+     *      Value: double
+     *              (Estimated) function value of the incumbent
+     */
+    public Pair<Double[], Double> run_batch(int num_iterations, int q, ExecutorService executor) throws Exception{
+        if (q <= 0){
+            throw new Exception("q(value = " + q + ") is invalid in BayesianOptimizationSolver.run_batch().");
+        }
+        open_output(false);
+
+        this._time_start = System.currentTimeMillis();
+        this._observations = new Observations(this._lower.length, num_iterations);
+
+        this._initial_design.reset();
+        double[][] init = this._initial_design.get(this._initial_points);
+
+        int it = 0;
+        while (it < num_iterations){
+            long start_time = System.nanoTime();
+            this._iteration = it;
+            double[][] batch;
+            if (it < init.length){
+                batch = Arrays.copyOfRange(init, it, Math.min(init.length, Math.min(num_iterations, it + q)));
+            }
+            else{
+                if (logger.isInfoEnabled()){
+                    logger.info(String.format("Start iteration %d ...", it));
+                }
+                batch = choose_next_batch(this._observations, Math.min(q, num_iterations - it), it % this._train_interval == 0);
+            }
+            long time_overhead = (System.nanoTime() - start_time) / 1000000 / batch.length;
+
+            List<Evaluation> tasks = new ArrayList<Evaluation>();
+            for (double[] x : batch){
+                if (logger.isInfoEnabled()){
+                    logger.info("Evaluate: " + ArrayUtils.arrayToString(ArrayUtils.double2Double(x)));
+                }
+                tasks.add(new Evaluation(this._objective_func, x, time_overhead));
+            }
+            for (Evaluation result : Parallel.invoke(tasks, executor)){
+                record(it, result);
+                it ++;
+            }
+        }
+
+        Double[] incumbent = this._incumbents.get(this._incumbents.size() - 1);
+        Double incumbent_value = this._incumbent_values.get(this._incumbent_values.size() - 1);
+        logger.info(String.format("Return %s as incumbent with error %f ", ArrayUtils.arrayToString(incumbent), incumbent_value));
+
+        flush_output();
+        return new Pair<Double[], Double>(incumbent, incumbent_value);
+    }
+
+    /**
+     * Suggests the next point of a study whose points are evaluated by the caller and
+     * reported back with report, e.g. by a service. The first initial_points suggestions
+     * are the points of the initial design, after that the acquisition function is
+     * maximized with the pending points fantasized at the predictive mean of the model.
+     *
+     * @param pending Points that were suggested but are not reported yet
+     * @return double[D]
+     *          Suggested point
+     */
+    public double[] suggest(List<double[]> pending) throws Exception{
+        int n = this._observations.size() + pending.size();
+        this._iteration = n;
+        if (n < this._initial_points){
+            this._initial_design.reset();
+            this._initial_design.skip(n);
+            return this._initial_design.next();
+        }
+        // In between, the model is only extended by the new observations
+        boolean do_optimize = this._model.get_num_observations() == 0
+                || this._observations.size() - this._fit_observations >= this._train_interval;
+        if (do_optimize){
+            this._fit_observations = this._observations.size();
+        }
+        return choose_next(pending, "kb", do_optimize);
+    }
+
+    /**
+     * Records the function value of a point that was suggested by suggest and evaluated
+     * by the caller. Incumbent, timings and the trace are updated as in run.
+     *
+     * @param x double[D]
+     *          Evaluated point
+     * @param y Function value of x
+     * @param time_overhead Time it took to suggest x in milliseconds
+     * @param time_func_eval Time of the evaluation in milliseconds
+     */
+    public void report(double[] x, double y, long time_overhead, long time_func_eval) throws Exception{
+        open_output(false);
+        Evaluation result = new Evaluation(this._objective_func, x, time_overhead);
+        result.y = y;
+        result.time_func_eval = time_func_eval;
+        result.duration = time_func_eval * 1000000;
+        result.start = System.nanoTime() - result.duration;
+        record(this._observations.size(), result);
+    }
+
+    /**
+     * Asks for the next point to evaluate, for callers that run the evaluations
+     * themselves and report them with tell, later and in any order. Any number of
+     * trials can be outstanding, they are fantasized at the predictive mean of the
+     * model. If a suggestion was precomputed for the current trials (see set_prefetch)
+     * it is returned right away, otherwise it is computed on the calling thread. Asks
+     * are answered one after the other.
+     *
+     * @return trial number, point
+     *      trial number: int
+     *              Number of the trial to tell its value
+     *      point: double[D]
+     *              Point to evaluate
+     */
+    public Pair<Integer, double[]> ask() throws Exception{
+        long start_time = System.nanoTime();
+        int trial;
+        double[] x;
+        this._lock.lock();
+        try{
+            open_output(false);
+            if (this._suggestion != null && this._suggestion_asks == this._n_asks){
+                x = this._suggestion;
+            }
+            else{
+                x = next_suggestion();
+            }
+            this._suggestion = null;
+
+            Evaluation evaluation = new Evaluation(this._objective_func, x, (System.nanoTime() - start_time) / 1000000);
+            // The evaluation runs from the ask to the tell
+            evaluation.start = System.nanoTime();
+            synchronized (this._trials){
+                trial = this._n_asks ++;
+                this._trials.put(trial, evaluation);
+            }
+        }
+        finally{
+            unlock();
+        }
+        prefetch();
+        return new Pair<Integer, double[]>(trial, x);
+    }
+
+    /**
+     * Tells the function value of an asked trial. It does not wait for a suggestion
+     * that is being computed: the value is recorded right away if the model is not in
+     * use, otherwise by the thread that holds the model when it releases it.
+     *
+     * @param trial Trial number returned by ask
+     * @param y Function value of the point of the trial
+     * @throws Exception if the trial is unknown or was already told
+     */
+    public void tell(int trial, double y) throws Exception{
+        synchronized (this._trials){
+            Evaluation evaluation = this._trials.remove(trial);
+            if (evaluation == null){
+                throw new Exception("Trial " + trial + " is not pending in BayesianOptimizationSolver.tell().");
+            }
+            evaluation.y = y;
+            evaluation.duration = System.nanoTime() - evaluation.start;
+            evaluation.time_func_eval = evaluation.duration / 1000000;
+            this._told.add(evaluation);
+        }
+        record_told_if_free();
+    }
+
+    /**
+     * Precomputes the next suggestion of ask on the executor after every ask, so ask
+     * returns without fitting the model or maximizing the acquisition function as long
+     * as it is called less often than a suggestion takes. The suggestion accounts for
+     * all trials asked before it, values told while it is computed are used by the
+     * next one.
+     *
+     * @param executor Executor, or null to compute every suggestion in ask
+     */
+    public void set_prefetch(Executor executor){
+        this._prefetch = executor;
+        prefetch();
+    }
+
+    /**
+     * Returns the numbers of the trials that were asked and not told yet.
+     */
+    public List<Integer> get_pending_trials(){
+        synchronized (this._trials){
+            return new ArrayList<Integer>(this._trials.keySet());
+        }
+    }
+
+    /**
+     * Computes the suggestion for the asked trials, the caller holds _lock.
+     */
+    private double[] next_suggestion() throws Exception{
+        List<double[]> pending = new ArrayList<double[]>();
+        synchronized (this._trials){
+            record_told();
+            for (Evaluation evaluation : this._trials.values()){
+                pending.add(evaluation.x);
+            }
+        }
+        return suggest(pending);
+    }
+
+    /**
+     * Records the told trials, the caller holds _lock and _trials.
+     */
+    private void record_told(){
+        Evaluation evaluation;
+        while ((evaluation = this._told.poll()) != null){
+            record(this._observations.size(), evaluation);
+        }
+    }
+
+    /**
+     * Records the told trials, waiting for a suggestion that is being computed.
+     */
+    private void record_told_now(){
+        this._lock.lock();
+        try{
+            synchronized (this._trials){
+                record_told();
+            }
+        }
+        finally{
+            unlock();
+        }
+    }
+
+    /**
+     * Records the told trials unless another thread holds the model. That thread calls
+     * this again after it released the model, so no told value is left behind.
+     */
+    private void record_told_if_free(){
+        while (true){
+            synchronized (this._trials){
+                if (this._told.isEmpty()){
+                    return;
+                }
+            }
+            if (!this._lock.tryLock()){
+                return;
+            }
+            try{
+                synchronized (this._trials){
+                    record_told();
+                }
+            }
+            finally{
+                this._lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Releases the model and records the values that were told while it was held.
+     */
+    private void unlock(){
+        this._lock.unlock();
+        if (!this._lock.isHeldByCurrentThread()){
+            record_told_if_free();
+        }
+    }
+
+    @Override
+    public Observations get_observations(){
+        record_told_now();
+        return super.get_observations();
+    }
+
+    @Override
+    public List<Double[]> get_incumbents(){
+        record_told_now();
+        return super.get_incumbents();
+    }
+
+    @Override
+    public List<Double> get_incumbent_values(){
+        record_told_now();
+        return super.get_incumbent_values();
+    }
+
+    @Override
+    public List<Long> get_runtime(){
+        record_told_now();
+        return super.get_runtime();
+    }
+
+    @Override
+    public List<Long> get_time_overhead(){
+        record_told_now();
+        return super.get_time_overhead();
+    }
+
+    /**
+     * Records the values that were told and not recorded yet, then writes the rest of
+     * the trace and closes the output file.
+     *
+     * @throws IOException if writing the trace failed
+     */
+    @Override
+    public void close() throws IOException{
+        record_told_now();
+        super.close();
+    }
+
+    private void prefetch(){
+        Executor executor = this._prefetch;
+        if (executor == null){
+            return;
+        }
+        synchronized (this._trials){
+            if (this._prefetching){
+                return;
+            }
+            this._prefetching = true;
+        }
+        try{
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    _lock.lock();
+                    try{
+                        if (_suggestion == null || _suggestion_asks != _n_asks){
+                            int asks = _n_asks;
+                            _suggestion = next_suggestion();
+                            _suggestion_asks = asks;
+                        }
+                    }
+                    catch (Exception e){
+                        logger.error("Could not precompute the next suggestion", e);
+                    }
+                    finally{
+                        synchronized (_trials){
+                            record_told();
+                            _prefetching = false;
+                        }
+                        unlock();
+                    }
+                }
+            });
+        }
+        catch (RuntimeException e){
+            synchronized (this._trials){
+                this._prefetching = false;
+            }
+            logger.warn("Could not schedule the next suggestion", e);
+        }
+    }
+
+    /**
+     * Suggests a new point to evaluate while other points are still being evaluated.
+     * The pending points are added to the observations with fantasized function values,
+     * so the acquisition function does not propose them again, and removed afterwards.
+     *
+     * @param pending Points that are being evaluated
+     * @param fantasy {"kb", "cl_min", "cl_mean", "cl_max"}
+     *                Fantasized value of the pending points
+     * @param do_optimize bool
+     *                    If true the hyperparameters of the model are
+     *                    optimized before the acquisition function is
+     *                    maximized.
+     * @return double[D]
+     *          Suggested point
+     */
+    public double[] choose_next(List<double[]> pending, String fantasy, boolean do_optimize) throws Exception{
+        int n = this._observations.size();
+        if (pending.isEmpty() || n < 2){
+            return choose_next(this._observations, do_optimize);
+        }
+
+        // The hyperparameters are fit to the real observations only
+        train_model(this._observations, do_optimize);
+
+        double[] fantasies = new double[pending.size()];
+        if (fantasy.equals("kb")){
+            double[] var = new double[pending.size()];
+            this._model.predict(pending.toArray(new double[pending.size()][]), fantasies, var);
+        }
+        else{
+            double[] y = this._observations.get_y();
+            double value = y[0];
+            for (double v : y){
+                if (fantasy.equals("cl_min")){
+                    value = Math.min(value, v);
+                }
+                else if (fantasy.equals("cl_max")){
+                    value = Math.max(value, v);
+                }
+            }
+            if (fantasy.equals("cl_mean")){
+                value = 0;
+                for (double v : y){
+                    value += v / y.length;
+                }
+            }
+            Arrays.fill(fantasies, value);
+        }
+
+        for (int i = 0; i < fantasies.length; i ++ ){
+            this._observations.add(pending.get(i), fantasies[i]);
+        }
+        try{
+            return choose_next(this._observations, false);
+        }
+        finally{
+            this._observations.truncate(n);
+            this._model.truncate(n);
+        }
+    }
+
     /**
      * Suggests a new point to evaluate.
      *
-     * @param X double[N][D]
-     *          Initial points that are already evaluated
-     * @param y double[N]
-     *          Function values of the already evaluated points
+     * @param data double[N][D], double[N]
+     *             Points that are already evaluated and their function values
      * @param do_optimize bool
      *                    If true the hyperparameters of the model are
      *                    optimized before the acquisition function is
@@ -190,63 +821,94 @@ public class BayesianOptimizationSolver extends BaseSolver{
      * @return double[D]
      *          Suggested point
      */
-    public double[] choose_next(List<Double[]> X, List<Double> y, boolean do_optimize) throws Exception{
+    public double[] choose_next(Observations data, boolean do_optimize) throws Exception{
         double[] x = new double[this._lower.length];
 
-        if (X == null && y == null){
+        if (data == null || data.size() == 0){
             x = InitRandomUniform.get(this._lower, this._upper, 1)[0];
         }
-        else if (X == null || y == null){
-            throw new Exception("(X, y) is invalid in BayesianOptimizationSolver.choose_next().");
-        }
-        else if (X.size() == 1){
+        else if (data.size() == 1){
             x = InitRandomUniform.get(this._lower, this._upper, 1)[0];
         }
         else{
-            try{
-                logger.info("Train model ...");
-                long t = System.currentTimeMillis();
-                this._model.train(X, y);
-                logger.info(String.format("Time to train the model: %d", System.currentTimeMillis() - t));
-            }
-            catch (Exception e){
-                logger.error("Model could not be trained!");
-                /*System.out.print("double[][] x = {");
-                for (Double[] v : X) {
-                    System.out.print('{' + v[0].toString() + "},");
-                }
-                System.out.println("};");
-                System.out.print("double[] y = {");
-                for (Double v : y){
-                    System.out.print(v.toString() + ',');
-                }
-                System.out.println("};");
-                System.out.println(e.toString());*/
-                throw e;
-            }
-
+            train_model(data, do_optimize);
             this._acquisition_func.update(this._model);
 
             logger.info("Maximize acquisition function...");
-            long t = System.currentTimeMillis();
+            long t = System.nanoTime();
             x = this._maximize_func.maximize();
 
-            logger.info(String.format("Time to maximize the acquisition function: %d", System.currentTimeMillis() - t));
+            long duration = emit(Phase.MAXIMIZE, this._iteration, t);
+            if (logger.isInfoEnabled()){
+                logger.info(String.format("Time to maximize the acquisition function: %d ms", duration / 1000000));
+            }
         }
 
         return x;
     }
 
-    private void save_output(int it){
-        JSONObject data = new JSONObject();
-        data.put("optimization_overhead", this._time_overhead.get(it));
-        data.put("runtime", this._runtime.get(it));
-        data.put("incumbent", this._incumbents.get(it));
-        data.put("incumbents_value", this._incumbent_values.get(it));
-        data.put("time_func_eval", this._time_func_eval.get(it));
-        data.put("iteration", it);
+    /**
+     * Suggests a batch of q points that are evaluated together.
+     *
+     * @param data double[N][D], double[N]
+     *             Points that are already evaluated and their function values
+     * @param q Number of points of the batch
+     * @param do_optimize bool
+     *                    If true the hyperparameters of the model are
+     *                    optimized before the acquisition function is
+     *                    maximized.
+     * @return double[q][D]
+     *          Suggested points
+     */
+    public double[][] choose_next_batch(Observations data, int q, boolean do_optimize) throws Exception{
+        if (data == null || data.size() < 2){
+            return InitRandomUniform.get(this._lower, this._upper, q);
+        }
+
+        train_model(data, do_optimize);
+        this._acquisition_func.update(this._model);
+
+        if (logger.isInfoEnabled()){
+            logger.info(String.format("Maximize acquisition function for a batch of %d points...", q));
+        }
+        long t = System.nanoTime();
+        double[][] X = this._maximize_func.maximize_batch(q);
+
+        long duration = emit(Phase.MAXIMIZE, this._iteration, t);
+        if (logger.isInfoEnabled()){
+            logger.info(String.format("Time to maximize the acquisition function: %d ms", duration / 1000000));
+        }
+        return X;
+    }
 
-        this._writer.write(data.toString());
-        this._writer.write('\n'); //Json more readable
+    /**
+     * Fits the model to the data. On iterations where the hyperparameters are optimized
+     * the model is retrained, otherwise it only has to consume the points that were
+     * added since the last fit.
+     */
+    private void train_model(Observations data, boolean do_optimize) throws Exception{
+        try{
+            logger.info("Train model ...");
+            long t = System.nanoTime();
+            // The first fit always optimizes the hyperparameters, whatever the train interval
+            boolean retrain = do_optimize || this._model.get_num_observations() == 0;
+            if (retrain){
+                this._model.train(data, true);
+            }
+            else{
+                this._model.update(data);
+            }
+            long duration = emit(Phase.TRAIN, this._iteration, t);
+            if (retrain && this._model.get_fit_time() > 0){
+                emit(Phase.FIT, this._iteration, t, this._model.get_fit_time());
+            }
+            if (logger.isInfoEnabled()){
+                logger.info(String.format("Time to train the model: %d ms", duration / 1000000));
+            }
+        }
+        catch (Exception e){
+            logger.error("Model could not be trained!");
+            throw e;
+        }
     }
 }
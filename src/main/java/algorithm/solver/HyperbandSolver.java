@@ -0,0 +1,353 @@
+package algorithm.solver;
+
+import org.apache.log4j.*;
+import algorithm.acquisition_functions.BaseAcquisitionFunction;
+import algorithm.initial_design.InitRandomUniform;
+import algorithm.maximizers.BaseMaximizer;
+import algorithm.metrics.Phase;
+import algorithm.models.BaseModel;
+import algorithm.objective_func.BudgetTask;
+import algorithm.utils.Observations;
+import algorithm.utils.Parallel;
+import utils.ArrayUtils;
+import utils.Pair;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+public class HyperbandSolver extends BaseSolver{
+
+    private Logger logger = Logger.getLogger(HyperbandSolver.class);
+
+    private BudgetTask _task;
+    private int _eta;
+    private double _random_fraction;
+    private Random _random;
+    private InitRandomUniform _sampler;
+    /**
+     * Budgets of the rungs, from the smallest to the maximum budget.
+     */
+    private double[] _budgets;
+    /**
+     * Evaluations of every rung. New configurations are proposed by the model fit to
+     * the highest rung that has at least _min_points evaluations.
+     */
+    private Observations[] _rungs;
+    private int _min_points;
+    private double _total_budget;
+
+    /**
+     * Hyperband with model-based proposals (BOHB, Falkner et al. 2018). The budgets of
+     * the rungs grow by a factor eta from the minimum to the maximum budget of the task.
+     * A bracket starts n configurations on one rung, evaluates them in parallel and
+     * promotes the best 1/eta of them to the next rung until the maximum budget is
+     * reached (successive halving). The brackets cycle from the most aggressive one,
+     * which starts on the smallest budget, to plain evaluations at the maximum budget,
+     * so a bad guess of how well the small budgets predict the final value costs at
+     * most a constant factor.
+     *
+     * New configurations are sampled uniformly with probability random_fraction and
+     * otherwise proposed by maximizing the acquisition function of the model fit to the
+     * highest rung with at least D + 1 evaluations; if their values are all equal the
+     * model can not be fit and they are sampled as well. The configurations of a bracket are
+     * proposed one after the other, with the ones before fantasized at the predictive
+     * mean of the model (kriging believer).
+     *
+     * Only evaluations at the maximum budget become observations of the solver, i.e.
+     * incumbents, trace records and the result. Evaluations at smaller budgets are
+     * reported to the listeners and are available with get_rung_observations.
+     *
+     * @param objective_func Function handle for the objective function at a budget
+     * @param lower double[D]
+     *              The lower bound of the search space
+     * @param upper double[D]
+     *              The upper bound of the search space
+     * @param acquisition_func BaseAcquisitionFunction Object
+     *                         The acquisition function which will be maximized.
+     * @param model ModelObject
+     *              Model of the objective function at the budget of a rung
+     * @param maximize_func Optimization method that is used to maximize the acquisition
+     *                      function
+     * @param eta Factor between the budgets of two rungs, only the best 1/eta of the
+     *            configurations of a rung are promoted. 3 is a common choice.
+     * @param random_fraction Fraction of the configurations that are sampled uniformly
+     * @param output_path Specifies the path where the intermediate output after each evaluation
+     *                    at the maximum budget will be saved. If None no output will be saved to disk.
+     * @param seed Seed of the random number generator
+     * @throws Exception throw exception
+     */
+    public HyperbandSolver(BudgetTask objective_func, double[] lower, double[] upper, BaseAcquisitionFunction acquisition_func,
+                           BaseModel model, BaseMaximizer maximize_func, int eta, double random_fraction, String output_path,
+                           long seed) throws Exception{
+        super(objective_func, lower, upper, acquisition_func, model, maximize_func, output_path);
+
+        double min_budget = objective_func.get_min_budget(), max_budget = objective_func.get_max_budget();
+        if (eta < 2){
+            throw new Exception("eta(value = " + eta + ") is invalid in HyperbandSolver.HyperbandSolver().");
+        }
+        if (min_budget <= 0 || max_budget < min_budget){
+            throw new Exception(String.format("The budgets [%g, %g] of the task are invalid in HyperbandSolver.HyperbandSolver().",
+                    min_budget, max_budget));
+        }
+
+        this._task = objective_func;
+        this._eta = eta;
+        this._random_fraction = random_fraction;
+        this._random = new Random(seed);
+        this._sampler = new InitRandomUniform(lower, upper, this._random.nextLong());
+        this._min_points = Math.max(lower.length + 1, 3);
+
+        int s_max = (int) Math.floor(Math.log(max_budget / min_budget) / Math.log(eta) + 1e-9);
+        this._budgets = new double[s_max + 1];
+        for (int k = 0; k <= s_max; k ++ ){
+            this._budgets[k] = max_budget * Math.pow(eta, k - s_max);
+        }
+        this._rungs = new Observations[s_max + 1];
+    }
+
+    /**
+     * Runs the brackets with the evaluations of a rung on the calling thread.
+     *
+     * @param num_brackets Number of brackets
+     * @param X double[N][D]
+     *          Initial points that are already evaluated at the maximum budget
+     * @param y double[N]
+     *          Function values of the already evaluated points
+     * @return Incumbent, Value
+     */
+    @Override
+    public Pair<Double[], Double> run(int num_brackets, double[][] X, double[] y) throws Exception{
+        return run(num_brackets, X, y, null);
+    }
+
+    /**
+     * The main Hyperband loop.
+     *
+     * @param num_brackets Number of brackets. Each cycle of log_eta(max_budget / min_budget) + 1
+     *                     brackets spends about that many times the budget of one bracket.
+     * @param X double[N][D]
+     *          Initial points that are already evaluated at the maximum budget
+     * @param y double[N]
+     *          Function values of the already evaluated points
+     * @param executor ExecutorService that runs the evaluations of a rung in parallel, or null to
+     *                 run them on the calling thread. The objective function has to allow concurrent
+     *                 calls of evaluate if an executor is given.
+     * @return Incumbent, Value
+     *      Incumbent: double[D]
+     *              Incumbent
+     *      Value: double
+     *              Function value of the incumbent at the maximum budget
+     */
+    public Pair<Double[], Double> run(int num_brackets, double[][] X, double[] y, ExecutorService executor) throws Exception{
+        if ((X == null) != (y == null)){
+            throw new Exception("X or y is null in HyperbandSolver.run().");
+        }
+        if (num_brackets <= 0 && X == null){
+            throw new Exception("num_brackets(value = " + num_brackets + ") is invalid in HyperbandSolver.run().");
+        }
+        open_output(false);
+
+        int s_max = this._budgets.length - 1;
+        this._time_start = System.currentTimeMillis();
+        this._observations = new Observations(this._lower.length);
+        for (int k = 0; k <= s_max; k ++ ){
+            this._rungs[k] = new Observations(this._lower.length);
+        }
+        this._total_budget = 0;
+
+        if (X != null){
+            for (int i = 0; i < X.length; i ++ ){
+                Evaluation result = new Evaluation(this._objective_func, X[i], 0);
+                result.y = y[i];
+                record(this._observations.size(), result);
+                this._rungs[s_max].add(X[i], y[i]);
+            }
+        }
+
+        for (int b = 0; b < num_brackets; b ++ ){
+            int s = s_max - b % (s_max + 1);
+            // Every bracket spends about the same budget
+            int n = (int) Math.ceil((double) (s_max + 1) / (s + 1) * Math.pow(this._eta, s));
+            bracket(b, s_max - s, n, executor);
+        }
+
+        Double[] incumbent = this._incumbents.get(this._incumbents.size() - 1);
+        Double incumbent_value = this._incumbent_values.get(this._incumbent_values.size() - 1);
+        logger.info(String.format("Return %s as incumbent with error %f after a total budget of %g",
+                ArrayUtils.arrayToString(incumbent), incumbent_value, this._total_budget));
+
+        flush_output();
+        return new Pair<Double[], Double>(incumbent, incumbent_value);
+    }
+
+    /**
+     * Successive halving of n new configurations, starting on the given rung.
+     */
+    private void bracket(int b, int rung, int n, ExecutorService executor) throws Exception{
+        List<Trial> trials = propose(n, this._budgets[rung]);
+
+        for (int k = rung; ; k ++ ){
+            if (logger.isInfoEnabled()){
+                logger.info(String.format("Bracket %d: evaluate %d configurations with budget %g", b, trials.size(), this._budgets[k]));
+            }
+            List<Evaluation> results = Parallel.invoke(trials, executor);
+            for (Evaluation result : results){
+                tell(k, (Trial) result);
+            }
+            if (k == this._budgets.length - 1){
+                break;
+            }
+
+            Collections.sort(results, new Comparator<Evaluation>() {
+                @Override
+                public int compare(Evaluation a, Evaluation b) {
+                    return Double.compare(a.y, b.y);
+                }
+            });
+            int promoted = Math.max(1, results.size() / this._eta);
+            trials = new ArrayList<Trial>();
+            for (Evaluation result : results.subList(0, promoted)){
+                trials.add(new Trial(this._task, result.x, this._budgets[k + 1], result.time_overhead));
+            }
+        }
+    }
+
+    /**
+     * Proposes n configurations that are evaluated with the given budget.
+     */
+    private List<Trial> propose(int n, double budget) throws Exception{
+        this._iteration = this._observations.size();
+        int rung = this._rungs.length - 1;
+        while (rung >= 0 && this._rungs[rung].size() < this._min_points){
+            rung --;
+        }
+
+        List<Trial> result = new ArrayList<Trial>();
+        Observations data = rung < 0 ? null : this._rungs[rung];
+        int size = data == null ? 0 : data.size();
+        // A rung on a plateau can not be fit, its configurations are sampled uniformly
+        boolean fit = data != null && can_fit(data);
+        if (data != null && !fit && logger.isDebugEnabled()){
+            logger.debug(String.format("Can not fit the model to the %d equal values of rung %d, sample the configurations uniformly",
+                    size, rung));
+        }
+        boolean trained = false;
+        int fantasized = 0;
+        try{
+            for (int i = 0; i < n; i ++ ){
+                long start_time = System.nanoTime();
+                double[] x;
+                if (!fit || this._random.nextDouble() < this._random_fraction){
+                    x = this._sampler.next();
+                }
+                else{
+                    if (!trained){
+                        fit(data, true);
+                        trained = true;
+                    }
+                    if (fantasized < result.size()){
+                        // The configurations proposed before are fantasized at the predictive mean
+                        double[][] pending = new double[result.size() - fantasized][];
+                        for (int j = 0; j < pending.length; j ++ ){
+                            pending[j] = result.get(fantasized + j).x;
+                        }
+                        double[] mean = new double[pending.length], var = new double[pending.length];
+                        this._model.predict(pending, mean, var);
+                        for (int j = 0; j < pending.length; j ++ ){
+                            data.add(pending[j], mean[j]);
+                        }
+                        fantasized = result.size();
+                        fit(data, false);
+                    }
+                    this._acquisition_func.update(this._model);
+                    long t = System.nanoTime();
+                    x = this._maximize_func.maximize();
+                    emit(Phase.MAXIMIZE, this._iteration, t);
+                }
+                result.add(new Trial(this._task, x, budget, (System.nanoTime() - start_time) / 1000000));
+            }
+        }
+        finally{
+            if (trained){
+                data.truncate(size);
+                this._model.truncate(size);
+            }
+        }
+        return result;
+    }
+
+    private void fit(Observations data, boolean do_optimize) throws Exception{
+        long t = System.nanoTime();
+        if (do_optimize){
+            this._model.train(data, true);
+        }
+        else{
+            this._model.update(data);
+        }
+        emit(Phase.TRAIN, this._iteration, t);
+        if (do_optimize && this._model.get_fit_time() > 0){
+            emit(Phase.FIT, this._iteration, t, this._model.get_fit_time());
+        }
+    }
+
+    /**
+     * Adds a finished trial to its rung, trials at the maximum budget are recorded.
+     */
+    private void tell(int rung, Trial result){
+        this._total_budget += result.budget;
+        if (rung == this._budgets.length - 1){
+            record(this._observations.size(), result);
+        }
+        else{
+            emit(Phase.EVALUATE, this._observations.size(), result.start, result.duration);
+        }
+        this._rungs[rung].add(result.x, result.y);
+    }
+
+    /**
+     * Returns the budgets of the rungs, from the smallest to the maximum budget.
+     */
+    public double[] get_budgets(){
+        return this._budgets.clone();
+    }
+
+    /**
+     * Returns the evaluations at the budget of rung k.
+     *
+     * @param k Rung, 0 is the smallest budget
+     * @return the points evaluated with budget get_budgets()[k] and their values
+     */
+    public Observations get_rung_observations(int k){
+        return this._rungs[k];
+    }
+
+    /**
+     * Returns the sum of the budgets of all evaluations.
+     */
+    public double get_total_budget(){
+        return this._total_budget;
+    }
+
+    /**
+     * One evaluation of the objective function at a budget.
+     */
+    private static class Trial extends Evaluation {
+        private BudgetTask task;
+        private double budget;
+
+        private Trial(BudgetTask task, double[] x, double budget, long time_overhead){
+            super(task, x, time_overhead);
+            this.task = task;
+            this.budget = budget;
+        }
+
+        @Override
+        public Evaluation call(){
+            this.start = System.nanoTime();
+            this.y = this.task.evaluate(this.x, this.budget);
+            this.duration = System.nanoTime() - this.start;
+            this.time_func_eval = this.duration / 1000000;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package algorithm.solver;
+
+import org.apache.log4j.*;
+import algorithm.acquisition_functions.EI;
+import algorithm.initial_design.InitRandomUniform;
+import algorithm.kernels.ARDSquaredExponentialKernel;
+import algorithm.kernels.ParametricKernel;
+import algorithm.metrics.Phase;
+import algorithm.models.GaussianProcess;
+import algorithm.objective_func.Task;
+import algorithm.utils.Observations;
+import algorithm.utils.Parallel;
+import utils.ArrayUtils;
+import utils.Pair;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+public class TrustRegionSolver extends BaseSolver{
+
+    private Logger logger = Logger.getLogger(TrustRegionSolver.class);
+
+    private int _n_regions;
+    private int _initial_points;
+    private int _n_candidates;
+    private Random _random;
+    private List<TrustRegion> _regions;
+
+    /**
+     * Side length of a new trust region, relative to the normalized input space.
+     */
+    private static final double LENGTH_INIT = 0.8;
+    private static final double LENGTH_MIN = Math.pow(0.5, 7);
+    private static final double LENGTH_MAX = 1.6;
+    /**
+     * Number of consecutive successes after which a trust region is doubled.
+     */
+    private static final int SUCCESS_TOLERANCE = 3;
+    /**
+     * Relative improvement of the best value of a trust region that counts as a success.
+     */
+    private static final double SUCCESS_MARGIN = 1e-3;
+
+    /**
+     * Trust region Bayesian optimization (TuRBO, Eriksson et al. 2019). Every trust region
+     * is a box around its own incumbent whose shape follows the ARD length scales of a
+     * local GP. The local GP is only fit to the observations of the region that lie inside
+     * the box, so it stays small even for long studies. A region doubles its side length
+     * after SUCCESS_TOLERANCE consecutive improvements and halves it after max(4, D)
+     * consecutive failures. A region that shrinks below LENGTH_MIN is restarted with a new
+     * initial design. In every round, each region proposes one point and all proposals are
+     * computed and evaluated in parallel. All regions draw from one evaluation budget.
+     *
+     * @param objective_func Function handle for the objective function
+     * @param lower double[D]
+     *              The lower bound of the search space
+     * @param upper double[D]
+     *              The upper bound of the search space
+     * @param n_regions Number of trust regions
+     * @param initial_points Number of points of the initial design of each region
+     * @param n_candidates Number of candidates scored in a trust region per proposal
+     * @param output_path Specifies the path where the intermediate output after each iteration will be saved.
+     *                    If None no output will be saved to disk.
+     * @param seed Seed of the random number generators
+     * @throws Exception throw exception
+     */
+    public TrustRegionSolver(Task objective_func, double[] lower, double[] upper, int n_regions, int initial_points,
+                             int n_candidates, String output_path, long seed) throws Exception{
+        super(objective_func, lower, upper, null, null, null, output_path);
+
+        if (n_regions <= 0){
+            throw new Exception("n_regions(value = " + n_regions + ") is invalid in TrustRegionSolver.TrustRegionSolver().");
+        }
+        if (n_candidates <= 0){
+            throw new Exception("n_candidates(value = " + n_candidates + ") is invalid in TrustRegionSolver.TrustRegionSolver().");
+        }
+
+        this._n_regions = n_regions;
+        this._initial_points = Math.max(initial_points, 2);
+        this._n_candidates = n_candidates;
+        this._random = new Random(seed);
+    }
+
+    /**
+     * Runs the optimization with the proposals and evaluations of a round on the calling thread.
+     *
+     * @param num_iterations The number of evaluations, including the initial designs
+     * @param X double[N][D]
+     *          Initial points that are already evaluated, they seed the first trust region
+     * @param y double[N]
+     *          Function values of the already evaluated points
+     * @return Incumbent, Value
+     */
+    @Override
+    public Pair<Double[], Double> run(int num_iterations, double[][] X, double[] y) throws Exception{
+        return run(num_iterations, X, y, null);
+    }
+
+    /**
+     * The main trust region loop.
+     *
+     * @param num_iterations The number of evaluations, including the initial designs
+     * @param X double[N][D]
+     *          Initial points that are already evaluated, they seed the first trust region
+     * @param y double[N]
+     *          Function values of the already evaluated points
+     * @param executor ExecutorService that runs the proposals and evaluations of the trust regions
+     *                 in parallel, or null to run them on the calling thread. The objective function
+     *                 has to allow concurrent calls of evaluate if an executor is given.
+     * @return Incumbent, Value
+     *      Incumbent: double[D]
+     *              Incumbent
+     *      Value: double
+     *              (Estimated) function value of the incumbent
+     */
+    public Pair<Double[], Double> run(int num_iterations, double[][] X, double[] y, ExecutorService executor) throws Exception{
+        if ((X == null) != (y == null)){
+            throw new Exception("X or y is null in TrustRegionSolver.run().");
+        }
+        open_output(false);
+
+        this._time_start = System.currentTimeMillis();
+        this._observations = new Observations(this._lower.length, num_iterations);
+        this._regions = new ArrayList<TrustRegion>();
+        for (int r = 0; r < this._n_regions; r ++ ){
+            this._regions.add(new TrustRegion(r, this._random.nextLong()));
+        }
+
+        int it = 0;
+        if (X != null){
+            TrustRegion region = this._regions.get(0);
+            // The given points replace as many points of the initial design of the region
+            for (int i = 0; i < X.length && !region.pending.isEmpty(); i ++ ){
+                region.pending.removeFirst();
+            }
+            for (int i = 0; i < X.length; i ++ ){
+                Evaluation result = new Evaluation(this._objective_func, X[i], 0);
+                result.y = y[i];
+                record(it ++, result);
+                region.tell(X[i], y[i]);
+            }
+        }
+
+        while (it < num_iterations){
+            // Every region proposes one point as long as the budget lasts
+            final List<TrustRegion> active = this._regions.subList(0, Math.min(this._regions.size(), num_iterations - it));
+            this._iteration = it;
+            List<Callable<double[]>> proposals = new ArrayList<Callable<double[]>>();
+            for (int r = 0; r < active.size(); r ++ ){
+                final TrustRegion region = active.get(r);
+                final int iteration = it + r;
+                proposals.add(new Callable<double[]>() {
+                    @Override
+                    public double[] call() throws Exception {
+                        return region.propose(iteration);
+                    }
+                });
+            }
+
+            long start_time = System.nanoTime();
+            List<double[]> points = Parallel.invoke(proposals, executor);
+            long time_overhead = (System.nanoTime() - start_time) / 1000000 / points.size();
+
+            List<Evaluation> evaluations = new ArrayList<Evaluation>();
+            for (double[] x : points){
+                evaluations.add(new Evaluation(this._objective_func, x, time_overhead));
+            }
+            List<Evaluation> results = Parallel.invoke(evaluations, executor);
+
+            for (int r = 0; r < results.size(); r ++ ){
+                Evaluation result = results.get(r);
+                record(it ++, result);
+                active.get(r).tell(result.x, result.y);
+            }
+        }
+
+        Double[] incumbent = this._incumbents.get(this._incumbents.size() - 1);
+        Double incumbent_value = this._incumbent_values.get(this._incumbent_values.size() - 1);
+        logger.info(String.format("Return %s as incumbent with error %f ", ArrayUtils.arrayToString(incumbent), incumbent_value));
+
+        flush_output();
+        return new Pair<Double[], Double>(incumbent, incumbent_value);
+    }
+
+    private double[] normalize(double[] x){
+        double[] result = new double[x.length];
+        for (int i = 0; i < x.length; i ++ ){
+            result[i] = (x[i] - this._lower[i]) / (this._upper[i] - this._lower[i]);
+        }
+        return result;
+    }
+
+    private double[] unnormalize(double[] x){
+        double[] result = new double[x.length];
+        for (int i = 0; i < x.length; i ++ ){
+            result[i] = this._lower[i] + (this._upper[i] - this._lower[i]) * x[i];
+        }
+        return result;
+    }
+
+    /**
+     * State of one trust region. Each region has its own random number generator, data and
+     * local GP, so the regions can propose points concurrently.
+     */
+    private class TrustRegion {
+        int id;
+        Random random;
+        /**
+         * Points evaluated since the last restart of the region.
+         */
+        Observations data;
+        /**
+         * Initial design points that still have to be evaluated.
+         */
+        LinkedList<double[]> pending;
+        GaussianProcess model;
+        double length;
+        int n_success;
+        int n_failure;
+        int failure_tolerance;
+        /**
+         * Relative side lengths of the box, the normalized ARD length scales of the local GP.
+         */
+        double[] weights;
+
+        TrustRegion(int id, long seed){
+            this.id = id;
+            this.random = new Random(seed);
+            this.failure_tolerance = Math.max(4, _lower.length);
+            restart();
+        }
+
+        void restart(){
+            int dim = _lower.length;
+            this.data = new Observations(dim);
+            this.pending = new LinkedList<double[]>(Arrays.asList(InitRandomUniform.get(_lower, _upper, _initial_points, this.random)));
+            double[] lengthscales = new double[dim];
+            Arrays.fill(lengthscales, 1.0);
+            this.model = new GaussianProcess(new ARDSquaredExponentialKernel(lengthscales, 1.0), 0.0, true, true, _lower, _upper);
+            this.length = LENGTH_INIT;
+            this.n_success = 0;
+            this.n_failure = 0;
+            this.weights = new double[dim];
+            Arrays.fill(this.weights, 1.0);
+        }
+
+        /**
+         * Returns the next point of the initial design, or maximizes EI of the local GP
+         * over candidates inside the trust region. If the local GP can not be fit, i.e.
+         * there are less than two local observations or they all have the same value, a
+         * random candidate is returned. The phases are reported as iteration it, also
+         * when the regions propose concurrently.
+         */
+        double[] propose(int it) throws Exception{
+            if (!this.pending.isEmpty()){
+                return this.pending.removeFirst();
+            }
+
+            int dim = _lower.length;
+            double[] center = normalize(this.data.get_x(this.data.argmin()));
+            Observations local = local_data(center);
+            boolean fit = can_fit(local);
+            if (fit){
+                long t = System.nanoTime();
+                this.model.train(local, true);
+                emit(Phase.TRAIN, it, t);
+                if (this.model.get_fit_time() > 0){
+                    emit(Phase.FIT, it, t, this.model.get_fit_time());
+                }
+                update_weights();
+            }
+            else if (logger.isDebugEnabled()){
+                logger.debug(String.format("Trust region %d can not fit its local GP to %d points, propose a random candidate",
+                        this.id, local.size()));
+            }
+
+            double[] box_lower = new double[dim];
+            double[] box_upper = new double[dim];
+            for (int j = 0; j < dim; j ++ ){
+                box_lower[j] = Math.max(0.0, center[j] - 0.5 * this.length * this.weights[j]);
+                box_upper[j] = Math.min(1.0, center[j] + 0.5 * this.length * this.weights[j]);
+            }
+
+            // Candidates perturb only a subset of the coordinates of the center, which
+            // keeps them close to the incumbent in high dimensions
+            double p_perturb = Math.min(20.0 / dim, 1.0);
+            double[][] candidates = new double[_n_candidates][];
+            for (int c = 0; c < _n_candidates; c ++ ){
+                double[] x = center.clone();
+                boolean perturbed = false;
+                for (int j = 0; j < dim; j ++ ){
+                    if (this.random.nextDouble() < p_perturb){
+                        x[j] = box_lower[j] + (box_upper[j] - box_lower[j]) * this.random.nextDouble();
+                        perturbed = true;
+                    }
+                }
+                if (!perturbed){
+                    int j = this.random.nextInt(dim);
+                    x[j] = box_lower[j] + (box_upper[j] - box_lower[j]) * this.random.nextDouble();
+                }
+                candidates[c] = unnormalize(x);
+            }
+            if (!fit){
+                return candidates[this.random.nextInt(candidates.length)];
+            }
+
+            long t = System.nanoTime();
+            EI acquisition = new EI(this.model, 0.0);
+            double[] values = new double[candidates.length];
+            acquisition.compute(candidates, values);
+            emit(Phase.MAXIMIZE, it, t);
+            return candidates[ArrayUtils.argmax(values)];
+        }
+
+        /**
+         * Returns the observations of the region inside the current box around the
+         * center. If there are too few, the ones closest to the center are used.
+         */
+        Observations local_data(double[] center) throws Exception{
+            int n = this.data.size(), dim = _lower.length;
+            final double[] distance = new double[n];
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i ++ ){
+                double[] x = normalize(this.data.get_x(i));
+                double d = 0.0;
+                for (int j = 0; j < dim; j ++ ){
+                    d = Math.max(d, Math.abs(x[j] - center[j]) / (0.5 * this.length * this.weights[j]));
+                }
+                distance[i] = d;
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int c = Double.compare(distance[a], distance[b]);
+                    return c != 0 ? c : Integer.compare(a, b);
+                }
+            });
+
+            int min_points = Math.min(n, Math.max(_initial_points, dim + 1));
+            Observations local = new Observations(dim, n);
+            for (int i = 0; i < n; i ++ ){
+                int idx = order[i];
+                if (distance[idx] > 1.0 && local.size() >= min_points){
+                    break;
+                }
+                local.add(this.data.get_x(idx), this.data.get_y(idx));
+            }
+            return local;
+        }
+
+        /**
+         * Sets the box shape to the ARD length scales of the local GP, normalized to a
+         * geometric mean of one.
+         */
+        @SuppressWarnings("unchecked")
+        void update_weights(){
+            if (!(this.model.get_kernel() instanceof ParametricKernel)){
+                return;
+            }
+            double[] theta = ((ParametricKernel<double[]>) this.model.get_kernel()).get_hyperparameters();
+            int dim = _lower.length;
+            double log_mean = 0.0;
+            for (int j = 0; j < dim; j ++ ){
+                log_mean += theta[j] / dim;
+            }
+            for (int j = 0; j < dim; j ++ ){
+                this.weights[j] = Math.exp(theta[j] - log_mean);
+            }
+        }
+
+        /**
+         * Adds an evaluated point to the region and adapts its size.
+         */
+        void tell(double[] x, double y){
+            boolean initial = this.data.size() < _initial_points;
+            double best = this.data.size() == 0 ? Double.POSITIVE_INFINITY : this.data.get_y(this.data.argmin());
+            this.data.add(x, y);
+            if (initial){
+                return;
+            }
+
+            if (y < best - SUCCESS_MARGIN * Math.abs(best)){
+                this.n_success ++;
+                this.n_failure = 0;
+            }
+            else{
+                this.n_success = 0;
+                this.n_failure ++;
+            }
+
+            if (this.n_success == SUCCESS_TOLERANCE){
+                this.length = Math.min(2.0 * this.length, LENGTH_MAX);
+                this.n_success = 0;
+            }
+            else if (this.n_failure == this.failure_tolerance){
+                this.length /= 2.0;
+                this.n_failure = 0;
+            }
+
+            if (this.length < LENGTH_MIN){
+                logger.info(String.format("Trust region %d converged at %f, restart", this.id, this.data.get_y(this.data.argmin())));
+                restart();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package algorithm.utils;
+
+import org.json.JSONObject;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BinaryTraceWriter extends TraceWriter {
+
+    private static final int MAGIC = 0x424f5452;
+    private static final int VERSION = 1;
+
+    private int _dim;
+    private DataOutputStream _data;
+
+    /**
+     * Writes the trace in a compact binary format, which takes 8 * D + 45 bytes per
+     * iteration. The file starts with the magic number "BOTR", the version, D and the
+     * header as UTF string. Every record holds the iteration (int), y, the incumbent
+     * value (double), whether x is the new incumbent (byte), the optimization overhead,
+     * the time of the evaluation, the runtime (long) and x (D doubles), big-endian.
+     *
+     * @param path Path of the output file
+     * @param dim Number of input dimensions D
+     * @param append If true the records are appended to an existing binary trace
+     * @throws IOException if the file can not be created
+     */
+    public BinaryTraceWriter(String path, int dim, boolean append) throws IOException{
+        super(path, append);
+        this._dim = dim;
+        this._data = new DataOutputStream(this._out);
+    }
+
+    @Override
+    protected void encode_header(JSONObject header) throws IOException{
+        this._data.writeInt(MAGIC);
+        this._data.writeInt(VERSION);
+        this._data.writeInt(this._dim);
+        this._data.writeUTF(header.toString());
+    }
+
+    @Override
+    protected void encode(TraceRecord record) throws IOException{
+        this._data.writeInt(record.iteration);
+        this._data.writeDouble(record.y);
+        this._data.writeDouble(record.incumbent_value);
+        this._data.writeByte(record.new_incumbent ? 1 : 0);
+        this._data.writeLong(record.time_overhead);
+        this._data.writeLong(record.time_func_eval);
+        this._data.writeLong(record.runtime);
+        for (int i = 0; i < this._dim; i ++ ){
+            this._data.writeDouble(record.x[i]);
+        }
+    }
+
+    /**
+     * Reads the records of a binary trace. A record that was cut off at the end of the
+     * file, e.g. because the JVM died while writing it, is skipped.
+     *
+     * @param path Path of the trace
+     * @return the records in the order they were written
+     * @throws IOException if the file is not a binary trace
+     */
+    public static List<TraceRecord> read(String path) throws IOException{
+        List<TraceRecord> result = new ArrayList<TraceRecord>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+        try{
+            if (in.readInt() != MAGIC || in.readInt() != VERSION){
+                throw new IOException(path + " is not a binary trace.");
+            }
+            int dim = in.readInt();
+            in.readUTF();
+
+            while (true){
+                int iteration;
+                try{
+                    iteration = in.readInt();
+                }
+                catch (EOFException e){
+                    break;
+                }
+                try{
+                    double y = in.readDouble();
+                    double incumbent_value = in.readDouble();
+                    boolean new_incumbent = in.readByte() != 0;
+                    long time_overhead = in.readLong();
+                    long time_func_eval = in.readLong();
+                    long runtime = in.readLong();
+                    double[] x = new double[dim];
+                    for (int i = 0; i < dim; i ++ ){
+                        x[i] = in.readDouble();
+                    }
+                    result.add(new TraceRecord(iteration, x, y, new_incumbent, incumbent_value, time_overhead, time_func_eval, runtime));
+                }
+                catch (EOFException e){
+                    break;
+                }
+            }
+        }
+        finally{
+            in.close();
+        }
+        return result;
+    }
+}
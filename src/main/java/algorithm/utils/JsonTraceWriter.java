@@ -0,0 +1,50 @@
+package algorithm.utils;
+
+import org.json.JSONObject;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+public class JsonTraceWriter extends TraceWriter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Writes the trace as one Json object per line: the header followed by one line per
+     * iteration with "iteration", "x", "y", "incumbents_value", "optimization_overhead",
+     * "time_func_eval" and "runtime". "incumbent" is only written in the iterations
+     * where the incumbent changes, it is x then.
+     *
+     * @param path Path of the output file
+     * @param append If true the records are appended to the file
+     * @throws IOException if the file can not be created
+     */
+    public JsonTraceWriter(String path, boolean append) throws IOException{
+        super(path, append);
+    }
+
+    @Override
+    protected void encode_header(JSONObject header) throws IOException{
+        write_line(header);
+    }
+
+    @Override
+    protected void encode(TraceRecord record) throws IOException{
+        JSONObject data = new JSONObject();
+        data.put("iteration", record.iteration);
+        data.put("x", record.x);
+        data.put("y", record.y);
+        if (record.new_incumbent){
+            data.put("incumbent", record.x);
+        }
+        data.put("incumbents_value", record.incumbent_value);
+        data.put("optimization_overhead", record.time_overhead);
+        data.put("time_func_eval", record.time_func_eval);
+        data.put("runtime", record.runtime);
+        write_line(data);
+    }
+
+    private void write_line(JSONObject data) throws IOException{
+        this._out.write(data.toString().getBytes(UTF_8));
+        this._out.write('\n');
+    }
+}
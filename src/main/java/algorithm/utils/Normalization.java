@@ -1,19 +1,12 @@
 package algorithm.utils;
 
-import java.util.*;
-
 public class Normalization {
 
-    public static List<Double[]> zero_one_normalization(List<Double[]> X, double[] lower, double[] upper){
-        List<Double[]> result = new ArrayList<Double[]>();
+    public static double[] zero_one_normalization(double[] x, double[] lower, double[] upper){
         int dim = lower.length;
-        for (Double[] line : X){
-            Double[] line_normalized = new Double[dim];
-            for (int i = 0; i < dim; i ++ ){
-                line_normalized[i] = (line[i] - lower[i]) / (upper[i] - lower[i]);
-            }
-            result.add(line_normalized);
-        }
+        double[] result = new double[dim];
+        for (int i = 0; i < dim; i ++ )
+            result[i] = (x[i] - lower[i]) / (upper[i] - lower[i]);
         return result;
     }
 
@@ -25,15 +18,6 @@ public class Normalization {
         return result;
     }
 
-    public static List<Double> zero_mean_unit_var_normalization(List<Double> y, double mean, double std)
-    {
-        List<Double> result = new ArrayList<Double>();
-        for (double v : y){
-            result.add((v - mean) / std);
-        }
-        return result;
-    }
-
     public static Double zero_mean_unit_var_unnormalization(Double y, double mean, double std){
         return y * std + mean;
     }
@@ -0,0 +1,258 @@
+package algorithm.utils;
+
+import java.util.Arrays;
+
+public class Observations {
+
+    private int _dim;
+    private int _n;
+    /**
+     * Input points, row-major (N, D)
+     */
+    private double[] _X;
+    /**
+     * Target values (N)
+     */
+    private double[] _y;
+    /**
+     * Rows of the input points as they are handed to the models, raw and normalized.
+     * They are built once per point and reused by every later call.
+     */
+    private Rows _rows;
+    private Rows _rows_normalized;
+
+    /**
+     * Growable store of evaluated points and their function values. The points are kept
+     * row-major in one primitive array, so solver, model and result can share the same
+     * data without boxing or copying it.
+     *
+     * @param dim int
+     *            Number of input dimensions D
+     */
+    public Observations(int dim){
+        this(dim, 16);
+    }
+
+    /**
+     * @param dim int
+     *            Number of input dimensions D
+     * @param capacity int
+     *                 Number of points that fit into the store before it has to grow
+     */
+    public Observations(int dim, int capacity){
+        this._dim = dim;
+        this._n = 0;
+        this._X = new double[Math.max(capacity, 1) * dim];
+        this._y = new double[Math.max(capacity, 1)];
+        this._rows = new Rows();
+        this._rows_normalized = new Rows();
+    }
+
+    /**
+     * Creates a store that contains the given points.
+     *
+     * @param X (N, D)
+     *          Input points
+     * @param y (N)
+     *          Function values of the input points
+     */
+    public Observations(double[][] X, double[] y) throws Exception{
+        this(X.length == 0 ? 0 : X[0].length, X.length);
+        if (X.length != y.length){
+            throw new Exception(String.format("The sizes of X and y don't match: %d != %d", X.length, y.length));
+        }
+        for (int i = 0; i < X.length; i ++ ){
+            add(X[i], y[i]);
+        }
+    }
+
+    /**
+     * Appends one point.
+     *
+     * @param x (D)
+     *          Input point
+     * @param y Function value of x
+     */
+    public void add(double[] x, double y){
+        if (x.length != this._dim){
+            throw new IllegalArgumentException(String.format("Dimension mismatch: %d != %d", x.length, this._dim));
+        }
+        if (this._n == this._y.length){
+            int capacity = this._y.length * 2;
+            this._X = Arrays.copyOf(this._X, capacity * this._dim);
+            this._y = Arrays.copyOf(this._y, capacity);
+        }
+        System.arraycopy(x, 0, this._X, this._n * this._dim, this._dim);
+        this._y[this._n] = y;
+        this._n ++;
+    }
+
+    /**
+     * Removes all but the first n points.
+     */
+    public void truncate(int n){
+        this._n = Math.min(n, this._n);
+        this._rows.truncate(this._n);
+        this._rows_normalized.truncate(this._n);
+    }
+
+    public int size(){
+        return this._n;
+    }
+
+    public int dim(){
+        return this._dim;
+    }
+
+    public double get(int i, int j){
+        return this._X[i * this._dim + j];
+    }
+
+    public double get_y(int i){
+        return this._y[i];
+    }
+
+    /**
+     * Returns a copy of the i-th input point.
+     */
+    public double[] get_x(int i){
+        return Arrays.copyOfRange(this._X, i * this._dim, (i + 1) * this._dim);
+    }
+
+    /**
+     * Returns a copy of the input points.
+     *
+     * @return (N, D)
+     */
+    public double[][] get_X(){
+        double[][] result = new double[this._n][];
+        for (int i = 0; i < this._n; i ++ ){
+            result[i] = get_x(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the input points from .. to - 1. The rows are shared by all calls and
+     * must not be changed.
+     */
+    public double[][] get_X(int from, int to){
+        return this._rows.get(from, to, null, null);
+    }
+
+    /**
+     * Returns a copy of the function values.
+     *
+     * @return (N)
+     */
+    public double[] get_y(){
+        return Arrays.copyOf(this._y, this._n);
+    }
+
+    /**
+     * View of the input points from .. to - 1 normalized to [0, 1]. A point is
+     * normalized once, later calls with the same bounds reuse its row, so the rows
+     * must not be changed.
+     *
+     * @param lower (D)
+     *              Lower bound of the input space
+     * @param upper (D)
+     *              Upper bound of the input space
+     * @return (to - from, D)
+     */
+    public double[][] get_X_normalized(int from, int to, double[] lower, double[] upper){
+        return this._rows_normalized.get(from, to, lower, upper);
+    }
+
+    /**
+     * Returns the i-th input point normalized to [0, 1], see get_X_normalized.
+     */
+    public double[] get_x_normalized(int i, double[] lower, double[] upper){
+        return this._rows_normalized.row(i, lower, upper);
+    }
+
+    /**
+     * View of the first n function values normalized to zero mean and unit variance
+     *
+     * @param n Number of function values
+     * @param mean Mean of the function values
+     * @param std Standard deviation of the function values
+     * @return (n)
+     */
+    public double[] get_y_normalized(int n, double mean, double std){
+        double[] result = new double[n];
+        for (int i = 0; i < n; i ++ ){
+            result[i] = (this._y[i] - mean) / std;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the smallest of the first n function values.
+     */
+    public int argmin(int n){
+        if (n == 0){
+            return -1;
+        }
+        int best_idx = 0;
+        for (int i = 1; i < n; i ++ ){
+            if (this._y[i] < this._y[best_idx]){
+                best_idx = i;
+            }
+        }
+        return best_idx;
+    }
+
+    public int argmin(){
+        return argmin(this._n);
+    }
+
+    /**
+     * Rows of the first n input points, raw or normalized to the given bounds. Rows are
+     * appended as the store grows and replaced by new arrays after a truncate, so a row
+     * that was handed out never changes.
+     */
+    private class Rows {
+        private double[][] rows = new double[0][];
+        private int n;
+        private double[] lower;
+        private double[] upper;
+
+        private synchronized double[][] get(int from, int to, double[] lower, double[] upper){
+            extend(to, lower, upper);
+            return Arrays.copyOfRange(this.rows, from, to);
+        }
+
+        private synchronized double[] row(int i, double[] lower, double[] upper){
+            extend(i + 1, lower, upper);
+            return this.rows[i];
+        }
+
+        private void extend(int to, double[] lower, double[] upper){
+            if (lower != this.lower || upper != this.upper){
+                if (!Arrays.equals(lower, this.lower) || !Arrays.equals(upper, this.upper)){
+                    this.n = 0;
+                }
+                this.lower = lower;
+                this.upper = upper;
+            }
+            if (to > this.rows.length){
+                this.rows = Arrays.copyOf(this.rows, Math.max(to, _y.length));
+            }
+            for (; this.n < to; this.n ++ ){
+                int offset = this.n * _dim;
+                double[] row = Arrays.copyOfRange(_X, offset, offset + _dim);
+                if (lower != null){
+                    for (int j = 0; j < _dim; j ++ ){
+                        row[j] = (row[j] - lower[j]) / (upper[j] - lower[j]);
+                    }
+                }
+                this.rows[this.n] = row;
+            }
+        }
+
+        private synchronized void truncate(int n){
+            this.n = Math.min(this.n, n);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package algorithm.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class Parallel {
+
+    /**
+     * Runs the tasks on the executor and waits for all of them, or runs them one after
+     * the other on the calling thread if there is no executor.
+     *
+     * @param tasks Tasks
+     * @param executor ExecutorService, e.g. the ForkJoinPool of a model or maximizer, or null
+     * @return the results in the order of the tasks
+     * @throws Exception the exception of a failed task, wrapped in an ExecutionException
+     *                   if it ran on the executor
+     */
+    public static <T> List<T> invoke(List<? extends Callable<T>> tasks, ExecutorService executor) throws Exception{
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (executor == null){
+            for (Callable<T> task : tasks){
+                results.add(task.call());
+            }
+        }
+        else{
+            for (Future<T> future : executor.invokeAll(tasks)){
+                results.add(future.get());
+            }
+        }
+        return results;
+    }
+}
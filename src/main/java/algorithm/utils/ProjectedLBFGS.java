@@ -0,0 +1,178 @@
+package algorithm.utils;
+
+import smile.math.DifferentiableMultivariateFunction;
+
+public class ProjectedLBFGS {
+
+    /**
+     * Sufficient decrease constant of the Armijo line search.
+     */
+    private static final double C1 = 1e-4;
+    /**
+     * Maximal number of step halvings in one line search.
+     */
+    private static final int MAX_LINE_SEARCH = 30;
+
+    /**
+     * Minimizes a differentiable function subject to box constraints l &lt;= x &lt;= u with
+     * a projected limited-memory BFGS method: variables that sit at a bound with the
+     * gradient pointing outwards are held fixed, the L-BFGS direction is computed on
+     * the remaining free variables, and a backtracking line search along the projected
+     * path keeps every iterate feasible.
+     *
+     * @param func the function to minimize. func.f(x, g) returns f(x) and writes the gradient into g.
+     * @param m int
+     *          Number of corrections kept for the inverse Hessian approximation
+     * @param x (D)
+     *          Start point, overwritten with the minimizer
+     * @param l (D)
+     *          Lower bounds
+     * @param u (D)
+     *          Upper bounds
+     * @param gtol double
+     *             Convergence tolerance on the infinity norm of the projected gradient
+     * @param maxIter int
+     *                Maximal number of iterations
+     * @return the minimal function value
+     */
+    public static double minimize(DifferentiableMultivariateFunction func, int m, double[] x, double[] l, double[] u,
+                                  double gtol, int maxIter){
+        int n = x.length;
+        project(x, l, u);
+
+        double[] g = new double[n];
+        double f = func.f(x, g);
+
+        double[][] s = new double[m][];
+        double[][] y = new double[m][];
+        double[] rho = new double[m];
+        double[] alpha = new double[m];
+        int k = 0, stored = 0;
+
+        double[] d = new double[n];
+        double[] x_new = new double[n];
+        double[] g_new = new double[n];
+
+        for (int it = 0; it < maxIter; it ++ ){
+            // Projected gradient, zero for variables fixed at a bound
+            double pg_norm = 0.0;
+            boolean[] free = new boolean[n];
+            for (int i = 0; i < n; i ++ ){
+                free[i] = !((x[i] <= l[i] && g[i] > 0) || (x[i] >= u[i] && g[i] < 0));
+                if (free[i]){
+                    pg_norm = Math.max(pg_norm, Math.abs(g[i]));
+                }
+            }
+            if (pg_norm <= gtol){
+                break;
+            }
+
+            // Two-loop recursion on the free variables
+            for (int i = 0; i < n; i ++ ){
+                d[i] = free[i] ? -g[i] : 0.0;
+            }
+            for (int j = 0; j < stored; j ++ ){
+                int c = (k - 1 - j + m) % m;
+                alpha[c] = rho[c] * dot(s[c], d, free);
+                axpy(-alpha[c], y[c], d, free);
+            }
+            if (stored > 0){
+                int c = (k - 1 + m) % m;
+                double gamma = dot(s[c], y[c], free) / dot(y[c], y[c], free);
+                if (gamma > 0 && !Double.isInfinite(gamma)){
+                    for (int i = 0; i < n; i ++ ){
+                        d[i] *= gamma;
+                    }
+                }
+            }
+            for (int j = stored - 1; j >= 0; j -- ){
+                int c = (k - 1 - j + m) % m;
+                double beta = rho[c] * dot(y[c], d, free);
+                axpy(alpha[c] - beta, s[c], d, free);
+            }
+
+            double slope = 0.0;
+            for (int i = 0; i < n; i ++ ){
+                slope += g[i] * d[i];
+            }
+            if (!(slope < 0)){
+                // Not a descent direction, restart from the projected steepest descent
+                for (int i = 0; i < n; i ++ ){
+                    d[i] = free[i] ? -g[i] : 0.0;
+                }
+                stored = 0;
+            }
+
+            // Backtracking line search along the projected path
+            double t = stored == 0 ? Math.min(1.0, 1.0 / pg_norm) : 1.0;
+            double f_new = f;
+            boolean accepted = false;
+            for (int ls = 0; ls < MAX_LINE_SEARCH; ls ++ ){
+                double decrease = 0.0;
+                for (int i = 0; i < n; i ++ ){
+                    x_new[i] = Math.min(u[i], Math.max(l[i], x[i] + t * d[i]));
+                    decrease += g[i] * (x_new[i] - x[i]);
+                }
+                f_new = func.f(x_new, g_new);
+                if (f_new <= f + C1 * decrease){
+                    accepted = true;
+                    break;
+                }
+                t *= 0.5;
+            }
+            if (!accepted){
+                break;
+            }
+
+            double[] s_k = new double[n];
+            double[] y_k = new double[n];
+            double sy = 0.0;
+            for (int i = 0; i < n; i ++ ){
+                s_k[i] = x_new[i] - x[i];
+                y_k[i] = g_new[i] - g[i];
+                sy += s_k[i] * y_k[i];
+            }
+            if (sy > 1e-10){
+                s[k] = s_k;
+                y[k] = y_k;
+                rho[k] = 1.0 / sy;
+                k = (k + 1) % m;
+                stored = Math.min(stored + 1, m);
+            }
+
+            double f_old = f;
+            System.arraycopy(x_new, 0, x, 0, n);
+            System.arraycopy(g_new, 0, g, 0, n);
+            f = f_new;
+
+            if (f_old - f <= 1e-12 * Math.max(1.0, Math.abs(f))){
+                break;
+            }
+        }
+        return f;
+    }
+
+    private static void project(double[] x, double[] l, double[] u){
+        for (int i = 0; i < x.length; i ++ ){
+            x[i] = Math.min(u[i], Math.max(l[i], x[i]));
+        }
+    }
+
+    private static double dot(double[] a, double[] b, boolean[] free){
+        double result = 0.0;
+        for (int i = 0; i < a.length; i ++ ){
+            if (free[i]){
+                result += a[i] * b[i];
+            }
+        }
+        return result;
+    }
+
+    private static void axpy(double a, double[] x, double[] y, boolean[] free){
+        for (int i = 0; i < x.length; i ++ ){
+            if (free[i]){
+                y[i] += a * x[i];
+            }
+        }
+    }
+}
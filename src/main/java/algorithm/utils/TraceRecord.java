@@ -0,0 +1,43 @@
+package algorithm.utils;
+
+public class TraceRecord {
+
+    public final int iteration;
+    public final double[] x;
+    public final double y;
+    /**
+     * True if x became the incumbent with this evaluation.
+     */
+    public final boolean new_incumbent;
+    public final double incumbent_value;
+    public final long time_overhead;
+    public final long time_func_eval;
+    public final long runtime;
+
+    /**
+     * What one iteration adds to a study: the evaluated point, its value, whether it
+     * became the incumbent and the timings. The whole study is the sequence of records,
+     * so a trace grows linearly with the number of iterations.
+     *
+     * @param iteration Iteration
+     * @param x (D)
+     *          Evaluated point
+     * @param y Function value of x
+     * @param new_incumbent True if x is the new incumbent
+     * @param incumbent_value Function value of the incumbent after this iteration
+     * @param time_overhead Optimization overhead of the iteration in milliseconds
+     * @param time_func_eval Time of the evaluation in milliseconds
+     * @param runtime Time since the start of the study in milliseconds
+     */
+    public TraceRecord(int iteration, double[] x, double y, boolean new_incumbent, double incumbent_value,
+                       long time_overhead, long time_func_eval, long runtime){
+        this.iteration = iteration;
+        this.x = x;
+        this.y = y;
+        this.new_incumbent = new_incumbent;
+        this.incumbent_value = incumbent_value;
+        this.time_overhead = time_overhead;
+        this.time_func_eval = time_func_eval;
+        this.runtime = runtime;
+    }
+}
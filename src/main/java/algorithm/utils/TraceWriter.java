@@ -0,0 +1,209 @@
+package algorithm.utils;
+
+import org.apache.log4j.*;
+import org.json.JSONObject;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public abstract class TraceWriter {
+    private Logger logger = Logger.getLogger(TraceWriter.class);
+
+    /**
+     * Number of records that can wait for the writer thread before write blocks.
+     */
+    private static final int CAPACITY = 4096;
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * The file is flushed and synced to disk at least this often while records arrive.
+     */
+    private static final long FLUSH_INTERVAL = 1000;
+
+    private FileOutputStream _file;
+    protected OutputStream _out;
+    /**
+     * Holds TraceRecords and flush requests (CountDownLatch) in the order they were issued.
+     */
+    private BlockingQueue<Object> _queue;
+    private Thread _thread;
+    private volatile IOException _error;
+    private boolean _closed;
+
+    /**
+     * Writes the trace of a study to a file on a background thread. Records are queued in
+     * a bounded buffer, so writing them costs the solver only a hand-over, and are
+     * written in batches. While records arrive, the file is flushed and synced to disk
+     * every second, so at most the last second of a study is lost if the JVM dies.
+     *
+     * @param path Path of the output file
+     * @param append If true the records are appended to the file
+     * @throws IOException if the file can not be created
+     */
+    protected TraceWriter(String path, boolean append) throws IOException{
+        this._file = new FileOutputStream(path, append);
+        this._out = new BufferedOutputStream(this._file, BUFFER_SIZE);
+        this._queue = new ArrayBlockingQueue<Object>(CAPACITY);
+        this._closed = false;
+
+        this._thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write_loop();
+            }
+        }, "trace-writer");
+        this._thread.setDaemon(true);
+        this._thread.start();
+    }
+
+    /**
+     * Opens a trace file. Paths ending with ".bin" get the compact binary format of
+     * BinaryTraceWriter, all others one Json object per line.
+     *
+     * @param path Path of the output file
+     * @param header Description of the study that is written once at the start of the file
+     * @param dim Number of input dimensions
+     * @param append If true the records are appended to an existing trace, e.g. when a
+     *               study is resumed. Iterations after the last checkpoint may then appear
+     *               twice, readers should keep the last record of an iteration.
+     * @return the writer
+     * @throws IOException if the file can not be created
+     */
+    public static TraceWriter open(String path, JSONObject header, int dim, boolean append) throws IOException{
+        boolean fresh = !append || new File(path).length() == 0;
+        TraceWriter result = path.endsWith(".bin") ? new BinaryTraceWriter(path, dim, !fresh) : new JsonTraceWriter(path, !fresh);
+        if (fresh){
+            result.enqueue(header);
+        }
+        return result;
+    }
+
+    /**
+     * Encodes the header of the trace to the output stream.
+     */
+    protected abstract void encode_header(JSONObject header) throws IOException;
+
+    /**
+     * Encodes one record to the output stream.
+     */
+    protected abstract void encode(TraceRecord record) throws IOException;
+
+    /**
+     * Hands a record over to the writer thread. Blocks only if the buffer is full.
+     *
+     * @param record the record
+     */
+    public void write(TraceRecord record){
+        enqueue(record);
+    }
+
+    /**
+     * Waits until all records written so far are on disk.
+     *
+     * @throws IOException if writing the trace failed
+     */
+    public void flush() throws IOException{
+        CountDownLatch done = new CountDownLatch(1);
+        if (enqueue(done)){
+            try{
+                done.await();
+            }
+            catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (this._error != null){
+            throw this._error;
+        }
+    }
+
+    /**
+     * Writes all pending records, syncs and closes the file and stops the writer thread.
+     *
+     * @throws IOException if writing the trace failed
+     */
+    public synchronized void close() throws IOException{
+        if (this._closed){
+            return;
+        }
+        try{
+            flush();
+        }
+        finally{
+            this._closed = true;
+            this._thread.interrupt();
+            try{
+                this._thread.join();
+            }
+            catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            this._out.close();
+        }
+    }
+
+    private boolean enqueue(Object item){
+        if (this._closed || this._error != null){
+            return false;
+        }
+        try{
+            this._queue.put(item);
+            return true;
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void write_loop(){
+        long last_sync = System.currentTimeMillis();
+        boolean dirty = false;
+        while (true){
+            Object item;
+            try{
+                item = dirty ? this._queue.poll(Math.max(1, last_sync + FLUSH_INTERVAL - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS) : this._queue.take();
+            }
+            catch (InterruptedException e){
+                // close() interrupts the thread after the last flush
+                return;
+            }
+
+            try{
+                if (item instanceof TraceRecord){
+                    encode((TraceRecord) item);
+                    dirty = true;
+                }
+                else if (item instanceof JSONObject){
+                    encode_header((JSONObject) item);
+                    dirty = true;
+                }
+
+                if (item instanceof CountDownLatch || (dirty && System.currentTimeMillis() - last_sync >= FLUSH_INTERVAL)){
+                    if (dirty){
+                        this._out.flush();
+                        this._file.getFD().sync();
+                    }
+                    last_sync = System.currentTimeMillis();
+                    dirty = false;
+                }
+            }
+            catch (IOException e){
+                if (this._error == null){
+                    logger.error("Can't write the trace: " + e.getMessage());
+                }
+                this._error = e;
+            }
+
+            if (item instanceof CountDownLatch){
+                ((CountDownLatch) item).countDown();
+            }
+        }
+    }
+}
@@ -2,20 +2,142 @@ package utils;
 
 public class Norm {
 
-    public static double cdf(double x){
-        int neg = (x < 0d) ? 1 : 0;
-        if ( neg == 1)
-            x *= -1d;
+    private static final double SQRT_2PI = 2.5066282746310002;
+    private static final double LOG_SQRT_2PI = 0.9189385332046728;
+    /**
+     * Above this |x| the Mills ratio is computed with the continued fraction instead of the rational function.
+     */
+    private static final double SPLIT = 3.0;
 
-        double k = (1d / ( 1d + 0.2316419 * x));
-        double y = (((( 1.330274429 * k - 1.821255978) * k + 1.781477937) *
-                k - 0.356563782) * k + 0.319381530) * k;
-        y = 1.0 - 0.398942280401 * Math.exp(-0.5 * x * x) * y;
+    /**
+     * Cumulative distribution function of the standard normal distribution with a
+     * relative error below 1e-14 on the whole real line, also in the tails. Close to
+     * the mean it uses the rational function of Hart (1968) as given by West (2005),
+     * in the tails the continued fraction of the Mills ratio.
+     */
+    public static double cdf(double x){
+        double a = Math.abs(x);
+        double tail = Math.exp(-0.5 * a * a) / SQRT_2PI * mills(a);
+        return x > 0 ? 1.0 - tail : tail;
+    }
 
-        return (1d - neg) * y + neg * (1d - y);
+    /**
+     * Logarithm of the cumulative distribution function. For x < 0 the tail is never
+     * formed explicitly, so the result is finite far beyond the point where cdf(x)
+     * underflows, e.g. log_cdf(-100) = -5005.52.
+     */
+    public static double log_cdf(double x){
+        if (x > 0){
+            return Math.log1p(-Math.exp(-0.5 * x * x) / SQRT_2PI * mills(x));
+        }
+        return -0.5 * x * x - LOG_SQRT_2PI + Math.log(mills(-x));
     }
 
     public static double pdf(double x){
         return Math.exp(-x * x / 2) / Math.sqrt(Math.PI * 2);
     }
+
+    /**
+     * Expected improvement of a standard normal variable over -z, i.e.
+     * z * cdf(z) + pdf(z), with a single exponential and without cancellation for z < 0.
+     */
+    public static double ei(double z){
+        double a = Math.abs(z);
+        double pdf = Math.exp(-0.5 * a * a) / SQRT_2PI;
+        if (z > 0){
+            // cdf(z) = 1 - pdf(z) * mills(z)
+            return z + pdf * (1.0 - z * mills(a));
+        }
+        if (a < SPLIT){
+            return pdf * (1.0 - a * mills(a));
+        }
+        double t = continued_fraction(a);
+        return pdf * t / (a + t);
+    }
+
+    /**
+     * Logarithm of the expected improvement of a standard normal variable over -z, i.e.
+     * log(z * cdf(z) + pdf(z)). For z < -1 the difference is rewritten with the Mills
+     * ratio, so there is no cancellation and the result is accurate for any z, e.g.
+     * log_ei(-1e4) = -50000019.34 where z * cdf(z) + pdf(z) underflows.
+     */
+    public static double log_ei(double z){
+        if (z > -1){
+            return Math.log(ei(z));
+        }
+        double a = -z;
+        double log_pdf = -0.5 * a * a - LOG_SQRT_2PI;
+        if (a < SPLIT){
+            // 1 - a * mills(a), at least 0.09 here
+            return log_pdf + Math.log1p(-a * mills(a));
+        }
+        // mills(a) = 1 / (a + t), so 1 - a * mills(a) = t / (a + t)
+        double t = continued_fraction(a);
+        return log_pdf + Math.log(t) - Math.log(a + t);
+    }
+
+    /**
+     * Computes cdf of every element of x. result may be x.
+     */
+    public static void cdf(double[] x, double[] result){
+        for (int i = 0; i < x.length; i ++ ){
+            result[i] = cdf(x[i]);
+        }
+    }
+
+    /**
+     * Computes log_cdf of every element of x. result may be x.
+     */
+    public static void log_cdf(double[] x, double[] result){
+        for (int i = 0; i < x.length; i ++ ){
+            result[i] = log_cdf(x[i]);
+        }
+    }
+
+    /**
+     * Computes pdf of every element of x. result may be x.
+     */
+    public static void pdf(double[] x, double[] result){
+        for (int i = 0; i < x.length; i ++ ){
+            result[i] = pdf(x[i]);
+        }
+    }
+
+    /**
+     * Mills ratio cdf(-a) / pdf(a) for a >= 0.
+     */
+    private static double mills(double a){
+        if (a < SPLIT){
+            double p = 3.52624965998911e-02 * a + 0.700383064443688;
+            p = p * a + 6.37396220353165;
+            p = p * a + 33.912866078383;
+            p = p * a + 112.079291497871;
+            p = p * a + 221.213596169931;
+            p = p * a + 220.206867912376;
+            double q = 8.83883476483184e-02 * a + 1.75566716318264;
+            q = q * a + 16.064177579207;
+            q = q * a + 86.7807322029461;
+            q = q * a + 296.564248779674;
+            q = q * a + 637.333633378831;
+            q = q * a + 793.826512519948;
+            q = q * a + 440.413735824752;
+            return SQRT_2PI * p / q;
+        }
+        return 1.0 / (a + continued_fraction(a));
+    }
+
+    /**
+     * Returns t = 1 / (a + 2 / (a + 3 / (a + ...))) for a >= SPLIT, i.e. the Mills ratio
+     * is 1 / (a + t). The fraction is evaluated backwards with enough terms for a
+     * relative error below 1e-14, fewer the larger a is. The truncated remainder
+     * a + n / (a + n / ...) is started at its fixed point, which halves the terms.
+     */
+    private static double continued_fraction(double a){
+        int n = a < 4 ? 30 : a < 6 ? 20 : a < 10 ? 12 : 8;
+        double t = 0.5 * (a + Math.sqrt(a * a + 4 * (n + 1)));
+        for (int k = n; k >= 2; k -- ){
+            t = a + k / t;
+        }
+        return 1.0 / t;
+    }
 }
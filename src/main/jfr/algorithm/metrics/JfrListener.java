@@ -0,0 +1,51 @@
+package algorithm.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits the phases of the optimization loop as Java Flight Recorder events, so they
+ * show up next to GC pauses, allocations and thread states in a recording. Only built
+ * on JDK 11 or newer, see the jfr profile of the pom, and only loaded by
+ * BaseSolver.enable_jfr when the runtime has JFR.
+ */
+public class JfrListener implements SolverListener {
+
+    @Name("algorithm.Phase")
+    @Label("Optimization Phase")
+    @Category("Bayesian Optimization")
+    @Description("A phase of an iteration of the optimization loop")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Iteration")
+        int iteration;
+
+        /**
+         * The solver measures the phase itself, the start and duration of the event
+         * are the time of the commit.
+         */
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Override
+    public void on_event(Phase phase, int iteration, long start, long duration){
+        PhaseEvent event = new PhaseEvent();
+        if (event.isEnabled()){
+            event.phase = phase.name();
+            event.iteration = iteration;
+            event.elapsed = duration;
+            event.commit();
+        }
+    }
+}
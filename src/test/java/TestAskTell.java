@@ -0,0 +1,92 @@
+import algorithm.fmin.BayesianOptimization;
+import algorithm.objective_func.Task;
+import algorithm.solver.BayesianOptimizationSolver;
+import utils.Pair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestAskTell {
+
+    public static void main(String[] args) throws Exception{
+
+        class Sphere extends Task{
+
+            @Override
+            public double evaluate(double[] X) {
+                return (X[0] - 0.3) * (X[0] - 0.3) + (X[1] + 0.5) * (X[1] + 0.5);
+            }
+
+            @Override
+            public double[] get_lower() {
+                return new double[]{-2, -2};
+            }
+
+            @Override
+            public double[] get_upper() {
+                return new double[]{2, 2};
+            }
+        }
+
+        Task task = new Sphere();
+        BayesianOptimization study = new BayesianOptimization(task, 30, "random", "ei", "gp", 4, null, 1);
+        BayesianOptimizationSolver solver = study.get_solver();
+        ExecutorService prefetch = Executors.newSingleThreadExecutor();
+        solver.set_prefetch(prefetch);
+
+        // Rounds of 3 trials are asked together and told in a random order
+        Random random = new Random(1);
+        int n = 0;
+        try{
+            while (n < 30){
+                List<Pair<Integer, double[]>> trials = new ArrayList<Pair<Integer, double[]>>();
+                for (int i = 0; i < 3; i ++ ){
+                    trials.add(study.ask());
+                }
+                Collections.shuffle(trials, random);
+                for (Pair<Integer, double[]> trial : trials){
+                    study.tell(trial.first(), task.evaluate(trial.second()));
+                    n ++;
+                }
+            }
+
+            // Telling a trial twice or an unknown one fails
+            int told = 0;
+            try{
+                study.tell(0, 1.0);
+            }
+            catch (Exception e){
+                told ++;
+                System.out.println(e.getMessage());
+            }
+            try{
+                study.tell(1000, 1.0);
+            }
+            catch (Exception e){
+                told ++;
+                System.out.println(e.getMessage());
+            }
+
+            // The last value is told while the next suggestion may be prefetched
+            Pair<Integer, double[]> last = study.ask();
+            study.tell(last.first(), -1.0);
+            n ++;
+
+            List<Double> values = solver.get_incumbent_values();
+            System.out.println(solver.get_observations().size() + " " + solver.get_pending_trials());
+            System.out.println(values.get(values.size() - 1));
+            if (told != 2 || solver.get_observations().size() != n || !solver.get_pending_trials().isEmpty()
+                    || values.get(values.size() - 1) != -1.0){
+                throw new Exception("Not all told values were recorded.");
+            }
+        }
+        finally{
+            solver.set_prefetch(null);
+            prefetch.shutdown();
+        }
+    }
+}
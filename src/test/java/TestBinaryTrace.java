@@ -0,0 +1,81 @@
+import algorithm.fmin.BayesianOptimization;
+import algorithm.fmin.Result;
+import algorithm.objective_func.Task;
+import algorithm.utils.BinaryTraceWriter;
+import algorithm.utils.TraceRecord;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+public class TestBinaryTrace {
+
+    public static void main(String[] args) throws Exception{
+
+        class Sphere extends Task{
+
+            @Override
+            public double evaluate(double[] X) {
+                return (X[0] - 0.3) * (X[0] - 0.3) + (X[1] + 0.5) * (X[1] + 0.5);
+            }
+
+            @Override
+            public double[] get_lower() {
+                return new double[]{-2, -2};
+            }
+
+            @Override
+            public double[] get_upper() {
+                return new double[]{2, 2};
+            }
+        }
+
+        File trace = File.createTempFile("trace", ".bin");
+        trace.deleteOnExit();
+
+        // run closes the trace, so all records are on disk and the writer thread is gone
+        BayesianOptimization study = new BayesianOptimization(new Sphere(), 15, "random", "ei", "gp", 3, trace.getPath(), 1);
+        Result result = study.run();
+        Thread.sleep(100);
+        for (Thread thread : Thread.getAllStackTraces().keySet()){
+            if (thread.getName().equals("trace-writer")){
+                throw new Exception("The trace writer thread is still running after run.");
+            }
+        }
+
+        List<TraceRecord> records = BinaryTraceWriter.read(trace.getPath());
+        System.out.println(records.size() + " records");
+        if (records.size() != result.y.length){
+            throw new Exception("The trace has " + records.size() + " records instead of " + result.y.length + ".");
+        }
+        for (int i = 0; i < records.size(); i ++ ){
+            TraceRecord record = records.get(i);
+            if (record.iteration != i || record.y != result.y[i] || record.x[0] != result.X[i][0] || record.x[1] != result.X[i][1]
+                    || record.incumbent_value != result.incumbent_values[i]){
+                throw new Exception("Record " + i + " differs from the result.");
+            }
+        }
+
+        // A record that is cut off at the end of the file, in its first field or later, is skipped
+        int record_size = 8 * 2 + 45;
+        for (int cut : new int[]{2, 10, record_size - 1}){
+            File copy = File.createTempFile("trace", ".bin");
+            copy.deleteOnExit();
+            byte[] bytes = Files.readAllBytes(trace.toPath());
+            Files.write(copy.toPath(), bytes);
+            RandomAccessFile file = new RandomAccessFile(copy, "rw");
+            try{
+                file.setLength(bytes.length - record_size + cut);
+            }
+            finally{
+                file.close();
+            }
+            List<TraceRecord> truncated = BinaryTraceWriter.read(copy.getPath());
+            System.out.println("cut after " + cut + " bytes: " + truncated.size() + " records");
+            if (truncated.size() != records.size() - 1){
+                throw new Exception("The record cut off after " + cut + " bytes was not skipped.");
+            }
+        }
+    }
+}
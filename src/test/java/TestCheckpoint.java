@@ -0,0 +1,57 @@
+import algorithm.fmin.BayesianOptimization;
+import algorithm.fmin.Result;
+import algorithm.objective_func.Task;
+
+import java.io.File;
+
+public class TestCheckpoint {
+
+    public static void main(String[] args) throws Exception{
+
+        class Branin extends Task{
+
+            @Override
+            public double evaluate(double[] X) {
+                double x = X[0], y = X[1];
+                double b = 5.1 / (4 * Math.PI * Math.PI), c = 5 / Math.PI, t = 1 / (8 * Math.PI);
+                return Math.pow(y - b * x * x + c * x - 6, 2) + 10 * (1 - t) * Math.cos(x) + 10;
+            }
+
+            @Override
+            public double[] get_lower() {
+                return new double[]{-5, 0};
+            }
+
+            @Override
+            public double[] get_upper() {
+                return new double[]{10, 15};
+            }
+        }
+
+        Task task = new Branin();
+        File checkpoint = File.createTempFile("checkpoint", ".bin");
+        checkpoint.deleteOnExit();
+
+        // The last checkpoint of a study of 25 iterations is written after iteration 15
+        BayesianOptimization study = new BayesianOptimization(task, 25, "random", "ei", "gp", 3, null, 7);
+        study.set_checkpoint(checkpoint.getPath(), 15);
+        Result expected = study.run();
+
+        // A resumed study has to propose the same points as the uninterrupted one
+        BayesianOptimization resumed = new BayesianOptimization(task, 25, "random", "ei", "gp", 3, null, 7);
+        Result result = resumed.resume(checkpoint.getPath());
+
+        double diff = 0.0;
+        for (int i = 0; i < expected.X.length; i ++ ){
+            for (int j = 0; j < expected.X[i].length; j ++ ){
+                diff = Math.max(diff, Math.abs(expected.X[i][j] - result.X[i][j]));
+            }
+        }
+        System.out.println(expected.X.length + " " + result.X.length);
+        System.out.println(expected.y_opt + " " + result.y_opt);
+        System.out.println(diff);
+        if (expected.X.length != result.X.length || diff > 1e-9 || expected.y_opt != result.y_opt){
+            throw new Exception("The resumed study differs from the uninterrupted one.");
+        }
+    }
+}
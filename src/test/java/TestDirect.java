@@ -0,0 +1,42 @@
+import algorithm.acquisition_functions.BaseAcquisitionFunction;
+import algorithm.maximizers.BaseMaximizer;
+import algorithm.maximizers.Direct;
+import algorithm.models.BaseModel;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class TestDirect {
+
+    public static void main(String[] args) throws Exception{
+        final double[] lower = {-5, 0};
+        final double[] upper = {10, 15};
+
+        // The negative Branin function, its maximum is -0.397887
+        BaseAcquisitionFunction branin = new BaseAcquisitionFunction(new BaseModel()){
+            @Override
+            public double compute(Double[] X){
+                double x = X[0], y = X[1];
+                double b = 5.1 / (4 * Math.PI * Math.PI), c = 5 / Math.PI, t = 1 / (8 * Math.PI);
+                return -(Math.pow(y - b * x * x + c * x - 6, 2) + 10 * (1 - t) * Math.cos(x) + 10);
+            }
+        };
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try{
+            check("direct", new Direct(branin, lower, upper, 2000, 200, false), branin, 1e-2);
+            check("direct (pool)", new Direct(branin, lower, upper, 2000, 200, false, pool), branin, 1e-2);
+        }
+        finally{
+            pool.shutdown();
+        }
+    }
+
+    private static void check(String name, BaseMaximizer maximizer, BaseAcquisitionFunction f, double tolerance) throws Exception{
+        double[] x = maximizer.maximize();
+        double value = -f.compute(new Double[]{x[0], x[1]});
+        System.out.println(name + " " + x[0] + " " + x[1] + " " + value);
+        if (Math.abs(value - 0.397887) > tolerance){
+            throw new Exception(name + " did not find the minimum of the Branin function.");
+        }
+    }
+}
@@ -13,6 +13,15 @@ public class TestGaussianProcess {
             double[] x_test = {5.794};
             System.out.println(gpr.predict_mean(x_test));
             System.out.println(gpr.predict_variance(x_test));
+
+            // Appending points to a fit must give the same model as fitting all points at once
+            double[][] x_head = java.util.Arrays.copyOfRange(x, 0, 5);
+            double[][] x_tail = java.util.Arrays.copyOfRange(x, 5, x.length);
+            GaussianProcessRegression<double[]> gpr_inc = new GaussianProcessRegression<double[]>(x_head,
+                    java.util.Arrays.copyOfRange(y, 0, 5), new GaussianKernel(1.0), 0.1);
+            gpr_inc.update(x_tail, y);
+            System.out.println(gpr_inc.predict_mean(x_test));
+            System.out.println(gpr_inc.predict_variance(x_test));
         }
         catch (Exception e){
             System.out.println(e.toString());
@@ -0,0 +1,120 @@
+import algorithm.acquisition_functions.IntegratedAcquisition;
+import algorithm.acquisition_functions.LogEI;
+import algorithm.kernels.ARDSquaredExponentialKernel;
+import algorithm.models.GaussianProcess;
+import algorithm.models.GaussianProcessMCMC;
+import algorithm.utils.Observations;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class TestGaussianProcessMCMC {
+
+    public static void main(String[] args) throws Exception{
+        double[] lower = {0, 0};
+        double[] upper = {1, 1};
+        Random random = new Random(1);
+
+        Observations data = new Observations(2);
+        for (int i = 0; i < 20; i ++ ){
+            double[] x = {random.nextDouble(), random.nextDouble()};
+            data.add(x, Math.sin(6 * x[0]) + Math.cos(4 * x[1]));
+        }
+        double[][] X_test = new double[50][];
+        for (int i = 0; i < X_test.length; i ++ ){
+            // Some points are far from the data, where EI of a single member underflows
+            double scale = i < 40 ? 1.0 : 5.0;
+            X_test[i] = new double[]{scale * random.nextDouble(), scale * random.nextDouble()};
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try{
+            // The chains keep their state, so 5 burn-in steps and 2 further steps are the
+            // 7 steps of a single training, and not 5 + 5
+            GaussianProcessMCMC model = new GaussianProcessMCMC(kernel(), 4, 5, 2, lower, upper, pool, 3);
+            model.train(data, true);
+            model.train(data, true);
+            GaussianProcessMCMC expected = new GaussianProcessMCMC(kernel(), 4, 7, 2, lower, upper, pool, 3);
+            expected.train(data, true);
+            GaussianProcessMCMC burnin = new GaussianProcessMCMC(kernel(), 4, 10, 2, lower, upper, pool, 3);
+            burnin.train(data, true);
+            double steps = diff(members(expected, X_test), members(model, X_test));
+            double restart = diff(members(burnin, X_test), members(model, X_test));
+            System.out.println("steps: " + steps + " " + restart);
+            if (steps != 0.0 || restart == 0.0){
+                throw new Exception("The second training does not continue the chains by n_steps steps.");
+            }
+
+            // The integrated log EI is the logarithm of the averaged EI of the members
+            IntegratedAcquisition acquisition = new IntegratedAcquisition(model, "log_ei", 0.0, 0, 0);
+            acquisition.update(model);
+            double[] result = new double[X_test.length];
+            acquisition.compute(X_test, result);
+            List<GaussianProcess> models = model.get_models();
+            double[][] values = new double[models.size()][X_test.length];
+            for (int i = 0; i < models.size(); i ++ ){
+                LogEI log_ei = new LogEI(models.get(i), 0.0);
+                log_ei.compute(X_test, values[i]);
+            }
+            double error = 0.0;
+            for (int j = 0; j < X_test.length; j ++ ){
+                double mean = 0.0;
+                for (double[] value : values){
+                    mean += Math.exp(value[j]) / models.size();
+                }
+                // Far from the data the members are compared in log space
+                double log_mean = mean > 0.0 ? Math.log(mean) : log_mean_exp(values, j);
+                double scale = Math.max(1.0, Math.abs(result[j]));
+                error = Math.max(error, Math.abs(log_mean - result[j]) / scale);
+                // The single point and the gradient path give the same value
+                double[] grad = new double[2];
+                Double[] x = {X_test[j][0], X_test[j][1]};
+                error = Math.max(error, Math.abs(acquisition.compute(x) - result[j]) / scale);
+                error = Math.max(error, Math.abs(acquisition.compute_gradient(X_test[j], grad) - result[j]) / scale);
+            }
+            System.out.println("log_ei: " + error);
+            if (error > 1e-9){
+                throw new Exception("The integrated log EI is not log(mean(exp(log EI))) of the members.");
+            }
+        }
+        finally{
+            pool.shutdown();
+        }
+    }
+
+    private static ARDSquaredExponentialKernel kernel(){
+        return new ARDSquaredExponentialKernel(new double[]{0.3, 0.3}, 1.0);
+    }
+
+    private static double[][] members(GaussianProcessMCMC model, double[][] X) throws Exception{
+        List<GaussianProcess> models = model.get_models();
+        double[][] result = new double[2 * models.size()][X.length];
+        for (int i = 0; i < models.size(); i ++ ){
+            models.get(i).predict(X, result[2 * i], result[2 * i + 1]);
+        }
+        return result;
+    }
+
+    private static double log_mean_exp(double[][] values, int j){
+        double max = Double.NEGATIVE_INFINITY;
+        for (double[] value : values){
+            max = Math.max(max, value[j]);
+        }
+        double sum = 0.0;
+        for (double[] value : values){
+            sum += Math.exp(value[j] - max);
+        }
+        return max + Math.log(sum / values.length);
+    }
+
+    private static double diff(double[][] a, double[][] b){
+        double result = 0.0;
+        for (int k = 0; k < a.length; k ++ ){
+            for (int i = 0; i < a[k].length; i ++ ){
+                result = Math.max(result, Math.abs(a[k][i] - b[k][i]));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+import algorithm.acquisition_functions.EI;
+import algorithm.kernels.ARDSquaredExponentialKernel;
+import algorithm.maximizers.RandomSampling;
+import algorithm.models.GaussianProcess;
+import algorithm.objective_func.BudgetTask;
+import algorithm.solver.HyperbandSolver;
+import algorithm.utils.Observations;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestHyperbandSolver {
+
+    public static void main(String[] args) throws Exception{
+
+        class Branin extends BudgetTask{
+
+            @Override
+            public double evaluate(double[] X, double budget) {
+                double x = X[0], y = X[1];
+                double b = 5.1 / (4 * Math.PI * Math.PI), c = 5 / Math.PI, t = 1 / (8 * Math.PI);
+                double value = Math.pow(y - b * x * x + c * x - 6, 2) + 10 * (1 - t) * Math.cos(x) + 10;
+                // Small budgets give a biased estimate
+                return value + 20 * (1 - budget / 81.0) * Math.sin(3 * x + y);
+            }
+
+            @Override
+            public double get_min_budget() {
+                return 1;
+            }
+
+            @Override
+            public double get_max_budget() {
+                return 81;
+            }
+
+            @Override
+            public double[] get_lower() {
+                return new double[]{-5, 0};
+            }
+
+            @Override
+            public double[] get_upper() {
+                return new double[]{10, 15};
+            }
+        }
+
+        class Plateau extends Branin{
+
+            @Override
+            public double evaluate(double[] X, double budget) {
+                return 1.0;
+            }
+        }
+
+        BudgetTask task = new Branin();
+        double[] lower = task.get_lower(), upper = task.get_upper();
+
+        // With eta = 3 the 5 brackets start 81, 34, 15, 8 and 5 configurations on rungs 0 .. 4
+        // and promote a third of them to the next rung
+        double[] budgets = {1, 3, 9, 27, 81};
+        int[] rung_sizes = {81, 27 + 34, 9 + 11 + 15, 3 + 3 + 5 + 8, 1 + 1 + 1 + 2 + 5};
+        double total_budget = 0.0;
+        for (int k = 0; k < budgets.length; k ++ ){
+            total_budget += budgets[k] * rung_sizes[k];
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try{
+            for (ExecutorService e : new ExecutorService[]{null, executor}){
+                HyperbandSolver solver = solver(task, 1.0 / 3.0, 1);
+                try{
+                    solver.run(5, null, null, e);
+                    int[] sizes = new int[budgets.length];
+                    for (int k = 0; k < budgets.length; k ++ ){
+                        sizes[k] = solver.get_rung_observations(k).size();
+                    }
+                    System.out.println(Arrays.toString(solver.get_budgets()) + " " + Arrays.toString(sizes) + " "
+                            + solver.get_total_budget());
+                    if (!Arrays.equals(solver.get_budgets(), budgets) || !Arrays.equals(sizes, rung_sizes)
+                            || solver.get_total_budget() != total_budget
+                            || solver.get_observations().size() != rung_sizes[budgets.length - 1]){
+                        throw new Exception("The rungs of the brackets have wrong budgets or sizes.");
+                    }
+
+                    // The first bracket promotes the best third of its configurations on every rung
+                    for (int k = 0; k < budgets.length - 1; k ++ ){
+                        Observations rung = solver.get_rung_observations(k), next = solver.get_rung_observations(k + 1);
+                        int n = k == 0 ? 81 : rung_sizes[0] / (int) Math.pow(3, k);
+                        double[] values = new double[n];
+                        for (int i = 0; i < n; i ++ ){
+                            values[i] = rung.get_y(i);
+                        }
+                        Arrays.sort(values);
+                        for (int i = 0; i < n / 3; i ++ ){
+                            if (task.evaluate(next.get_x(i), budgets[k]) > values[n / 3 - 1]){
+                                throw new Exception("A configuration that is not among the best third of rung " + k + " was promoted.");
+                            }
+                        }
+                    }
+                }
+                finally{
+                    solver.close();
+                }
+            }
+
+            // The model can not be fit to a rung of equal values, the configurations are
+            // sampled uniformly although the random fraction is 0
+            HyperbandSolver solver = solver(new Plateau(), 0.0, 2);
+            try{
+                solver.run(5, null, null, executor);
+                System.out.println("plateau " + solver.get_total_budget());
+                if (solver.get_total_budget() != total_budget){
+                    throw new Exception("Hyperband did not finish its brackets on a plateau.");
+                }
+            }
+            finally{
+                solver.close();
+            }
+        }
+        finally{
+            executor.shutdown();
+        }
+    }
+
+    private static HyperbandSolver solver(BudgetTask task, double random_fraction, long seed) throws Exception{
+        double[] lower = task.get_lower(), upper = task.get_upper();
+        GaussianProcess gp = new GaussianProcess(new ARDSquaredExponentialKernel(new double[]{1, 1}, 1.0), 0.0, true, true,
+                lower, upper);
+        EI ei = new EI(gp, 0.0);
+        RandomSampling maximizer = new RandomSampling(ei, lower, upper, 500, null, seed);
+        return new HyperbandSolver(task, lower, upper, ei, gp, maximizer, 3, random_fraction, null, seed);
+    }
+}
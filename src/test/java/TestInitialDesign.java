@@ -0,0 +1,53 @@
+import algorithm.initial_design.BaseInitialDesign;
+import algorithm.initial_design.Halton;
+import algorithm.initial_design.LatinHypercube;
+import algorithm.initial_design.Sobol;
+
+public class TestInitialDesign {
+
+    public static void main(String[] args) throws Exception{
+        double[] lower = {-1, 0, 10};
+        double[] upper = {1, 5, 20};
+
+        // The first 2^k points of a (scrambled) Sobol sequence and a Latin hypercube of n
+        // points have one point in each of the 2^k, resp. n, intervals of every dimension
+        check_strata("sobol", new Sobol(lower, upper, true, 1).get(64), lower, upper, 64);
+        check_strata("sobol (unscrambled)", new Sobol(lower, upper, false, 1).get(64), lower, upper, 64);
+        check_strata("lhs", new LatinHypercube(lower, upper, 50, 1).get(50), lower, upper, 50);
+
+        // The Halton sequence has at most one point in each of the 2, 4, .. intervals of
+        // the first dimension (base 2) among its first 2, 4, .. points
+        check_strata("halton", new Halton(lower, upper, false, 1).get(64), lower, upper, 64);
+
+        // skip continues the sequence where a longer run would be
+        BaseInitialDesign design = new Sobol(lower, upper, true, 2);
+        double[][] all = design.get(16);
+        design.reset();
+        design.skip(10);
+        double[] x = design.next();
+        for (int j = 0; j < x.length; j ++ ){
+            if (x[j] != all[10][j]){
+                throw new Exception("Sobol.skip does not continue the sequence.");
+            }
+        }
+        System.out.println("skip ok");
+    }
+
+    private static void check_strata(String name, double[][] X, double[] lower, double[] upper, int n) throws Exception{
+        int dims = name.equals("halton") ? 1 : lower.length;
+        for (int j = 0; j < dims; j ++ ){
+            boolean[] hit = new boolean[n];
+            for (double[] x : X){
+                if (x[j] < lower[j] || x[j] > upper[j]){
+                    throw new Exception(name + ": point out of bounds");
+                }
+                int k = Math.min(n - 1, (int) ((x[j] - lower[j]) / (upper[j] - lower[j]) * n));
+                if (hit[k]){
+                    throw new Exception(name + ": two points in interval " + k + " of dimension " + j);
+                }
+                hit[k] = true;
+            }
+        }
+        System.out.println(name + " ok");
+    }
+}
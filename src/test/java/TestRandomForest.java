@@ -0,0 +1,95 @@
+import algorithm.models.BaseModel;
+import algorithm.models.RandomForest;
+import algorithm.utils.Observations;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class TestRandomForest {
+
+    public static void main(String[] args) throws Exception{
+        Random random = new Random(1);
+        Observations data = new Observations(3);
+        for (int i = 0; i < 60; i ++ ){
+            double[] x = {random.nextDouble(), random.nextDouble(), random.nextDouble()};
+            data.add(x, f(x));
+        }
+        double[][] X_test = new double[200][];
+        for (int i = 0; i < X_test.length; i ++ ){
+            X_test[i] = new double[]{random.nextDouble(), random.nextDouble(), random.nextDouble()};
+        }
+
+        // Every tree has its own seeded generator, so the pool does not change the forest
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try{
+            RandomForest sequential = new RandomForest(30, 3, 2.0 / 3.0, null, 5);
+            RandomForest parallel = new RandomForest(30, 3, 2.0 / 3.0, pool, 5);
+            sequential.train(data);
+            parallel.train(data);
+            System.out.println("pool: " + diff(predict(sequential, X_test), predict(parallel, X_test)));
+            if (diff(predict(sequential, X_test), predict(parallel, X_test)) != 0.0){
+                throw new Exception("The forests grown with and without a pool differ.");
+            }
+
+            // update followed by truncate(n) gives back the statistics of all nodes of the
+            // forest of n points, the nodes of new splits are appended and only keep the
+            // samples of the old leaf
+            Observations head = new Observations(3);
+            for (int i = 0; i < 40; i ++ ){
+                head.add(data.get_x(i), data.get_y(i));
+            }
+            RandomForest model = new RandomForest(30, 3, 2.0 / 3.0, pool, 5);
+            model.train(head);
+            double[][][] before = new double[30][][];
+            for (int t = 0; t < 30; t ++ ){
+                before[t] = model.get_node_statistics(t);
+            }
+            for (int i = 40; i < 60; i ++ ){
+                head.add(data.get_x(i), data.get_y(i));
+            }
+            model.update(head);
+            int grown = 0;
+            for (int t = 0; t < 30; t ++ ){
+                grown += model.get_node_statistics(t)[0].length - before[t][0].length;
+            }
+            head.truncate(40);
+            model.truncate(40);
+            double error = 0.0;
+            for (int t = 0; t < 30; t ++ ){
+                double[][] after = model.get_node_statistics(t);
+                for (int k = 0; k < 3; k ++ ){
+                    for (int node = 0; node < before[t][k].length; node ++ ){
+                        error = Math.max(error, Math.abs(before[t][k][node] - after[k][node]));
+                    }
+                }
+            }
+            System.out.println("truncate: " + grown + " new nodes, " + error);
+            if (grown == 0 || error > 1e-9){
+                throw new Exception("update followed by truncate does not restore the node statistics.");
+            }
+        }
+        finally{
+            pool.shutdown();
+        }
+    }
+
+    private static double f(double[] x){
+        return Math.sin(6 * x[0]) + Math.cos(4 * x[1]) + x[0] * x[2];
+    }
+
+    private static double[][] predict(BaseModel model, double[][] X) throws Exception{
+        double[] mean = new double[X.length], var = new double[X.length];
+        model.predict(X, mean, var);
+        return new double[][]{mean, var};
+    }
+
+    private static double diff(double[][] a, double[][] b){
+        double result = 0.0;
+        for (int k = 0; k < a.length; k ++ ){
+            for (int i = 0; i < a[k].length; i ++ ){
+                result = Math.max(result, Math.abs(a[k][i] - b[k][i]));
+            }
+        }
+        return result;
+    }
+}
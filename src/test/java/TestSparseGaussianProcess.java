@@ -0,0 +1,98 @@
+import algorithm.kernels.ARDSquaredExponentialKernel;
+import algorithm.models.BaseModel;
+import algorithm.models.GaussianProcess;
+import algorithm.models.SparseGaussianProcess;
+import algorithm.utils.Observations;
+
+import java.util.Random;
+
+public class TestSparseGaussianProcess {
+
+    public static void main(String[] args) throws Exception{
+        double[] lower = {0, 0};
+        double[] upper = {1, 1};
+        Random random = new Random(1);
+
+        Observations data = new Observations(2);
+        for (int i = 0; i < 30; i ++ ){
+            double[] x = {random.nextDouble(), random.nextDouble()};
+            data.add(x, f(x));
+        }
+        // The last test point is far from the data, its variance is the prior variance
+        double[][] X_test = new double[21][];
+        for (int i = 0; i < X_test.length - 1; i ++ ){
+            X_test[i] = new double[]{random.nextDouble(), random.nextDouble()};
+        }
+        X_test[X_test.length - 1] = new double[]{3, 3};
+
+        // With an inducing point per observation the approximation is the exact GP
+        SparseGaussianProcess sparse = new SparseGaussianProcess(kernel(), 1e-3, 30, lower, upper);
+        GaussianProcess gp = new GaussianProcess(kernel(), 1e-3, true, true, lower, upper);
+        sparse.train(data, false);
+        gp.train(data, false);
+        double[][] expected = predict(gp, X_test);
+        double[][] result = predict(sparse, X_test);
+        // The GP scales the targets by the root of their sum of squares, the sparse GP by
+        // their standard deviation, so the variances are compared relative to the prior
+        expected[1] = relative(expected[1]);
+        result[1] = relative(result[1]);
+        System.out.println(sparse.get_num_inducing() + " inducing points");
+        System.out.println(diff(expected[0], result[0]) + " " + diff(expected[1], result[1]));
+        if (sparse.get_num_inducing() != 30 || diff(expected[0], result[0]) > 1e-4 || diff(expected[1], result[1]) > 1e-4){
+            throw new Exception("The sparse GP with max_inducing >= N differs from the GP.");
+        }
+
+        // update followed by truncate restores the predictions of the first 20 points, both
+        // when inducing points are removed (rebuild) and when they are kept (subtraction)
+        for (int max_inducing : new int[]{30, 8}){
+            Observations head = new Observations(2);
+            for (int i = 0; i < 20; i ++ ){
+                head.add(data.get_x(i), data.get_y(i));
+            }
+            SparseGaussianProcess model = new SparseGaussianProcess(kernel(), 1e-3, max_inducing, lower, upper);
+            model.train(head, false);
+            double[][] before = predict(model, X_test);
+            for (int i = 20; i < 30; i ++ ){
+                head.add(data.get_x(i), data.get_y(i));
+            }
+            model.update(head);
+            head.truncate(20);
+            model.truncate(20);
+            double[][] after = predict(model, X_test);
+            System.out.println(max_inducing + ": " + diff(before[0], after[0]) + " " + diff(before[1], after[1]));
+            if (diff(before[0], after[0]) > 1e-8 || diff(before[1], after[1]) > 1e-8){
+                throw new Exception("update followed by truncate does not restore the predictions (max_inducing = " + max_inducing + ").");
+            }
+        }
+    }
+
+    private static double f(double[] x){
+        return Math.sin(6 * x[0]) + Math.cos(4 * x[1]) + x[0] * x[1];
+    }
+
+    private static ARDSquaredExponentialKernel kernel(){
+        return new ARDSquaredExponentialKernel(new double[]{0.15, 0.15}, 1.0);
+    }
+
+    private static double[][] predict(BaseModel model, double[][] X) throws Exception{
+        double[] mean = new double[X.length], var = new double[X.length];
+        model.predict(X, mean, var);
+        return new double[][]{mean, var};
+    }
+
+    private static double[] relative(double[] var){
+        double[] result = new double[var.length];
+        for (int i = 0; i < var.length; i ++ ){
+            result[i] = var[i] / var[var.length - 1];
+        }
+        return result;
+    }
+
+    private static double diff(double[] a, double[] b){
+        double result = 0.0;
+        for (int i = 0; i < a.length; i ++ ){
+            result = Math.max(result, Math.abs(a[i] - b[i]));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+import algorithm.initial_design.InitRandomUniform;
+import algorithm.metrics.Phase;
+import algorithm.metrics.PhaseMetrics;
+import algorithm.objective_func.Task;
+import algorithm.solver.TrustRegionSolver;
+import utils.Pair;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestTrustRegionSolver {
+
+    public static void main(String[] args) throws Exception{
+
+        class Branin extends Task{
+
+            @Override
+            public double evaluate(double[] X) {
+                double x = X[0], y = X[1];
+                double b = 5.1 / (4 * Math.PI * Math.PI), c = 5 / Math.PI, t = 1 / (8 * Math.PI);
+                return Math.pow(y - b * x * x + c * x - 6, 2) + 10 * (1 - t) * Math.cos(x) + 10;
+            }
+
+            @Override
+            public double[] get_lower() {
+                return new double[]{-5, 0};
+            }
+
+            @Override
+            public double[] get_upper() {
+                return new double[]{10, 15};
+            }
+        }
+
+        class Plateau extends Branin{
+
+            @Override
+            public double evaluate(double[] X) {
+                return X[0] > 9.5 && X[1] > 14.5 ? -1.0 : 0.0;
+            }
+        }
+
+        Task task = new Branin();
+        double[] lower = task.get_lower(), upper = task.get_upper();
+
+        // Every region proposes one point per round, the last round only uses part of them
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try{
+            for (ExecutorService e : new ExecutorService[]{null, executor}){
+                TrustRegionSolver solver = new TrustRegionSolver(task, lower, upper, 3, 5, 500, null, 1);
+                PhaseMetrics metrics = new PhaseMetrics();
+                solver.add_listener(metrics);
+                Pair<Double[], Double> result = solver.run(50, null, null, e);
+                System.out.println((e == null ? "sequential " : "parallel ") + solver.get_observations().size() + " " + result.second());
+                if (solver.get_observations().size() != 50 || result.second() > 3.0){
+                    throw new Exception("TrustRegionSolver did not spend its budget or did not approach the minimum of Branin.");
+                }
+
+                // Every proposal after the initial designs trains its local GP and scores the candidates
+                System.out.println(metrics.get(Phase.TRAIN).count() + " " + metrics.get(Phase.MAXIMIZE).count() + " "
+                        + metrics.get(Phase.EVALUATE).count());
+                if (metrics.get(Phase.TRAIN).count() != 50 - 3 * 5 || metrics.get(Phase.MAXIMIZE).count() != 50 - 3 * 5
+                        || metrics.get(Phase.EVALUATE).count() != 50){
+                    throw new Exception("TrustRegionSolver did not report the phases of its proposals.");
+                }
+            }
+
+            // Local data with a single value can not be fit, the regions propose random candidates
+            TrustRegionSolver solver = new TrustRegionSolver(new Plateau(), lower, upper, 2, 5, 100, null, 1);
+            solver.run(30, null, null, executor);
+            System.out.println("plateau " + solver.get_observations().size());
+            if (solver.get_observations().size() != 30){
+                throw new Exception("TrustRegionSolver did not spend its budget on a plateau.");
+            }
+        }
+        finally{
+            executor.shutdown();
+        }
+
+        // One given point replaces only the first point of the initial design of region 0,
+        // whose generator is seeded with the first number of the generator of the solver
+        double[][] design = InitRandomUniform.get(lower, upper, 5, new Random(new Random(2).nextLong()));
+        TrustRegionSolver solver = new TrustRegionSolver(task, lower, upper, 1, 5, 500, null, 2);
+        double[] x0 = {0.0, 5.0};
+        solver.run(10, new double[][]{x0}, new double[]{task.evaluate(x0)});
+        for (int i = 1; i < 5; i ++ ){
+            double[] x = solver.get_observations().get_x(i);
+            System.out.println(x[0] + " " + x[1]);
+            if (x[0] != design[i][0] || x[1] != design[i][1]){
+                throw new Exception("Point " + i + " of the initial design of region 0 was not evaluated.");
+            }
+        }
+    }
+}